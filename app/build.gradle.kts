@@ -33,6 +33,7 @@ val javafxPlatform: String = when {
 dependencies {
     implementation(project(":engine"))
     implementation(project(":content"))
+    implementation(project(":runner"))
 
     implementation("com.vladsch.flexmark:flexmark-all:0.64.8")
     implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
@@ -43,6 +44,11 @@ dependencies {
     runtimeOnly("org.openjfx:javafx-web:${javafx.version}:$javafxPlatform")
 
     implementation("org.fxmisc.richtext:richtextfx:0.11.7")
+
+    // скрытые JUnit-тесты кодовых заданий: компилируются и запускаются в sandbox
+    implementation("org.junit.jupiter:junit-jupiter-api:5.10.3")
+    implementation("org.junit.jupiter:junit-jupiter-engine:5.10.3")
+    implementation("org.junit.platform:junit-platform-launcher:1.10.3")
 }
 
 runtime {
@@ -57,8 +63,12 @@ runtime {
             "java.xml",
             "java.naming",
             "java.net.http",
+            // сервер проверки (serve) на com.sun.net.httpserver
+            "jdk.httpserver",
             "java.compiler",
-            "jdk.compiler"
+            "jdk.compiler",
+            // встроенный kotlinc (модуль runner) использует sun.misc.Unsafe
+            "jdk.unsupported"
         )
     )
 
@@ -91,3 +101,58 @@ tasks.shadowJar {
     archiveVersion.set("")
     mergeServiceFiles()
 }
+
+// замеры и нагрузочные клиенты: свой source set (src/bench/java), в app-all.jar не попадают
+val bench: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[bench.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[bench.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+tasks.register<JavaExec>("sandboxBenchmark") {
+    group = "verification"
+    description = "Замеряет задержку компиляции/запуска в JavaSandboxRunner"
+    classpath = bench.runtimeClasspath
+    mainClass.set("ru.vlsklv.course.app.sandbox.SandboxBenchmark")
+    listOf("bench.iterations", "bench.warmup").forEach { key ->
+        project.findProperty(key)?.let { systemProperty(key, it) }
+    }
+}
+
+tasks.register<JavaExec>("coordinatorBenchmark") {
+    group = "verification"
+    description = "Замеряет масштабирование WorkerCoordinator по числу worker-JVM"
+    classpath = bench.runtimeClasspath
+    mainClass.set("ru.vlsklv.course.app.sandbox.WorkerCoordinatorBenchmark")
+    listOf("bench.runs", "bench.work", "bench.workers").forEach { key ->
+        project.findProperty(key)?.let { systemProperty(key, it) }
+    }
+}
+
+// gradle :app:gradeBatch --args="--lesson java-011 --format csv /path/to/submissions"
+tasks.register<JavaExec>("gradeBatch") {
+    group = "application"
+    description = "Пакетная проверка решений без UI"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("ru.vlsklv.course.app.grading.BatchGrader")
+}
+
+// gradle :app:gradingServer --args="--host 0.0.0.0 --workers 4"
+tasks.register<JavaExec>("gradingServer") {
+    group = "application"
+    description = "HTTP-сервер проверки решений для локальной сети"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("ru.vlsklv.course.app.grading.GradingServer")
+}
+
+tasks.register<JavaExec>("gradingLoadTest") {
+    group = "verification"
+    description = "Нагрузочный тест сервера проверки: пропускная способность, задержка, отказы 429"
+    classpath = bench.runtimeClasspath
+    mainClass.set("ru.vlsklv.course.app.grading.GradingLoadTest")
+    listOf("load.url", "load.lesson", "load.file", "load.requests", "load.concurrency", "load.workers", "load.queue").forEach { key ->
+        project.findProperty(key)?.let { systemProperty(key, it) }
+    }
+}
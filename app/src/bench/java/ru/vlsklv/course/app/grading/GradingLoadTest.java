@@ -0,0 +1,141 @@
+package ru.vlsklv.course.app.grading;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.vlsklv.course.engine.model.CodeAssignment;
+import ru.vlsklv.course.engine.model.Lesson;
+import ru.vlsklv.course.engine.repo.LessonLoader;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Нагрузочный клиент сервера проверки (без JMH и внешних утилит, как {@code SandboxBenchmark}).
+ *
+ * Запуск: {@code gradle :app:gradingLoadTest}
+ * Параметры: {@code -Pload.requests=200 -Pload.concurrency=32 -Pload.lesson=java-003 -Pload.file=Main.java}.
+ * Без {@code -Pload.url=http://host:8765} сервер поднимается в этом же процессе с
+ * {@code -Pload.workers} воркерами и очередью {@code -Pload.queue}. Без {@code load.file}
+ * отправляется шаблон задания.
+ *
+ * Каждый из {@code concurrency} клиентов отправляет решение, на 429 ждёт {@code Retry-After} и
+ * повторяет, затем ждёт итога через {@code GET /jobs/<id>?wait=}. Задержка — от первой попытки
+ * до итога, то есть вместе с ожиданием в очереди и после отказов.
+ */
+public final class GradingLoadTest {
+    private GradingLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        int requests = Integer.getInteger("load.requests", 200);
+        int concurrency = Integer.getInteger("load.concurrency", 32);
+        String lessonId = System.getProperty("load.lesson", "java-003");
+        String url = System.getProperty("load.url");
+        String file = System.getProperty("load.file");
+
+        GradingServer server = null;
+        if (url == null || url.isBlank()) {
+            int workers = Integer.getInteger("load.workers", Runtime.getRuntime().availableProcessors());
+            int queue = Integer.getInteger("load.queue", 4 * workers);
+            server = GradingServer.start(new GradingServer.Options("127.0.0.1", 0, workers, queue));
+            url = "http://127.0.0.1:" + server.address().getPort();
+            System.out.printf("Сервер в процессе: %s, воркеров: %d, очередь: %d%n", url, workers, queue);
+        }
+
+        byte[] body = file != null ? Files.readAllBytes(Path.of(file)) : template(lessonId);
+        URI submit = URI.create(url + "/jobs?lesson=" + URLEncoder.encode(lessonId, StandardCharsets.UTF_8) + "&name=load");
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ObjectMapper json = new ObjectMapper();
+
+        System.out.printf("Урок %s: %d решений, клиентов: %d%n", lessonId, requests, concurrency);
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLongArray latencies = new AtomicLongArray(requests);
+        Map<String, AtomicInteger> verdicts = new ConcurrentHashMap<>();
+        String base = url;
+        long start = System.nanoTime();
+
+        Thread[] clients = new Thread[concurrency];
+        for (int c = 0; c < concurrency; c++) {
+            clients[c] = new Thread(() -> {
+                for (int i; (i = next.getAndIncrement()) < requests; ) {
+                    long t0 = System.nanoTime();
+                    String verdict;
+                    try {
+                        verdict = gradeOne(client, json, submit, base, body, rejected);
+                    } catch (Exception e) {
+                        verdict = "CLIENT_ERROR " + e;
+                    }
+                    latencies.set(i, (System.nanoTime() - t0) / 1_000_000);
+                    verdicts.computeIfAbsent(verdict, k -> new AtomicInteger()).incrementAndGet();
+                }
+            }, "load-client-" + c);
+            clients[c].start();
+        }
+        for (Thread t : clients) t.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = new long[requests];
+        for (int i = 0; i < requests; i++) sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        System.out.printf("%nГотово за %.1f s: %.2f решений/с, отказов 429: %d%n", seconds, requests / seconds, rejected.get());
+        System.out.printf("Задержка до итога: p50=%d ms  p95=%d ms  p99=%d ms  max=%d ms%n",
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), sorted[sorted.length - 1]);
+        System.out.println("Итоги: " + new TreeMap<>(verdicts));
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(URI.create(url + "/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        System.out.println("Сервер: " + stats.body());
+
+        if (server != null) server.close();
+    }
+
+    /** Отправляет решение (с повторами после 429) и ждёт итога; возвращает вердикт. */
+    private static String gradeOne(HttpClient client, ObjectMapper json, URI submit, String base, byte[] body,
+                                   AtomicLong rejected) throws Exception {
+        HttpRequest post = HttpRequest.newBuilder(submit).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        HttpResponse<String> response;
+        while ((response = client.send(post, HttpResponse.BodyHandlers.ofString())).statusCode() == 429) {
+            rejected.incrementAndGet();
+            long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+            Thread.sleep(retryAfter * 1000);
+        }
+        if (response.statusCode() != 202) return "HTTP " + response.statusCode();
+
+        URI status = URI.create(base + "/jobs/" + json.readTree(response.body()).get("id").asText() + "?wait=30");
+        while (true) {
+            HttpResponse<String> r = client.send(HttpRequest.newBuilder(status).build(), HttpResponse.BodyHandlers.ofString());
+            if (r.statusCode() != 200) return "HTTP " + r.statusCode();
+            JsonNode job = json.readTree(r.body());
+            if (job.get("state").asText().equals(GradingQueue.State.DONE.name())) return job.get("grade").get("verdict").asText();
+        }
+    }
+
+    private static byte[] template(String lessonId) {
+        LessonLoader loader = new LessonLoader();
+        Lesson lesson = loader.loadFromClasspathIndex("lessons/index.yml").findById(lessonId);
+        if (lesson == null) throw new IllegalArgumentException("Урок не найден: " + lessonId);
+        CodeAssignment ca = BatchGrader.codeAssignment(lesson, 0);
+        return CodeGrader.templateFiles(loader, ca).get(ca.getFileName()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+}
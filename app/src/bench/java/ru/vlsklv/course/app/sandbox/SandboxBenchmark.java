@@ -0,0 +1,161 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Простой бенчмарк sandbox-раннера (без JMH, чтобы не тянуть зависимости).
+ *
+ * Запуск: {@code gradle :app:sandboxBenchmark}
+ * Параметры: {@code -Pbench.iterations=30 -Pbench.warmup=5}
+ */
+public final class SandboxBenchmark {
+    private static final String SAMPLE = """
+            import java.util.ArrayList;
+            import java.util.List;
+
+            public class Main {
+                record Response(int status, String body) {}
+
+                public static void main(String[] args) {
+                    List<Response> responses = new ArrayList<>();
+                    responses.add(new Response(200, "ok"));
+                    responses.add(new Response(404, "not found"));
+                    for (Response r : responses) {
+                        System.out.println((r.status() < 400 ? "OK: " : "FAIL: ") + r.status());
+                    }
+                }
+            }
+            """;
+
+    private SandboxBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int warmup = Integer.getInteger("bench.warmup", 5);
+        int iterations = Integer.getInteger("bench.iterations", 30);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("Нужен JDK: ToolProvider.getSystemJavaCompiler() == null");
+            System.exit(1);
+        }
+
+        System.out.printf(Locale.ROOT, "Компиляция Main.java: warmup=%d, iterations=%d%n", warmup, iterations);
+        report("disk   (temp dir + .class)", measure(warmup, iterations, () -> compileOnDisk(compiler)));
+        report("memory (JavaFileManager)  ", measure(warmup, iterations, () -> compileInMemory(compiler)));
+        report("warm   (CompilerService)  ", measure(warmup, iterations, SandboxBenchmark::compileWarm));
+        CompilationCache cache = new CompilationCache(16, null, 1);
+        report("cache  (hit в памяти)     ", measure(warmup, iterations, () -> compileCached(compiler, cache)));
+        System.out.println("cache: " + cache.stats());
+
+        // кэш компиляции и CDS выключены, чтобы сравнивать полный путь компиляция + запуск
+        ChildJvmArchive.setEnabled(false);
+        System.out.printf(Locale.ROOT, "%nКомпиляция + запуск: warmup=%d, iterations=%d%n", warmup, iterations);
+        report("fork   (JVM на запуск)    ", measure(warmup, iterations, () -> run(uncached(JavaSandboxRunner.ExecutionMode.FORK))));
+        report("pooled (тёплая worker-JVM)", measure(warmup, iterations, () -> run(uncached(JavaSandboxRunner.ExecutionMode.POOLED))));
+        report("inproc (поток приложения) ", measure(warmup, iterations, () -> run(uncached(JavaSandboxRunner.ExecutionMode.IN_PROCESS))));
+        WorkerPool.shared().close();
+
+        // компиляция берётся из кэша, так что меряется в основном старт дочерней JVM
+        System.out.printf(Locale.ROOT, "%nСтарт дочерней JVM (fork, компиляция из кэша): warmup=%d, iterations=%d%n", warmup, iterations);
+        JavaSandboxRunner cachedFork = new JavaSandboxRunner(JavaSandboxRunner.CompileMode.MEMORY,
+                JavaSandboxRunner.ExecutionMode.FORK, OutputCapture.DEFAULT_LIMIT_BYTES, new CompilationCache(16, null, 1));
+        report("fork без CDS              ", measure(warmup, iterations, () -> run(cachedFork)));
+        ChildJvmArchive.setEnabled(true);
+        ChildJvmArchive.prepare();
+        if (ChildJvmArchive.isReady()) {
+            report("fork + AppCDS-архив       ", measure(warmup, iterations, () -> run(cachedFork)));
+        } else {
+            System.out.println("AppCDS-архив не создан (JVM не поддерживает -XX:ArchiveClassesAtExit?)");
+        }
+
+        // время и пиковый RSS по профилям берутся из RunResult.getMetrics() через SandboxStats
+        System.out.printf(Locale.ROOT, "%nПрофили запуска (fork, компиляция из кэша): warmup=%d, iterations=%d%n", warmup, iterations);
+        for (LaunchProfile profile : LaunchProfile.values()) {
+            JavaSandboxRunner profiled = cachedFork.withLaunchProfile(profile);
+            for (int i = 0; i < warmup; i++) run(profiled);
+            SandboxStats.shared().clear();
+            for (int i = 0; i < iterations; i++) run(profiled);
+            SandboxStats.shared().snapshot().forEach(System.out::println);
+        }
+    }
+
+    private static JavaSandboxRunner uncached(JavaSandboxRunner.ExecutionMode mode) {
+        return new JavaSandboxRunner(JavaSandboxRunner.CompileMode.MEMORY, mode, OutputCapture.DEFAULT_LIMIT_BYTES, null);
+    }
+
+    private static void run(JavaSandboxRunner runner) {
+        // вывод sample в in-process режиме перехватывается и в консоль бенчмарка не попадает
+        JavaSandboxRunner.RunResult rr = runner.compileAndRun("Main.java", "Main", SAMPLE, Duration.ofSeconds(10));
+        if (rr.getStatus() != JavaSandboxRunner.RunResult.Status.OK) {
+            throw new IllegalStateException("sample must run: " + rr.getMessage());
+        }
+    }
+
+    private static void compileOnDisk(JavaCompiler compiler) throws Exception {
+        Path dir = Files.createTempDirectory("aqa-course-bench-");
+        try {
+            if (JavaSandboxRunner.compileOnDisk(compiler, dir, "Main.java", SAMPLE) != null) {
+                throw new IllegalStateException("sample must compile");
+            }
+        } finally {
+            JavaSandboxRunner.deleteRecursive(dir);
+        }
+    }
+
+    private static void compileInMemory(JavaCompiler compiler) throws Exception {
+        if (!JavaSandboxRunner.compileInMemory(compiler, "Main.java", SAMPLE).success()) {
+            throw new IllegalStateException("sample must compile");
+        }
+    }
+
+    private static void compileWarm() throws Exception {
+        if (!CompilerService.shared().compile("Main.java", SAMPLE).success()) {
+            throw new IllegalStateException("sample must compile");
+        }
+    }
+
+    private static void compileCached(JavaCompiler compiler, CompilationCache cache) throws Exception {
+        String key = CompilationCache.key("Main.java", SAMPLE, JavaSandboxRunner.JAVAC_OPTIONS);
+        if (cache.get(key) == null) cache.put(key, JavaSandboxRunner.compileInMemory(compiler, "Main.java", SAMPLE));
+    }
+
+    static double[] measure(int warmup, int iterations, Action action) throws Exception {
+        for (int i = 0; i < warmup; i++) action.run();
+
+        double[] millis = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    static void report(String name, double[] sortedMillis) {
+        double sum = 0;
+        for (double m : sortedMillis) sum += m;
+        System.out.printf(Locale.ROOT, "%s  p50=%7.2f ms  p95=%7.2f ms  mean=%7.2f ms%n",
+                name,
+                percentile(sortedMillis, 50),
+                percentile(sortedMillis, 95),
+                sum / sortedMillis.length);
+    }
+
+    static double percentile(double[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+}
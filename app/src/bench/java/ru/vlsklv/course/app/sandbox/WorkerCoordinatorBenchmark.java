@@ -0,0 +1,106 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Масштабирование {@link WorkerCoordinator} по числу worker'ов (без JMH, как {@link SandboxBenchmark}).
+ *
+ * Запуск: {@code gradle :app:coordinatorBenchmark}
+ * Параметры: {@code -Pbench.runs=200 -Pbench.work=20000000 -Pbench.workers=<число ядер>}
+ *
+ * {@code bench.runs} запусков счётной программы ({@code bench.work} итераций) ставятся в очередь
+ * сразу; меряется время до последнего итога. Для сравнения — те же запуски через
+ * {@link JavaSandboxRunner#runCases} без координатора: своя JVM на каждый, столько же потоков.
+ */
+public final class WorkerCoordinatorBenchmark {
+    private static final String SAMPLE = """
+            public class Main {
+                public static void main(String[] args) {
+                    long n = Long.parseLong(args[0]);
+                    double acc = 0;
+                    for (long i = 1; i <= n; i++) acc += Math.sqrt(i);
+                    System.out.println((long) acc);
+                }
+            }
+            """;
+
+    private WorkerCoordinatorBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("bench.runs", 200);
+        String work = Long.toString(Long.getLong("bench.work", 20_000_000L));
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxWorkers = Integer.getInteger("bench.workers", cores);
+
+        JavaSandboxRunner.MemoryCompilation compilation = CompilerService.shared().compile("Main.java", SAMPLE);
+        if (!compilation.success()) throw new IllegalStateException("sample must compile");
+        CompiledClasses classes = compilation.classes();
+
+        System.out.printf(Locale.ROOT, "Ядер: %d, запусков: %d, итераций в запуске: %s%n", cores, runs, work);
+        double base = 0;
+        for (int workers : workerCounts(maxWorkers)) {
+            try (WorkerCoordinator coordinator = new WorkerCoordinator(workers)) {
+                // прогрев: каждый worker стартовал и выполнил пару запусков
+                measure(coordinator, classes, work, 2 * workers);
+                double rate = runs / measure(coordinator, classes, work, runs);
+                if (base == 0) base = rate;
+                System.out.printf(Locale.ROOT, "workers=%2d  %7.2f запусков/с  ускорение x%5.2f  эффективность %3.0f%%  (%s)%n",
+                        workers, rate, rate / base, 100 * rate / base / workers, coordinator.stats());
+            }
+        }
+
+        // так проверялись решения до координатора: отдельная JVM на каждый прогон векторов
+        int threads = Math.min(maxWorkers, cores);
+        JavaSandboxRunner fork = new JavaSandboxRunner(JavaSandboxRunner.CompileMode.MEMORY, JavaSandboxRunner.ExecutionMode.FORK);
+        List<TestCase> cases = List.of(new TestCase("", "", List.of(work), ""));
+        int forkRuns = Math.max(threads, runs / 4);
+        List<Thread> pool = new ArrayList<>();
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                while (next.getAndIncrement() < forkRuns) {
+                    CaseRunResult res = fork.runCases("Main.java", "Main", SAMPLE, cases, Duration.ofSeconds(30));
+                    if (res.getStatus() != CaseRunResult.Status.OK) throw new IllegalStateException("sample must run: " + res.getMessage());
+                }
+            });
+            thread.start();
+            pool.add(thread);
+        }
+        for (Thread thread : pool) thread.join();
+        double forkRate = forkRuns / ((System.nanoTime() - start) / 1e9);
+        System.out.printf(Locale.ROOT, "%nfork (JVM на прогон), потоков=%d: %7.2f запусков/с (%d запусков)%n", threads, forkRate, forkRuns);
+    }
+
+    /** 1, 2, 4, … до {@code max}, и сам {@code max}. */
+    private static TreeSet<Integer> workerCounts(int max) {
+        TreeSet<Integer> counts = new TreeSet<>();
+        for (int n = 1; n < max; n *= 2) counts.add(n);
+        counts.add(Math.max(1, max));
+        return counts;
+    }
+
+    /** Секунды от постановки всех запусков в очередь до последнего итога. */
+    private static double measure(WorkerCoordinator coordinator, CompiledClasses classes, String work, int runs)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        List<RunHandle<JavaSandboxRunner.RunResult>> handles = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            handles.add(coordinator.submit(classes, "Main", new String[]{work}, new byte[0],
+                    LaunchProfile.DEFAULT.jvmOptions(), Duration.ofSeconds(30),
+                    OutputCapture.DEFAULT_LIMIT_BYTES));
+        }
+        for (RunHandle<JavaSandboxRunner.RunResult> h : handles) {
+            JavaSandboxRunner.RunResult rr = h.await();
+            if (rr.getStatus() != JavaSandboxRunner.RunResult.Status.OK) {
+                throw new IllegalStateException("sample must run: " + rr.getMessage());
+            }
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
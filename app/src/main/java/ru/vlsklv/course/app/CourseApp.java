@@ -3,6 +3,11 @@ package ru.vlsklv.course.app;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import ru.vlsklv.course.app.sandbox.ChildJvmArchive;
+import ru.vlsklv.course.app.sandbox.CompilerService;
+import ru.vlsklv.course.app.sandbox.SandboxScheduler;
+import ru.vlsklv.course.app.sandbox.SandboxStats;
+import ru.vlsklv.course.app.sandbox.SessionScratch;
 import ru.vlsklv.course.app.ui.Navigator;
 
 import java.util.Objects;
@@ -28,6 +33,19 @@ public class CourseApp extends Application {
 
         stage.show();
         nav.showWelcome();
+
+        // первый «Запустить» не должен платить за холодный javac и холодный старт дочерней JVM
+        CompilerService.shared().prewarm();
+        ChildJvmArchive.prepareInBackground();
+        SessionScratch.shared().prepareInBackground();
+    }
+
+    @Override
+    public void stop() {
+        // p50/p95 запусков sandbox за сессию — чтобы было видно, куда уходит время
+        SandboxStats.shared().snapshot().forEach(s -> System.err.println("sandbox " + s));
+        System.err.println("sandbox scheduler " + SandboxScheduler.shared().metrics());
+        SessionScratch.shared().close();
     }
 
     public static void main(String[] args) {
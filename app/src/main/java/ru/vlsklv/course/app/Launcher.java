@@ -1,9 +1,24 @@
 package ru.vlsklv.course.app;
 
+import ru.vlsklv.course.app.grading.BatchGrader;
+import ru.vlsklv.course.app.grading.GradingServer;
+
+import java.util.Arrays;
+
 public final class Launcher {
     private Launcher() {}
 
     public static void main(String[] args) {
+        // java -jar app-all.jar grade ... — пакетная проверка без UI, JavaFX не загружается
+        if (args.length > 0 && args[0].equals("grade")) {
+            BatchGrader.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // java -jar app-all.jar serve ... — HTTP-сервер проверки для компьютерного класса
+        if (args.length > 0 && args[0].equals("serve")) {
+            GradingServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         CourseApp.main(args);
     }
 }
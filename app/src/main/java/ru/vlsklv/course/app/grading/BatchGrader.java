@@ -0,0 +1,211 @@
+package ru.vlsklv.course.app.grading;
+
+import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.SessionScratch;
+import ru.vlsklv.course.app.sandbox.WorkerCoordinator;
+import ru.vlsklv.course.engine.model.Assignment;
+import ru.vlsklv.course.engine.model.CodeAssignment;
+import ru.vlsklv.course.engine.model.CompositeAssignment;
+import ru.vlsklv.course.engine.model.Lesson;
+import ru.vlsklv.course.engine.repo.LessonLoader;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетная проверка решений без UI: {@code java -jar app-all.jar grade --lesson java-011 <папка>}.
+ *
+ * Каждое решение компилируется и проверяется {@link CodeGrader} по правилам кнопки «Проверить»,
+ * решения идут параллельно, по умолчанию на всех ядрах. Отчёт (JSON или CSV) пишется в stdout
+ * или файл по мере проверки, ход и итог — в stderr.
+ *
+ * Запуски идут в {@code --jobs} долгоживущих worker-JVM ({@link WorkerCoordinator}), а не в новую
+ * JVM на каждое решение.
+ */
+public final class BatchGrader {
+    private static final String USAGE = """
+            Использование: grade --lesson <id> [параметры] <папка с решениями>
+
+              --lesson <id>       урок, например java-011
+              --step <N>          номер задания с кодом в составном задании (с 1)
+              --format json|csv   формат отчёта (json)
+              --out <файл>        куда писать отчёт (stdout)
+              --jobs <N>          сколько решений проверять параллельно (число ядер)
+
+            Решение — вложенная папка, zip-архив или отдельный файл .java/.kt.
+            """;
+
+    private BatchGrader() {}
+
+    public static void main(String[] args) {
+        int code;
+        try {
+            code = run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            code = 2;
+        } catch (Exception e) {
+            System.err.println("Проверка прервана: " + e);
+            code = 1;
+        } finally {
+            SessionScratch.shared().close();
+        }
+        System.exit(code);
+    }
+
+    static int run(String[] args) throws Exception {
+        Options options = Options.parse(args);
+
+        LessonLoader loader = new LessonLoader();
+        Lesson lesson = loader.loadFromClasspathIndex("lessons/index.yml").findById(options.lesson());
+        if (lesson == null) throw new IllegalArgumentException("Урок не найден: " + options.lesson());
+        gradeAll(lesson, loader, options);
+        return 0;
+    }
+
+    /** Проверяет все решения из {@code options.dir()} и пишет отчёт. */
+    static void gradeAll(Lesson lesson, LessonLoader loader, Options options) throws Exception {
+        CodeAssignment ca = codeAssignment(lesson, options.step());
+
+        WorkerCoordinator workers = new WorkerCoordinator(options.jobs());
+        JavaSandboxRunner runner = CodeGrader.gradingRunner(ca, workers);
+        CodeGrader.prewarm(runner);
+
+        List<Path> submissions = Submissions.list(options.dir());
+        System.err.printf(Locale.ROOT, "Урок %s: %d решений, потоков: %d%n", lesson.getId(), submissions.size(), options.jobs());
+
+        CodeGrader grader = new CodeGrader(ca, loader, runner);
+        Map<Grade.Verdict, AtomicInteger> totals = new EnumMap<>(Grade.Verdict.class);
+        for (Grade.Verdict v : Grade.Verdict.values()) totals.put(v, new AtomicInteger());
+        AtomicInteger done = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.jobs(), r -> {
+            Thread t = new Thread(r, "batch-grader");
+            t.setDaemon(true);
+            return t;
+        });
+        try (workers; GradeReport report = GradeReport.of(options.format(), output(options.out()))) {
+            for (Path path : submissions) {
+                pool.execute(() -> {
+                    Grade grade = grade(grader, path, ca.getFileName());
+                    totals.get(grade.verdict()).incrementAndGet();
+                    try {
+                        report.write(grade);
+                    } catch (IOException e) {
+                        System.err.println("Не удалось записать отчёт: " + e.getMessage());
+                    }
+                    System.err.printf(Locale.ROOT, "[%d/%d] %s: %s%s (%d ms)%n",
+                            done.incrementAndGet(), submissions.size(), grade.submission(), grade.verdict(),
+                            grade.total() > 0 ? " " + grade.passed() + "/" + grade.total() : "", grade.millis());
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                // решения проверяются с таймаутами, так что пул рано или поздно закончит
+            }
+        }
+
+        System.err.printf(Locale.ROOT, "Готово за %.1f s: %s%n", (System.nanoTime() - start) / 1e9, totals);
+        System.err.println("Worker-JVM: " + workers.stats());
+    }
+
+    private static Grade grade(CodeGrader grader, Path path, String mainFileName) {
+        long start = System.nanoTime();
+        try {
+            Submissions.Submission s = Submissions.read(path, mainFileName);
+            if (s.files().isEmpty()) {
+                return new Grade(s.name(), Grade.Verdict.ERROR, 0, 0, 0, "нет файлов с исходниками");
+            }
+            return grader.grade(s.name(), s.files());
+        } catch (Exception e) {
+            return new Grade(path.getFileName().toString(), Grade.Verdict.ERROR, 0, 0,
+                    (System.nanoTime() - start) / 1_000_000, e.toString());
+        }
+    }
+
+    /** Задание с кодом урока; в составном — {@code step}-е по счёту задание с кодом (с 1). */
+    static CodeAssignment codeAssignment(Lesson lesson, int step) {
+        List<CodeAssignment> code = new ArrayList<>();
+        collect(lesson.getAssignment(), code);
+        if (code.isEmpty()) throw new IllegalArgumentException("В уроке " + lesson.getId() + " нет задания с кодом.");
+        if (step == 0 && code.size() > 1) {
+            throw new IllegalArgumentException("В уроке " + lesson.getId() + " " + code.size() + " заданий с кодом: укажите --step.");
+        }
+        int index = step == 0 ? 1 : step;
+        if (index > code.size()) throw new IllegalArgumentException("--step " + step + ": в уроке только " + code.size() + " заданий с кодом.");
+        return code.get(index - 1);
+    }
+
+    private static void collect(Assignment assignment, List<CodeAssignment> out) {
+        if (assignment instanceof CodeAssignment ca) {
+            out.add(ca);
+        } else if (assignment instanceof CompositeAssignment composite && composite.getSteps() != null) {
+            for (Assignment step : composite.getSteps()) collect(step, out);
+        }
+    }
+
+    private static Writer output(Path out) throws IOException {
+        if (out == null) return new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        return Files.newBufferedWriter(out, StandardCharsets.UTF_8);
+    }
+
+    record Options(String lesson, int step, String format, Path out, int jobs, Path dir) {
+        static Options parse(String[] args) {
+            String lesson = null;
+            int step = 0;
+            String format = "json";
+            Path out = null;
+            int jobs = Runtime.getRuntime().availableProcessors();
+            Path dir = null;
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--lesson" -> lesson = value(args, ++i, arg);
+                    case "--step" -> step = positive(value(args, ++i, arg), arg);
+                    case "--format" -> format = value(args, ++i, arg).toLowerCase(Locale.ROOT);
+                    case "--out" -> out = Path.of(value(args, ++i, arg));
+                    case "--jobs" -> jobs = positive(value(args, ++i, arg), arg);
+                    default -> {
+                        if (arg.startsWith("--") || dir != null) throw new IllegalArgumentException("Лишний аргумент: " + arg);
+                        dir = Path.of(arg);
+                    }
+                }
+            }
+            if (lesson == null) throw new IllegalArgumentException("Не указан --lesson.");
+            if (dir == null) throw new IllegalArgumentException("Не указана папка с решениями.");
+            if (!Files.isDirectory(dir)) throw new IllegalArgumentException("Не папка: " + dir);
+            if (!format.equals("json") && !format.equals("csv")) throw new IllegalArgumentException("--format: json или csv");
+            return new Options(lesson, step, format, out, jobs, dir);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) throw new IllegalArgumentException("Нет значения у " + option);
+            return args[i];
+        }
+
+        private static int positive(String value, String option) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n > 0) return n;
+            } catch (NumberFormatException ignored) {
+                // ниже
+            }
+            throw new IllegalArgumentException(option + ": нужно целое число больше 0, а не " + value);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package ru.vlsklv.course.app.grading;
+
+import ru.vlsklv.course.app.sandbox.CaseRunResult;
+import ru.vlsklv.course.app.sandbox.ChildJvmArchive;
+import ru.vlsklv.course.app.sandbox.CompileDiagnostic;
+import ru.vlsklv.course.app.sandbox.CompilerService;
+import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.JunitRunResult;
+import ru.vlsklv.course.app.sandbox.LaunchProfile;
+import ru.vlsklv.course.app.sandbox.SandboxBackends;
+import ru.vlsklv.course.app.sandbox.SandboxWorkspace;
+import ru.vlsklv.course.app.sandbox.SessionScratch;
+import ru.vlsklv.course.app.sandbox.TestCase;
+import ru.vlsklv.course.app.sandbox.WorkerCoordinator;
+import ru.vlsklv.course.engine.grading.OutputComparator;
+import ru.vlsklv.course.engine.model.CodeAssignment;
+import ru.vlsklv.course.engine.model.CodeFile;
+import ru.vlsklv.course.engine.model.CodeTestCase;
+import ru.vlsklv.course.engine.repo.LessonLoader;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Проверка кода задания: скрытые JUnit-тесты, если они есть, иначе тестовые векторы, иначе
+ * expectedStdout; без expectedStdout достаточно успешного запуска.
+ *
+ * Выбор правила ({@link #rule}) и вердикт по итогу запуска ({@link #decide}) — общие для кнопки
+ * «Проверить», пакетной проверки ({@link BatchGrader}) и сервера проверки ({@link GradingServer}):
+ * экраны заданий запускают проверку в фоне и только показывают {@link Decision}.
+ */
+public final class CodeGrader {
+    /** Таймаут прогона скрытых тестов целиком. */
+    public static final Duration TESTS_TIMEOUT = Duration.ofSeconds(15);
+
+    /** Таймаут одного запуска или одного тестового вектора. */
+    public static final Duration RUN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final CodeAssignment assignment;
+    private final JavaSandboxRunner runner;
+    private final Map<String, String> templates;
+    private final Map<String, String> tests;
+    private final List<TestCase> cases;
+
+    public CodeGrader(CodeAssignment assignment, LessonLoader loader, JavaSandboxRunner runner) {
+        this.assignment = assignment;
+        this.runner = runner;
+        this.templates = templateFiles(loader, assignment);
+        this.tests = hiddenTests(loader, assignment);
+        this.cases = testCases(assignment);
+    }
+
+    /** Чем проверяется задание. */
+    public enum Rule { TESTS, CASES, STDOUT }
+
+    /**
+     * Вердикт по итогу запуска, без имени решения и времени: экраны заданий показывают его сами,
+     * {@link #grade} превращает в {@link Grade}.
+     *
+     * @param mismatch место расхождения с expectedStdout, если по нему не пройдено; иначе {@code null}
+     */
+    public record Decision(Grade.Verdict verdict, long passed, long total, String details,
+                           OutputComparator.Mismatch mismatch) {
+        Grade toGrade(String submission, long startNanos) {
+            return new Grade(submission, verdict, passed, total, (System.nanoTime() - startNanos) / 1_000_000, details);
+        }
+    }
+
+    /**
+     * Проверяет решение. {@code files} — путь относительно корня исходников → исходник; файлы
+     * задания, которых в решении нет, берутся из шаблонов, как в редакторе.
+     */
+    public Grade grade(String submission, Map<String, String> files) {
+        long start = System.nanoTime();
+        SandboxWorkspace workspace = new SandboxWorkspace();
+        templates.forEach(workspace::put);
+        files.forEach(workspace::put);
+
+        Decision decision = switch (rule(tests, cases)) {
+            case TESTS -> decide(runner.runTests(workspace, tests, TESTS_TIMEOUT));
+            case CASES -> decide(runner.runCases(workspace, assignment.getMainClass(), cases, RUN_TIMEOUT), cases.size());
+            case STDOUT -> decide(assignment.getExpectedStdout(),
+                    runner.compileAndRun(workspace, assignment.getMainClass(), RUN_TIMEOUT, null));
+        };
+        return decision.toGrade(submission, start);
+    }
+
+    /** Скрытые JUnit-тесты, если они есть, иначе тестовые векторы, иначе expectedStdout. */
+    public static Rule rule(Map<String, String> tests, List<TestCase> cases) {
+        if (!tests.isEmpty()) return Rule.TESTS;
+        if (!cases.isEmpty()) return Rule.CASES;
+        return Rule.STDOUT;
+    }
+
+    public static Decision decide(JunitRunResult res) {
+        return switch (res.getStatus()) {
+            case OK -> res.allPassed()
+                    ? new Decision(Grade.Verdict.PASSED, res.passedCount(), res.countedTests(), "", null)
+                    : new Decision(Grade.Verdict.FAILED, res.passedCount(), res.countedTests(), failedTests(res), null);
+            case COMPILE_ERROR -> compileError(res.getDiagnostics(), res.getMessage());
+            case FAIL, CANCELLED -> new Decision(Grade.Verdict.ERROR, 0, 0, res.getMessage(), null);
+        };
+    }
+
+    /** @param total сколько векторов было в прогоне */
+    public static Decision decide(CaseRunResult res, int total) {
+        return switch (res.getStatus()) {
+            case OK -> res.allPassed()
+                    ? new Decision(Grade.Verdict.PASSED, res.passedCount(), total, "", null)
+                    : new Decision(Grade.Verdict.FAILED, res.passedCount(), total, failedCases(res), null);
+            case COMPILE_ERROR -> compileError(res.getDiagnostics(), res.getMessage());
+            case FAIL, CANCELLED -> new Decision(Grade.Verdict.ERROR, 0, total, res.getMessage(), null);
+        };
+    }
+
+    /** Без expectedStdout достаточно успешного запуска. */
+    public static Decision decide(String expectedStdout, JavaSandboxRunner.RunResult rr) {
+        return switch (rr.getStatus()) {
+            case OK -> {
+                Optional<OutputComparator.Mismatch> mismatch = blank(expectedStdout)
+                        ? Optional.empty()
+                        : OutputComparator.compare(expectedStdout, rr.getStdout());
+                yield mismatch.isEmpty()
+                        ? new Decision(Grade.Verdict.PASSED, 1, 1, "", null)
+                        : new Decision(Grade.Verdict.FAILED, 0, 1, "вывод не совпал: " + mismatch.get().where(), mismatch.get());
+            }
+            case COMPILE_ERROR -> compileError(rr.getDiagnostics(), rr.getMessage());
+            case RUNTIME_ERROR -> new Decision(Grade.Verdict.ERROR, 0, 1, firstLine(rr.getMessage())
+                    + (blank(rr.getStderr()) ? "" : " " + firstLine(rr.getStderr().strip())), null);
+            case FAIL, CANCELLED -> new Decision(Grade.Verdict.ERROR, 0, 1, firstLine(rr.getMessage()), null);
+        };
+    }
+
+    /**
+     * Раннер для проверки чужих решений без UI: запуски и тестовые векторы идут в долгоживущие
+     * worker-JVM {@code workers} (у каждого запуска свой classloader), а не в общий пул
+     * приложения, рассчитанный на одного пользователя. Скрытые JUnit-тесты и запуски Kotlin —
+     * по-прежнему в отдельной JVM.
+     */
+    static JavaSandboxRunner gradingRunner(CodeAssignment ca, WorkerCoordinator workers) {
+        return SandboxBackends.shared().get(ca.getRunner())
+                .runner(JavaSandboxRunner.ExecutionMode.POOLED)
+                .withLaunchProfile(LaunchProfile.fromId(ca.getLaunchProfile()))
+                .withWorkers(workers);
+    }
+
+    /** Прогрев в фоне того, что нужно первой проверке: компилятор, CDS-архив, scratch-папки. */
+    static void prewarm(JavaSandboxRunner runner) {
+        CompilerService.shared().prewarm();
+        ChildJvmArchive.prepareInBackground();
+        SessionScratch.shared().prepareInBackground();
+        runner.prewarm();
+    }
+
+    /** Файлы задания из шаблонов: сначала основной, затем дополнительные. */
+    public static Map<String, String> templateFiles(LessonLoader loader, CodeAssignment ca) {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put(ca.getFileName(), templateText(loader, ca.getTemplate()));
+        if (ca.getFiles() != null) {
+            for (CodeFile f : ca.getFiles()) {
+                if (f != null && f.getFileName() != null) files.put(f.getFileName(), templateText(loader, f.getTemplate()));
+            }
+        }
+        return files;
+    }
+
+    /** Скрытые JUnit-тесты задания: имя файла → исходник; пусто, если тестов нет. */
+    public static Map<String, String> hiddenTests(LessonLoader loader, CodeAssignment ca) {
+        if (ca.getTests() == null) return Map.of();
+        Map<String, String> tests = new LinkedHashMap<>();
+        for (String path : ca.getTests()) {
+            if (path != null && !path.isBlank()) tests.put(path.substring(path.lastIndexOf('/') + 1), templateText(loader, path));
+        }
+        return tests;
+    }
+
+    /** Тестовые векторы задания в виде, понятном sandbox; пусто, если векторов нет. */
+    public static List<TestCase> testCases(CodeAssignment ca) {
+        if (ca.getCases() == null) return List.of();
+        List<TestCase> cases = new ArrayList<>();
+        for (CodeTestCase c : ca.getCases()) {
+            if (c != null) cases.add(new TestCase(c.getName(), c.getStdin(), c.getArgs(), c.getExpectedStdout()));
+        }
+        return cases;
+    }
+
+    private static String templateText(LessonLoader loader, String path) {
+        String text = path == null ? null : loader.readResourceText(path);
+        return text == null ? "// Template not found\n" : text;
+    }
+
+    private static Decision compileError(List<CompileDiagnostic> diagnostics, String message) {
+        String details = diagnostics.stream()
+                .filter(CompileDiagnostic::isError)
+                .findFirst()
+                .map(d -> d.fileName() + ":" + d.line() + ": " + d.message())
+                .orElse(firstLine(message));
+        return new Decision(Grade.Verdict.COMPILE_ERROR, 0, 0, firstLine(details), null);
+    }
+
+    private static String failedTests(JunitRunResult res) {
+        List<String> names = new ArrayList<>();
+        for (JunitRunResult.TestResult t : res.tests()) {
+            if (t.failed()) names.add(t.name());
+        }
+        return "не прошли: " + String.join("; ", names);
+    }
+
+    private static String failedCases(CaseRunResult res) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < res.cases().size(); i++) {
+            CaseRunResult.CaseResult c = res.cases().get(i);
+            if (!c.passed()) names.add(c.testCase().name().isBlank() ? "Тест " + (i + 1) : c.testCase().name());
+        }
+        return "не прошли: " + String.join("; ", names);
+    }
+
+    private static boolean blank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static String firstLine(String text) {
+        if (text == null) return "";
+        int nl = text.indexOf('\n');
+        return nl < 0 ? text : text.substring(0, nl);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.vlsklv.course.app.grading;
+
+/**
+ * Итог проверки одного решения.
+ *
+ * @param submission имя решения: папка, файл или архив без расширения
+ * @param passed     сколько тестов (векторов) пройдено
+ * @param total      сколько их всего; 0 — до тестов не дошло (ошибка компиляции)
+ * @param millis     время проверки, включая компиляцию
+ * @param details    почему не пройдено: первая ошибка компиляции, непройденные тесты, место
+ *                   расхождения вывода; пусто у пройденных
+ */
+public record Grade(String submission, Verdict verdict, long passed, long total, long millis, String details) {
+    public enum Verdict { PASSED, FAILED, COMPILE_ERROR, ERROR }
+
+    public Grade {
+        details = details == null ? "" : details;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.vlsklv.course.app.grading;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Отчёт пакетной проверки, который пишется по мере готовности: строка на решение сразу после
+ * его проверки, без накопления всех итогов в памяти.
+ */
+interface GradeReport extends AutoCloseable {
+    void write(Grade grade) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    static GradeReport of(String format, Writer out) throws IOException {
+        return switch (format) {
+            case "json" -> new Json(out);
+            case "csv" -> new Csv(out);
+            default -> throw new IllegalArgumentException("Неизвестный формат отчёта: " + format + " (json или csv)");
+        };
+    }
+
+    /** JSON-массив объектов {@link Grade}; элементы дописываются по одному. */
+    final class Json implements GradeReport {
+        private final JsonGenerator json;
+
+        Json(Writer out) throws IOException {
+            this.json = new ObjectMapper().getFactory().createGenerator(out);
+            json.writeStartArray();
+            json.writeRaw('\n');
+            json.flush();
+        }
+
+        @Override
+        public synchronized void write(Grade grade) throws IOException {
+            json.writeObject(grade);
+            json.writeRaw('\n');
+            json.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            json.writeEndArray();
+            json.writeRaw('\n');
+            json.close();
+        }
+    }
+
+    /** CSV с заголовком, разделитель — запятая, поля с запятой, кавычкой или переводом строки — в кавычках. */
+    final class Csv implements GradeReport {
+        private final Writer out;
+
+        Csv(Writer out) throws IOException {
+            this.out = out;
+            out.write("submission,verdict,passed,total,millis,details\n");
+            out.flush();
+        }
+
+        @Override
+        public synchronized void write(Grade grade) throws IOException {
+            out.write(field(grade.submission()) + "," + grade.verdict() + "," + grade.passed() + "," + grade.total()
+                    + "," + grade.millis() + "," + field(grade.details()) + "\n");
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private static String field(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
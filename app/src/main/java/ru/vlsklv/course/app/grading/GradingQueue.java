@@ -0,0 +1,190 @@
+package ru.vlsklv.course.app.grading;
+
+import ru.vlsklv.course.app.sandbox.SandboxStats;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Очередь заданий сервера проверки: {@code workers} решений проверяются одновременно, ещё
+ * {@code capacity} ждут. Сверх этого задание не принимается ({@link #submit} вернёт {@code null},
+ * клиент получит 429): принятое задание из очереди уже не выбрасывается, в отличие от фоновых
+ * задач {@link ru.vlsklv.course.app.sandbox.SandboxScheduler}.
+ *
+ * Итоги последних {@link #RETAINED} заданий хранятся в памяти, более старые забываются.
+ */
+final class GradingQueue implements AutoCloseable {
+    /** Сколько завершённых заданий можно запросить по id. */
+    static final int RETAINED = 10_000;
+
+    /** Ожидание и время проверки — по последним {@link #WINDOW} заданиям. */
+    static final int WINDOW = 256;
+
+    enum State { QUEUED, RUNNING, DONE }
+
+    /** Задание: состояние меняет воркер, итог появляется вместе с {@link State#DONE}. */
+    static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String submission;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<Grade> grade = new CompletableFuture<>();
+        private volatile State state = State.QUEUED;
+
+        private Job(String submission) {
+            this.submission = submission;
+        }
+
+        String id() {
+            return id;
+        }
+
+        /** Ждёт итога не дольше {@code timeout}; снимок состояния в любом случае. */
+        View await(Duration timeout) throws InterruptedException {
+            if (!timeout.isZero() && !timeout.isNegative()) {
+                try {
+                    grade.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException ignored) {
+                    // отдаём текущее состояние
+                }
+            }
+            return view();
+        }
+
+        /** {@link State#DONE} — по готовому итогу, а не по полю: иначе DONE мог бы прийти без итога. */
+        View view() {
+            Grade g = grade.getNow(null);
+            return new View(id, submission, g != null ? State.DONE : state, g);
+        }
+    }
+
+    /** Задание в ответе сервера; {@code grade} — {@code null}, пока проверка не закончилась. */
+    record View(String id, String submission, State state, Grade grade) {}
+
+    /** Снимок очереди для {@code GET /stats}. */
+    record Stats(int workers, int capacity, int queued, int running, long accepted, long rejected, long completed,
+                 SandboxStats.Percentiles waitMillis, SandboxStats.Percentiles gradeMillis) {}
+
+    private final int workers;
+    private final int capacity;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final long[] waits = new long[WINDOW];
+    private final long[] grades = new long[WINDOW];
+    private int next;
+    private int size;
+
+    GradingQueue(int workers, int capacity) {
+        this.workers = Math.max(1, workers);
+        this.capacity = Math.max(1, capacity);
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(this.workers, this.workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.capacity), r -> {
+            Thread t = new Thread(r, "grading-worker-" + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        pool.prestartAllCoreThreads();
+    }
+
+    /** {@code true}, если новое задание сейчас будет отклонено: так 429 отдаётся, не читая тело запроса. */
+    boolean isFull() {
+        return pool.getQueue().remainingCapacity() == 0;
+    }
+
+    /** Ставит проверку в очередь; {@code null} — очередь заполнена. */
+    Job submit(String submission, Supplier<Grade> work) {
+        Job job = new Job(submission);
+        jobs.put(job.id, job);
+        try {
+            pool.execute(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.incrementAndGet();
+            return null;
+        }
+        accepted.incrementAndGet();
+        return job;
+    }
+
+    /** Отказ, посчитанный до постановки в очередь (см. {@link #isFull()}). */
+    void countRejected() {
+        rejected.incrementAndGet();
+    }
+
+    Job find(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Через сколько секунд есть смысл повторить отклонённый запрос: за это время воркеры
+     * примерно разберут очередь. Оценка по медиане времени проверки, от 1 до 60 секунд.
+     */
+    long retryAfterSeconds() {
+        long p50 = Math.max(0, stats().gradeMillis().p50());
+        long drainMillis = p50 * (pool.getQueue().size() + workers) / workers;
+        return Math.max(1, Math.min(60, (drainMillis + 999) / 1000));
+    }
+
+    synchronized Stats stats() {
+        return new Stats(workers, capacity, pool.getQueue().size(), pool.getActiveCount(),
+                accepted.get(), rejected.get(), completed.get(),
+                SandboxStats.Percentiles.of(Arrays.stream(waits, 0, size)),
+                SandboxStats.Percentiles.of(Arrays.stream(grades, 0, size)));
+    }
+
+    private void run(Job job, Supplier<Grade> work) {
+        long waitMillis = (System.nanoTime() - job.enqueuedNanos) / 1_000_000;
+        job.state = State.RUNNING;
+        Grade grade;
+        try {
+            grade = work.get();
+        } catch (RuntimeException e) {
+            grade = new Grade(job.submission, Grade.Verdict.ERROR, 0, 0, 0, e.toString());
+        }
+        record(waitMillis, grade.millis());
+        job.grade.complete(grade);
+        job.state = State.DONE;
+        completed.incrementAndGet();
+
+        finished.add(job.id);
+        if (finishedCount.incrementAndGet() > RETAINED) {
+            String oldest = finished.poll();
+            if (oldest != null) {
+                jobs.remove(oldest);
+                finishedCount.decrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void record(long waitMillis, long gradeMillis) {
+        waits[next] = waitMillis;
+        grades[next] = gradeMillis;
+        next = (next + 1) % WINDOW;
+        if (size < WINDOW) size++;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
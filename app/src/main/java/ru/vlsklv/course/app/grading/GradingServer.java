@@ -0,0 +1,338 @@
+package ru.vlsklv.course.app.grading;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.SessionScratch;
+import ru.vlsklv.course.app.sandbox.WorkerCoordinator;
+import ru.vlsklv.course.engine.model.CodeAssignment;
+import ru.vlsklv.course.engine.model.Lesson;
+import ru.vlsklv.course.engine.repo.LessonLoader;
+import ru.vlsklv.course.engine.repo.LessonRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Локальный HTTP-сервер проверки для компьютерного класса:
+ * {@code java -jar app-all.jar serve --host 0.0.0.0 --port 8765}.
+ *
+ * <ul>
+ *   <li>{@code POST /jobs?lesson=java-011[&step=N][&name=ivanov]} — тело: исходник основного файла
+ *       или zip-архив решения. 202 и задание, 429 с {@code Retry-After}, если очередь заполнена,
+ *       413 — тело или распакованный архив больше допустимого.</li>
+ *   <li>{@code GET /jobs/<id>[?wait=<секунды>]} — состояние и итог ({@link Grade}); с {@code wait}
+ *       ответ придёт, как только проверка закончится (но не позже {@link #MAX_WAIT}).</li>
+ *   <li>{@code GET /stats} — очередь, отказы, ожидание и время проверки.</li>
+ * </ul>
+ *
+ * Проверяет {@link CodeGrader} по правилам кнопки «Проверить», очередь и отказы —
+ * {@link GradingQueue}, запуски — {@code --workers} worker-JVM {@link WorkerCoordinator}.
+ * По умолчанию слушает только localhost: сервер запускает присланный код.
+ */
+public final class GradingServer implements AutoCloseable {
+    /** Больше решение не бывает: и исходник, и архив с несколькими файлами — десятки килобайт. */
+    static final int MAX_BODY_BYTES = 1 << 20;
+
+    /** Предел ожидания итога в {@code GET /jobs/<id>?wait=}. */
+    static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    /** Потоки обработки запросов и сколько запросов может ждать свободного потока. */
+    static final int HANDLER_THREADS = 64;
+    static final int HANDLER_BACKLOG = 256;
+
+    private static final String USAGE = """
+            Использование: serve [параметры]
+
+              --host <адрес>      где слушать (127.0.0.1; 0.0.0.0 — вся локальная сеть)
+              --port <порт>       порт (8765; 0 — любой свободный)
+              --workers <N>       сколько решений проверять одновременно (число ядер)
+              --queue <N>         сколько решений может ждать, сверх — 429 (4 × workers)
+            """;
+
+    private final GradingQueue queue;
+    private final WorkerCoordinator workers;
+    private final LessonLoader loader = new LessonLoader();
+    private final LessonRepository lessons;
+    /** По заданию урока (объекты заданий загружаются один раз и сравниваются по ссылке). */
+    private final Map<CodeAssignment, CodeGrader> graders = new ConcurrentHashMap<>();
+    private final ObjectMapper json = new ObjectMapper();
+    private final ThreadPoolExecutor handlers;
+    private final HttpServer http;
+
+    private GradingServer(Options options) throws IOException {
+        this.lessons = loader.loadFromClasspathIndex("lessons/index.yml");
+        this.queue = new GradingQueue(options.workers(), options.queue());
+        this.workers = new WorkerCoordinator(options.workers());
+        // запросы короткие, кроме ожидания итога (?wait=), которое держит поток до MAX_WAIT;
+        // сверх HANDLER_BACKLOG HttpServer закрывает соединение, не создавая новых потоков
+        this.handlers = new ThreadPoolExecutor(HANDLER_THREADS, HANDLER_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(HANDLER_BACKLOG), r -> {
+            Thread t = new Thread(r, "grading-http");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        handlers.allowCoreThreadTimeOut(true);
+        this.http = HttpServer.create(new InetSocketAddress(options.host(), options.port()), 0);
+        http.setExecutor(handlers);
+        http.createContext("/jobs", this::jobs);
+        http.createContext("/stats", this::stats);
+    }
+
+    /** Запускает сервер; остановка — {@link #close()}. */
+    public static GradingServer start(Options options) throws IOException {
+        GradingServer server = new GradingServer(options);
+        server.http.start();
+        return server;
+    }
+
+    public InetSocketAddress address() {
+        return http.getAddress();
+    }
+
+    public static void main(String[] args) {
+        try {
+            Options options = Options.parse(args);
+            GradingServer server = start(options);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                SessionScratch.shared().close();
+            }, "grading-server-shutdown"));
+            InetSocketAddress address = server.address();
+            System.err.printf(Locale.ROOT, "Сервер проверки: http://%s:%d (воркеров: %d, очередь: %d)%n",
+                    address.getHostString(), address.getPort(), options.workers(), options.queue());
+            // дальше работает поток HttpServer, main может завершиться
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (Exception e) {
+            System.err.println("Сервер не запущен: " + e);
+            System.exit(1);
+        }
+    }
+
+    private void jobs(HttpExchange ex) throws IOException {
+        try (ex) {
+            route(ex);
+        }
+    }
+
+    private void route(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+        if (path.equals("/jobs") || path.equals("/jobs/")) {
+            if (!ex.getRequestMethod().equals("POST")) {
+                error(ex, 405, "Только POST /jobs");
+                return;
+            }
+            submit(ex, query);
+        } else if (path.startsWith("/jobs/") && path.indexOf('/', "/jobs/".length()) < 0) {
+            if (!ex.getRequestMethod().equals("GET")) {
+                error(ex, 405, "Только GET /jobs/<id>");
+                return;
+            }
+            status(ex, path.substring("/jobs/".length()), query);
+        } else {
+            error(ex, 404, "Нет такого адреса: " + path);
+        }
+    }
+
+    private void submit(HttpExchange ex, Map<String, String> query) throws IOException {
+        // до чтения тела: при перегрузке отказ должен быть дешёвым
+        if (queue.isFull()) {
+            queue.countRejected();
+            busy(ex);
+            return;
+        }
+
+        String lessonId = query.get("lesson");
+        if (lessonId == null || lessonId.isBlank()) {
+            error(ex, 400, "Не указан параметр lesson");
+            return;
+        }
+        Lesson lesson = lessons.findById(lessonId);
+        if (lesson == null) {
+            error(ex, 404, "Урок не найден: " + lessonId);
+            return;
+        }
+        CodeGrader grader;
+        CodeAssignment ca;
+        try {
+            ca = BatchGrader.codeAssignment(lesson, step(query.get("step")));
+            grader = graders.computeIfAbsent(ca, this::newGrader);
+        } catch (IllegalArgumentException e) {
+            error(ex, 400, e.getMessage());
+            return;
+        }
+
+        byte[] body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            error(ex, 413, "Решение больше " + MAX_BODY_BYTES / 1024 + " КБ");
+            return;
+        }
+        if (body.length == 0) {
+            error(ex, 400, "Пустое тело запроса: нужен исходник или zip-архив");
+            return;
+        }
+        Submissions.Submission submission;
+        try {
+            submission = Submissions.read(query.getOrDefault("name", "submission"), body, ca.getFileName());
+        } catch (Submissions.TooLargeException e) {
+            error(ex, 413, e.getMessage());
+            return;
+        } catch (IOException e) {
+            error(ex, 400, "Не удалось прочитать решение: " + e.getMessage());
+            return;
+        }
+        if (submission.files().isEmpty()) {
+            error(ex, 400, "Нет файлов с исходниками");
+            return;
+        }
+
+        GradingQueue.Job job = queue.submit(submission.name(), () -> grader.grade(submission.name(), submission.files()));
+        if (job == null) {
+            busy(ex);
+            return;
+        }
+        ex.getResponseHeaders().set("Location", "/jobs/" + job.id());
+        send(ex, 202, job.view());
+    }
+
+    private void status(HttpExchange ex, String id, Map<String, String> query) throws IOException {
+        GradingQueue.Job job = queue.find(id);
+        if (job == null) {
+            error(ex, 404, "Задание не найдено: " + id);
+            return;
+        }
+        Duration wait = Duration.ZERO;
+        String w = query.get("wait");
+        if (w != null) {
+            try {
+                wait = Duration.ofSeconds(Math.max(0, Math.min(MAX_WAIT.toSeconds(), Long.parseLong(w))));
+            } catch (NumberFormatException e) {
+                error(ex, 400, "wait: нужно число секунд, а не " + w);
+                return;
+            }
+        }
+        try {
+            send(ex, 200, job.await(wait));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(ex, 200, job.view());
+        }
+    }
+
+    private void stats(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("GET")) {
+                error(ex, 405, "Только GET /stats");
+                return;
+            }
+            send(ex, 200, queue.stats());
+        }
+    }
+
+    private CodeGrader newGrader(CodeAssignment ca) {
+        JavaSandboxRunner runner = CodeGrader.gradingRunner(ca, workers);
+        CodeGrader.prewarm(runner);
+        return new CodeGrader(ca, loader, runner);
+    }
+
+    private void busy(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Retry-After", Long.toString(queue.retryAfterSeconds()));
+        error(ex, 429, "Очередь проверки заполнена, повторите позже");
+    }
+
+    private void error(HttpExchange ex, int code, String message) throws IOException {
+        send(ex, code, Map.of("error", message));
+    }
+
+    private void send(HttpExchange ex, int code, Object body) throws IOException {
+        byte[] bytes = json.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(code, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    private static int step(String value) {
+        if (value == null) return 0;
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+            // ниже
+        }
+        throw new IllegalArgumentException("step: нужно целое число больше 0, а не " + value);
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        queue.close();
+        workers.close();
+        handlers.shutdownNow();
+    }
+
+    public record Options(String host, int port, int workers, int queue) {
+        public static Options parse(String[] args) {
+            String host = "127.0.0.1";
+            int port = 8765;
+            int workers = Runtime.getRuntime().availableProcessors();
+            int queue = 0;
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--host" -> host = value(args, ++i, arg);
+                    case "--port" -> port = number(value(args, ++i, arg), arg, 0);
+                    case "--workers" -> workers = number(value(args, ++i, arg), arg, 1);
+                    case "--queue" -> queue = number(value(args, ++i, arg), arg, 1);
+                    default -> throw new IllegalArgumentException("Лишний аргумент: " + arg);
+                }
+            }
+            return new Options(host, port, workers, queue == 0 ? 4 * workers : queue);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) throw new IllegalArgumentException("Нет значения у " + option);
+            return args[i];
+        }
+
+        private static int number(String value, String option, int min) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n >= min) return n;
+            } catch (NumberFormatException ignored) {
+                // ниже
+            }
+            throw new IllegalArgumentException(option + ": нужно целое число не меньше " + min + ", а не " + value);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.vlsklv.course.app.grading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Решения в папке: каждая вложенная папка, zip-архив или отдельный файл с исходником — одно решение.
+ *
+ * Корень исходников решения — папка, где лежит основной файл задания (Main.java): студенты часто
+ * присылают его внутри {@code src/} или лишней папки верхнего уровня. Отдельный файл считается
+ * основным файлом задания, как бы он ни назывался.
+ */
+final class Submissions {
+    /** Решение: имя и файлы (путь относительно корня исходников → исходник). */
+    record Submission(String name, Map<String, String> files) {}
+
+    /** Пределы распаковки архива: маленький zip может разворачиваться в гигабайты. */
+    static final int MAX_ZIP_ENTRIES = 1000;
+    static final long MAX_ZIP_FILE_BYTES = 1 << 20;
+    static final long MAX_ZIP_TOTAL_BYTES = 8 << 20;
+
+    /** Архив превышает пределы распаковки. */
+    static final class TooLargeException extends IOException {
+        TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private static final List<String> SOURCE_EXTENSIONS = List.of(".java", ".kt");
+
+    private Submissions() {}
+
+    /** Решения в {@code dir} по алфавиту; содержимое читается лениво, при проверке. */
+    static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries
+                    .filter(p -> !p.getFileName().toString().startsWith("."))
+                    .filter(p -> Files.isDirectory(p) || isSource(p) || isZip(p))
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    static Submission read(Path path, String mainFileName) throws IOException {
+        if (Files.isDirectory(path)) return new Submission(path.getFileName().toString(), rebase(readDirectory(path), mainFileName));
+        String name = stripExtension(path.getFileName().toString());
+        if (isZip(path)) return new Submission(name, rebase(readZip(path), mainFileName));
+        return new Submission(name, Map.of(mainFileName, Files.readString(path, StandardCharsets.UTF_8)));
+    }
+
+    /** Решение, присланное одним телом (сервер проверки): zip-архив или исходник основного файла. */
+    static Submission read(String name, byte[] body, String mainFileName) throws IOException {
+        if (isZip(body)) {
+            try (InputStream in = new ByteArrayInputStream(body)) {
+                return new Submission(name, rebase(readZip(in), mainFileName));
+            }
+        }
+        return new Submission(name, Map.of(mainFileName, new String(body, StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, String> readDirectory(Path dir) throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.filter(Files::isRegularFile).filter(Submissions::isSource).sorted().toList()) {
+                files.put(dir.relativize(p).toString().replace('\\', '/'), Files.readString(p, StandardCharsets.UTF_8));
+            }
+        }
+        return files;
+    }
+
+    private static Map<String, String> readZip(Path zip) throws IOException {
+        try (InputStream in = Files.newInputStream(zip)) {
+            return readZip(in);
+        }
+    }
+
+    /**
+     * Распакованные байты считаются по всем записям, и по пропущенным тоже: иначе их распаковка
+     * при переходе к следующей записи была бы бесплатной для присылающего.
+     */
+    private static Map<String, String> readZip(InputStream in) throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int entries = 0;
+        try (ZipInputStream zin = new ZipInputStream(in, StandardCharsets.UTF_8)) {
+            for (ZipEntry e; (e = zin.getNextEntry()) != null; ) {
+                if (++entries > MAX_ZIP_ENTRIES) throw new TooLargeException("В архиве больше " + MAX_ZIP_ENTRIES + " записей");
+                String entry = e.getName().replace('\\', '/');
+                boolean keep = !e.isDirectory() && isSource(entry) && !entry.startsWith("__MACOSX/") && !entry.contains("../");
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                long size = 0;
+                for (int n; (n = zin.read(buffer)) > 0; ) {
+                    size += n;
+                    total += n;
+                    if (size > MAX_ZIP_FILE_BYTES) {
+                        throw new TooLargeException("Файл в архиве больше " + MAX_ZIP_FILE_BYTES / 1024 + " КБ: " + entry);
+                    }
+                    if (total > MAX_ZIP_TOTAL_BYTES) {
+                        throw new TooLargeException("Архив распаковывается больше чем в " + (MAX_ZIP_TOTAL_BYTES >> 20) + " МБ");
+                    }
+                    if (keep) content.write(buffer, 0, n);
+                }
+                if (keep) files.put(entry, content.toString(StandardCharsets.UTF_8));
+            }
+        }
+        return files;
+    }
+
+    /** Пути относительно папки с основным файлом (самой неглубокой, если их несколько). */
+    private static Map<String, String> rebase(Map<String, String> files, String mainFileName) {
+        String prefix = null;
+        for (String path : files.keySet()) {
+            if (!path.equals(mainFileName) && !path.endsWith("/" + mainFileName)) continue;
+            String p = path.substring(0, path.length() - mainFileName.length());
+            if (prefix == null || p.length() < prefix.length()) prefix = p;
+        }
+        if (prefix == null || prefix.isEmpty()) return files;
+
+        // файлы вне корня исходников (тесты студента, черновики) не компилируются
+        Map<String, String> rebased = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            if (e.getKey().startsWith(prefix)) rebased.put(e.getKey().substring(prefix.length()), e.getValue());
+        }
+        return rebased;
+    }
+
+    private static boolean isSource(Path p) {
+        return isSource(p.getFileName().toString());
+    }
+
+    private static boolean isSource(String name) {
+        return SOURCE_EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+    private static boolean isZip(Path p) {
+        return Files.isRegularFile(p) && p.getFileName().toString().endsWith(".zip");
+    }
+
+    /** Сигнатура локального заголовка zip: PK\3\4. */
+    private static boolean isZip(byte[] body) {
+        return body.length >= 4 && body[0] == 'P' && body[1] == 'K' && body[2] == 3 && body[3] == 4;
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,116 @@
+package ru.vlsklv.course.app.sandbox;
+
+import ru.vlsklv.course.engine.grading.OutputDiff;
+
+import java.util.List;
+
+/**
+ * Итог прогона тестовых векторов ({@link JavaSandboxRunner#runCases}).
+ *
+ * {@link Status#OK} значит, что код скомпилировался и все векторы были запущены;
+ * пройдены ли они — в {@link #cases()} и {@link #allPassed()}.
+ */
+public final class CaseRunResult {
+    public enum Status { OK, COMPILE_ERROR, FAIL, CANCELLED }
+
+    /** Сколько строк «-»/«+» показывать в отчёте на один вектор. */
+    private static final int MAX_DIFF_LINES = 40;
+
+    /** Результат одного вектора: запуск и совпал ли его вывод с ожидаемым. */
+    public record CaseResult(TestCase testCase, JavaSandboxRunner.RunResult run, boolean passed) {}
+
+    private final Status status;
+    private final String message;
+    private final List<CaseResult> cases;
+    private final List<CompileDiagnostic> diagnostics;
+
+    private CaseRunResult(Status status, String message, List<CaseResult> cases, List<CompileDiagnostic> diagnostics) {
+        this.status = status;
+        this.message = message == null ? "" : message;
+        this.cases = List.copyOf(cases);
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public static CaseRunResult ok(List<CaseResult> cases) {
+        return new CaseRunResult(Status.OK, "", cases, List.of());
+    }
+
+    public static CaseRunResult compileError(String message) {
+        return compileError(message, List.of());
+    }
+
+    public static CaseRunResult compileError(String message, List<CompileDiagnostic> diagnostics) {
+        return new CaseRunResult(Status.COMPILE_ERROR, message, List.of(), diagnostics);
+    }
+
+    public static CaseRunResult fail(String message) {
+        return new CaseRunResult(Status.FAIL, message, List.of(), List.of());
+    }
+
+    /** Прогон остановлен через {@link RunHandle#cancel()}. */
+    public static CaseRunResult cancelled() {
+        return new CaseRunResult(Status.CANCELLED, "Запуск остановлен.", List.of(), List.of());
+    }
+
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public List<CaseResult> cases() { return cases; }
+
+    /** Сообщения компилятора при {@link Status#COMPILE_ERROR}, иначе пусто. */
+    public List<CompileDiagnostic> getDiagnostics() { return diagnostics; }
+
+    public boolean allPassed() {
+        return status == Status.OK && cases.stream().allMatch(CaseResult::passed);
+    }
+
+    public long passedCount() {
+        return cases.stream().filter(CaseResult::passed).count();
+    }
+
+    /** Текст для терминала: по строке на вектор, у непройденных — ожидаемый и полученный вывод. */
+    public String report() {
+        if (status != Status.OK) return message;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cases.size(); i++) {
+            CaseResult c = cases.get(i);
+            String name = c.testCase().name().isBlank() ? "Тест " + (i + 1) : c.testCase().name();
+            JavaSandboxRunner.RunResult rr = c.run();
+            if (c.passed()) {
+                sb.append("[OK]   ").append(name).append('\n');
+            } else if (rr.getStatus() != JavaSandboxRunner.RunResult.Status.OK) {
+                sb.append("[FAIL] ").append(name).append(": ").append(firstLine(rr.getMessage())).append('\n');
+            } else {
+                sb.append("[FAIL] ").append(name).append(": вывод не совпал");
+                c.testCase().mismatch(rr.getStdout()).ifPresent(m -> sb.append(" (").append(m.where()).append(')'));
+                sb.append('\n');
+                if (!c.testCase().stdin().isEmpty()) appendBlock(sb, "Ввод", c.testCase().stdin());
+                appendDiff(sb, c.testCase().expectedStdout(), rr.getStdout());
+            }
+        }
+        sb.append("\nПройдено ").append(passedCount()).append(" из ").append(cases.size()).append('.');
+        return sb.toString();
+    }
+
+    private static void appendBlock(StringBuilder sb, String title, String text) {
+        sb.append("       ").append(title).append(":\n");
+        for (String line : text.replace("\r\n", "\n").replace('\r', '\n').stripTrailing().split("\n", -1)) {
+            sb.append("         ").append(line).append('\n');
+        }
+    }
+
+    /** Различающиеся участки с контекстом, а не оба вывода целиком. */
+    private static void appendDiff(StringBuilder sb, String expected, String actual) {
+        sb.append("       Различия (- ожидалось, + получено):\n");
+        String diff = OutputDiff.diff(expected, actual, 2, MAX_DIFF_LINES).format();
+        for (String line : diff.split("\n")) {
+            sb.append("         ").append(line).append('\n');
+        }
+    }
+
+    private static String firstLine(String text) {
+        if (text == null) return "";
+        int nl = text.indexOf('\n');
+        return nl < 0 ? text : text.substring(0, nl);
+    }
+}
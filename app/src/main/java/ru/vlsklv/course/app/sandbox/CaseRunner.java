@@ -0,0 +1,99 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Прогон нескольких тестовых векторов в одной JVM.
+ *
+ * На прогон запускается отдельный worker ({@link WorkerPool.Worker}) с флагами профиля запуска,
+ * и каждый вектор идёт в него отдельным запросом: свой classloader (статические поля
+ * сбрасываются), свой stdin, аргументы и таймаут. После таймаута, падения или System.exit
+ * worker заменяется новым, и прогон продолжается со следующего вектора.
+ *
+ * С {@link WorkerCoordinator} векторы расходятся по его worker'ам и выполняются параллельно,
+ * итоги собираются в порядке векторов.
+ */
+final class CaseRunner {
+    private final List<String> jvmOptions;
+    private final int outputLimitBytes;
+    private final WorkerCoordinator workers;
+
+    CaseRunner(List<String> jvmOptions, int outputLimitBytes, WorkerCoordinator workers) {
+        this.jvmOptions = jvmOptions;
+        this.outputLimitBytes = outputLimitBytes;
+        this.workers = workers;
+    }
+
+    CaseRunResult run(CompiledClasses classes, String mainClass, List<TestCase> cases, Duration perCaseTimeout,
+                      RunHandle<?> handle) {
+        if (workers != null) return runOnWorkers(classes, mainClass, cases, perCaseTimeout, handle);
+        List<CaseRunResult.CaseResult> results = new ArrayList<>();
+        WorkerPool.Worker worker = null;
+        try {
+            for (TestCase testCase : cases) {
+                if (handle.isCancelled()) return CaseRunResult.cancelled();
+                if (worker == null) {
+                    try {
+                        worker = WorkerPool.Worker.start(jvmOptions);
+                    } catch (IOException e) {
+                        return CaseRunResult.fail("Не удалось запустить JVM для тестов: " + e.getMessage());
+                    }
+                }
+
+                if (!handle.attach(worker::destroy)) return CaseRunResult.cancelled();
+                WorkerPool.Outcome outcome;
+                try {
+                    outcome = worker.run(classes, mainClass, testCase.args().toArray(new String[0]),
+                            testCase.stdin().getBytes(StandardCharsets.UTF_8), perCaseTimeout, outputLimitBytes);
+                } finally {
+                    handle.detach();
+                }
+                if (handle.isCancelled()) return CaseRunResult.cancelled();
+                if (!outcome.reusable()) {
+                    worker.destroy();
+                    worker = null;
+                }
+
+                JavaSandboxRunner.RunResult rr = outcome.result();
+                boolean passed = rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK && testCase.accepts(rr.getStdout());
+                results.add(new CaseRunResult.CaseResult(testCase, rr, passed));
+            }
+            return CaseRunResult.ok(results);
+        } finally {
+            if (worker != null) worker.destroy();
+        }
+    }
+
+    private CaseRunResult runOnWorkers(CompiledClasses classes, String mainClass, List<TestCase> cases,
+                                       Duration perCaseTimeout, RunHandle<?> handle) {
+        List<RunHandle<JavaSandboxRunner.RunResult>> runs = new ArrayList<>();
+        for (TestCase testCase : cases) {
+            runs.add(workers.submit(classes, mainClass, testCase.args().toArray(new String[0]),
+                    testCase.stdin().getBytes(StandardCharsets.UTF_8), jvmOptions, perCaseTimeout, outputLimitBytes));
+        }
+        if (!handle.attach(() -> runs.forEach(RunHandle::cancel))) {
+            runs.forEach(RunHandle::cancel);
+            return CaseRunResult.cancelled();
+        }
+        try {
+            List<CaseRunResult.CaseResult> results = new ArrayList<>();
+            for (int i = 0; i < cases.size(); i++) {
+                JavaSandboxRunner.RunResult rr = runs.get(i).await();
+                if (handle.isCancelled()) return CaseRunResult.cancelled();
+                TestCase testCase = cases.get(i);
+                boolean passed = rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK && testCase.accepts(rr.getStdout());
+                results.add(new CaseRunResult.CaseResult(testCase, rr, passed));
+            }
+            return CaseRunResult.ok(results);
+        } catch (InterruptedException e) {
+            runs.forEach(RunHandle::cancel);
+            return CaseRunResult.fail("Прогон тестов прерван.");
+        } finally {
+            handle.detach();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Динамический AppCDS-архив для дочерних JVM sandbox.
+ *
+ * Классы пакета sandbox копируются в маленький jar в {@code ~/.aqa-course/cache/cds}
+ * (имя — хэш содержимого), потому что CDS не работает с каталогами в classpath,
+ * а fat jar приложения меняется при каждой сборке. Затем в фоне одна обучающая
+ * дочерняя JVM запускается с {@code -XX:ArchiveClassesAtExit}, и архив проверяется
+ * запуском с {@code -Xshare:on}. После этого {@link #jvmOptions} добавляет
+ * {@code -XX:SharedArchiveFile} к каждому запуску с этим jar в classpath.
+ *
+ * Пока архива нет или он не прошёл проверку, дети стартуют как раньше. Отключить:
+ * {@code -Daqa.sandbox.cds=false}.
+ */
+public final class ChildJvmArchive {
+    private static final String PACKAGE_DIR = ChildJvmArchive.class.getPackageName().replace('.', '/') + "/";
+
+    /** Обучающая программа: типичные для уроков коллекции, stream, форматирование, java.time. */
+    private static final String TRAINING_SOURCE = """
+            import java.time.LocalDate;
+            import java.util.*;
+            import java.util.stream.Collectors;
+
+            public class Main {
+                record Response(int status, String body) {}
+
+                public static void main(String[] args) {
+                    List<Response> responses = new ArrayList<>(List.of(new Response(200, "ok"), new Response(404, "nf")));
+                    Map<Boolean, List<Integer>> byOk = responses.stream()
+                            .collect(Collectors.partitioningBy(r -> r.status() < 400,
+                                    Collectors.mapping(Response::status, Collectors.toList())));
+                    Set<String> bodies = new TreeSet<>();
+                    for (Response r : responses) bodies.add(r.body().toUpperCase());
+                    Optional<Response> first = responses.stream().filter(r -> r.status() == 200).findFirst();
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(String.format("%s %s %d", byOk, bodies, first.map(Response::status).orElse(-1)));
+                    System.out.println(sb + " " + LocalDate.of(2024, 1, 1).plusDays(1) + " " + Arrays.toString(args));
+                    System.err.println(new HashMap<>(Map.of("k", 1.5)));
+                }
+            }
+            """;
+
+    private static final Path DIR = Path.of(System.getProperty("user.home"), ".aqa-course", "cache", "cds");
+
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("aqa.sandbox.cds", "true"));
+    private static volatile String jarPath;
+    private static volatile String archivePath;
+
+    private ChildJvmArchive() {}
+
+    /** Готовит jar и архив в фоновом потоке; повторные вызовы ничего не делают. */
+    public static void prepareInBackground() {
+        if (!enabled || !STARTED.compareAndSet(false, true)) return;
+
+        Thread t = new Thread(() -> {
+            try {
+                prepare();
+            } catch (Exception ignored) {
+                // без архива дети просто стартуют медленнее
+            }
+        }, "sandbox-cds-prepare");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    public static boolean isReady() {
+        return enabled && archivePath != null;
+    }
+
+    static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /** Стабильный classpath для детей или {@code null}, пока jar не собран. */
+    static String stableClassPath() {
+        return enabled ? jarPath : null;
+    }
+
+    /**
+     * Опции для дочерней JVM с данным classpath. Логи cds выключены: предупреждение
+     * о непригодном архиве JVM печатает в stdout, то есть прямо в вывод студента.
+     * Архив годится и когда к jar добавлены другие пути (JUnit): JVM требует совпадения префикса.
+     */
+    static List<String> jvmOptions(String classPath) {
+        String archive = archivePath;
+        if (!enabled || archive == null || jarPath == null) return List.of();
+        if (!classPath.equals(jarPath) && !classPath.startsWith(jarPath + File.pathSeparator)) return List.of();
+        return List.of("-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off", "-Xlog:cds+dynamic=off");
+    }
+
+    /** Синхронная подготовка (фоновый поток, бенчмарк). */
+    static synchronized void prepare() throws Exception {
+        Map<String, byte[]> classes = packageClasses();
+        if (classes.isEmpty()) return;
+
+        String jarHash = sha256(classes).substring(0, 16);
+        String jdkHash = sha256(Map.of(
+                "home", System.getProperty("java.home", "").getBytes(StandardCharsets.UTF_8),
+                "version", Runtime.version().toString().getBytes(StandardCharsets.UTF_8)
+        )).substring(0, 16);
+
+        Files.createDirectories(DIR);
+        Path jar = DIR.resolve("sandbox-child-" + jarHash + ".jar");
+        Path archive = DIR.resolve("sandbox-child-" + jarHash + "-" + jdkHash + ".jsa");
+        deleteOthers(jar, archive);
+
+        if (!Files.isRegularFile(jar)) writeJar(jar, classes);
+        jarPath = jar.toAbsolutePath().toString();
+
+        if (!Files.isRegularFile(archive) || !validate(archive)) {
+            Files.deleteIfExists(archive);
+            if (!dump(archive)) return;
+        }
+        archivePath = archive.toAbsolutePath().toString();
+    }
+
+    /** Классы пакета sandbox из каталога сборки или из jar приложения. */
+    private static Map<String, byte[]> packageClasses() throws Exception {
+        Path source = Path.of(ChildJvmArchive.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Map<String, byte[]> classes = new TreeMap<>();
+        if (Files.isDirectory(source)) {
+            Path dir = source.resolve(PACKAGE_DIR);
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path p : files.filter(f -> f.toString().endsWith(".class")).toList()) {
+                    classes.put(PACKAGE_DIR + p.getFileName(), Files.readAllBytes(p));
+                }
+            }
+            return classes;
+        }
+        try (JarFile jar = new JarFile(source.toFile())) {
+            for (JarEntry e : jar.stream().toList()) {
+                String name = e.getName();
+                if (name.startsWith(PACKAGE_DIR) && name.endsWith(".class") && name.indexOf('/', PACKAGE_DIR.length()) < 0) {
+                    try (InputStream in = jar.getInputStream(e)) {
+                        classes.put(name, in.readAllBytes());
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static void writeJar(Path jar, Map<String, byte[]> classes) throws IOException {
+        Path tmp = Files.createTempFile(DIR, "sandbox-child-", ".tmp");
+        try {
+            try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+                    out.putNextEntry(new JarEntry(e.getKey()));
+                    out.write(e.getValue());
+                    out.closeEntry();
+                }
+            }
+            Files.move(tmp, jar, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Обучающий запуск: JVM при выходе сама записывает классы, которые загрузила. */
+    private static boolean dump(Path archive) throws Exception {
+        JavaSandboxRunner.MemoryCompilation training = CompilerService.shared().compile("Main.java", TRAINING_SOURCE);
+        if (!training.success()) return false;
+
+        Path tmp = DIR.resolve(archive.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        List<String> cmd = new ArrayList<>(List.of(
+                JavaSandboxRunner.resolveJavaBin(),
+                "-XX:ArchiveClassesAtExit=" + tmp.toAbsolutePath(),
+                "-Xlog:cds=off",
+                "-Xlog:cds+dynamic=off",
+                "-cp", jarPath,
+                SandboxChildMain.class.getName(), "Main"
+        ));
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process p = pb.start();
+        try (DataOutputStream stdin = new DataOutputStream(new BufferedOutputStream(p.getOutputStream()))) {
+            training.classes().writeTo(stdin);
+        }
+        if (!p.waitFor(60, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            return false;
+        }
+        try {
+            if (p.exitValue() != 0 || !Files.isRegularFile(tmp) || !validate(tmp)) return false;
+            Files.move(tmp, archive, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** С -Xshare:on JVM не стартует, если архив не подходит к этому JDK и jar. */
+    private static boolean validate(Path archive) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+                JavaSandboxRunner.resolveJavaBin(),
+                "-Xshare:on",
+                "-XX:SharedArchiveFile=" + archive.toAbsolutePath(),
+                "-cp", jarPath,
+                "-version"
+        );
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process p = pb.start();
+        if (!p.waitFor(30, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            return false;
+        }
+        return p.exitValue() == 0;
+    }
+
+    /** Jar и архивы от прошлых версий приложения или JDK больше не понадобятся. */
+    private static void deleteOthers(Path jar, Path archive) throws IOException {
+        try (Stream<Path> files = Files.list(DIR)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (!name.startsWith("sandbox-child-") || p.equals(jar) || p.equals(archive)) continue;
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                    // на Windows файл может держать ещё работающий процесс — удалим в следующий раз
+                }
+            }
+        }
+    }
+
+    private static String sha256(Map<String, byte[]> parts) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, byte[]> e : new TreeMap<>(parts).entrySet()) {
+                sha.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+                sha.update(e.getValue());
+            }
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Ресурсы дочернего процесса: пиковый RSS (VmHWM из {@code /proc/<pid>/status}) и процессорное
+ * время ({@link ProcessHandle.Info#totalCpuDuration()}).
+ *
+ * После выхода процесса ни /proc, ни ProcessHandle.Info уже ничего не знают, поэтому оба значения
+ * опрашиваются, пока процесс жив, и последний замер считается итогом (с точностью до интервала
+ * опроса). RSS есть только в Linux; CPU — там, где ОС отдаёт его в ProcessHandle.Info.
+ */
+final class ChildProcessSampler {
+    private static final long INTERVAL_MILLIS = 10;
+
+    /** Итог опроса; -1 — значение измерить не удалось. */
+    record Usage(long peakRssBytes, long cpuMillis) {}
+
+    private final ProcessHandle process;
+    private final Path status;
+    private final Thread thread;
+    private volatile long peakBytes = -1;
+    private volatile long cpuMillis = -1;
+    private volatile boolean stopped;
+
+    private ChildProcessSampler(ProcessHandle process) {
+        Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+        this.process = process;
+        this.status = Files.isReadable(status) ? status : null;
+        this.thread = new Thread(this::poll, "sandbox-process-sampler");
+    }
+
+    static ChildProcessSampler start(ProcessHandle process) {
+        ChildProcessSampler sampler = new ChildProcessSampler(process);
+        sampler.thread.setDaemon(true);
+        sampler.thread.start();
+        return sampler;
+    }
+
+    /** Останавливает опрос и возвращает последние замеры. */
+    Usage stop() throws InterruptedException {
+        stopped = true;
+        thread.interrupt();
+        thread.join(100);
+        return new Usage(peakBytes, cpuMillis);
+    }
+
+    private void poll() {
+        while (!stopped && process.isAlive()) {
+            long hwm = readVmHwm();
+            if (hwm > peakBytes) peakBytes = hwm;
+            process.info().totalCpuDuration().map(Duration::toMillis).ifPresent(ms -> {
+                if (ms > cpuMillis) cpuMillis = ms;
+            });
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private long readVmHwm() {
+        if (status == null) return -1;
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    String kb = line.substring("VmHWM:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+            return -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
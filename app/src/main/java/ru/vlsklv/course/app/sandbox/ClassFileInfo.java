@@ -0,0 +1,85 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Минимальный разбор constant pool class-файла: какие классы и методы он упоминает.
+ *
+ * Полноценный парсер (ASM) здесь не нужен — достаточно ссылок на классы и методы.
+ */
+final class ClassFileInfo {
+    private final Set<String> referencedClasses;
+    private final Set<String> methodRefs;
+
+    private ClassFileInfo(Set<String> referencedClasses, Set<String> methodRefs) {
+        this.referencedClasses = referencedClasses;
+        this.methodRefs = methodRefs;
+    }
+
+    /** Internal names классов (java/lang/String), на которые есть ссылки в constant pool. */
+    Set<String> referencedClasses() {
+        return referencedClasses;
+    }
+
+    /** Ссылки на методы в виде {@code owner.name}, например {@code java/lang/System.exit}. */
+    Set<String> methodRefs() {
+        return methodRefs;
+    }
+
+    boolean callsMethod(String owner, String name) {
+        return methodRefs.contains(owner + "." + name);
+    }
+
+    static ClassFileInfo parse(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+        in.readUnsignedShort(); // minor
+        in.readUnsignedShort(); // major
+
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] tags = new int[count];
+        int[] first = new int[count];
+        int[] second = new int[count];
+
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 7, 8, 16, 19, 20 -> first[i] = in.readUnsignedShort();
+                case 15 -> {
+                    in.readUnsignedByte();
+                    first[i] = in.readUnsignedShort();
+                }
+                case 9, 10, 11, 12, 17, 18 -> {
+                    first[i] = in.readUnsignedShort();
+                    second[i] = in.readUnsignedShort();
+                }
+                case 3, 4 -> in.readInt();
+                case 5, 6 -> {
+                    in.readLong();
+                    i++; // long/double занимают два слота
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag + " at " + i);
+            }
+        }
+
+        Set<String> classes = new HashSet<>();
+        Set<String> methods = new HashSet<>();
+        for (int i = 1; i < count; i++) {
+            if (tags[i] == 7) {
+                classes.add(utf8[first[i]]);
+            } else if (tags[i] == 10 || tags[i] == 11) {
+                String owner = utf8[first[first[i]]];
+                String name = utf8[first[second[i]]];
+                methods.add(owner + "." + name);
+            }
+        }
+        return new ClassFileInfo(classes, methods);
+    }
+}
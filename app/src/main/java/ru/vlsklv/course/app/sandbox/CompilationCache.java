@@ -0,0 +1,245 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Кэш результатов компиляции в памяти, адресуемый по содержимому.
+ *
+ * Ключ — SHA-256 от (версия JDK, локаль, опции javac, имя файла, исходник), поэтому
+ * повторный «Запустить»/«Проверить» того же кода и одинаковые шаблоны уроков
+ * стоят одного хэширования вместо вызова javac. Кэшируются и ошибки компиляции.
+ *
+ * Два уровня: LRU в памяти и (опционально) файлы в {@code ~/.aqa-course/cache/javac},
+ * которые переживают перезапуск приложения. Диск — best effort: любая ошибка
+ * чтения/записи просто считается промахом.
+ */
+public final class CompilationCache {
+    private static final int FORMAT_VERSION = 2;
+
+    private static final CompilationCache SHARED = new CompilationCache(
+            64,
+            Path.of(System.getProperty("user.home"), ".aqa-course", "cache", "javac"),
+            512
+    );
+
+    private final int maxMemoryEntries;
+    private final Path diskDir;
+    private final int maxDiskEntries;
+
+    private final Map<String, JavaSandboxRunner.MemoryCompilation> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param diskDir папка дискового уровня или {@code null}, чтобы держать кэш только в памяти
+     */
+    public CompilationCache(int maxMemoryEntries, Path diskDir, int maxDiskEntries) {
+        this.maxMemoryEntries = Math.max(1, maxMemoryEntries);
+        this.diskDir = diskDir;
+        this.maxDiskEntries = Math.max(1, maxDiskEntries);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JavaSandboxRunner.MemoryCompilation> eldest) {
+                return size() > CompilationCache.this.maxMemoryEntries;
+            }
+        };
+    }
+
+    public static CompilationCache shared() {
+        return SHARED;
+    }
+
+    public Stats stats() {
+        synchronized (memory) {
+            return new Stats(memoryHits.get(), diskHits.get(), misses.get(), memory.size());
+        }
+    }
+
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        if (diskDir == null) return;
+        try {
+            JavaSandboxRunner.deleteRecursive(diskDir);
+        } catch (IOException ignored) {
+            // не удалось — файлы всё равно будут вытеснены
+        }
+    }
+
+    static String key(String fileName, String source, List<String> options) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            update(sha, Runtime.version().toString());
+            update(sha, Locale.getDefault().toLanguageTag());
+            for (String o : options) update(sha, o);
+            update(sha, fileName);
+            update(sha, source);
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** Поле с длиной впереди: ("ab", "c") и ("a", "bc") дают разные ключи. */
+    private static void update(MessageDigest sha, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        sha.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        sha.update(bytes);
+    }
+
+    JavaSandboxRunner.MemoryCompilation get(String key) {
+        JavaSandboxRunner.MemoryCompilation hit;
+        synchronized (memory) {
+            hit = memory.get(key);
+        }
+        if (hit != null) {
+            memoryHits.incrementAndGet();
+            return hit;
+        }
+
+        hit = readDisk(key);
+        if (hit != null) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                memory.put(key, hit);
+            }
+            return hit;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(String key, JavaSandboxRunner.MemoryCompilation compilation) {
+        synchronized (memory) {
+            memory.put(key, compilation);
+        }
+        writeDisk(key, compilation);
+    }
+
+    private Path diskFile(String key) {
+        return diskDir.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    private JavaSandboxRunner.MemoryCompilation readDisk(String key) {
+        if (diskDir == null) return null;
+        Path file = diskFile(key);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            if (in.readInt() != FORMAT_VERSION) return null;
+            JavaSandboxRunner.MemoryCompilation compilation = in.readBoolean()
+                    ? new JavaSandboxRunner.MemoryCompilation(CompiledClasses.readFrom(in), null)
+                    : new JavaSandboxRunner.MemoryCompilation(null, readString(in), readDiagnostics(in));
+            // отметка для вытеснения: давно не используемые файлы удаляются первыми
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return compilation;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, JavaSandboxRunner.MemoryCompilation compilation) {
+        if (diskDir == null) return;
+        Path file = diskFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                try (OutputStream raw = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw))) {
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeBoolean(compilation.success());
+                    if (compilation.success()) {
+                        compilation.classes().writeTo(out);
+                    } else {
+                        writeString(out, compilation.diagnostics());
+                        out.writeInt(compilation.problems().size());
+                        for (CompileDiagnostic d : compilation.problems()) d.writeTo(out);
+                    }
+                }
+                // rename атомарен: параллельный читатель видит либо старый файл, либо целый новый
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            pruneDisk();
+        } catch (IOException ignored) {
+            // диск недоступен — работаем только с памятью
+        }
+    }
+
+    /** Оставляет на диске не больше {@code maxDiskEntries} файлов, удаляя самые старые. */
+    private synchronized void pruneDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(diskDir, 2)) {
+            s.filter(p -> p.toString().endsWith(".bin")).forEach(files::add);
+        }
+        if (files.size() <= maxDiskEntries) return;
+
+        files.sort(Comparator.comparing(CompilationCache::lastModified));
+        for (Path p : files.subList(0, files.size() - maxDiskEntries)) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<CompileDiagnostic> readDiagnostics(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<CompileDiagnostic> diagnostics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) diagnostics.add(CompileDiagnostic.readFrom(in));
+        return List.copyOf(diagnostics);
+    }
+
+    public record Stats(long memoryHits, long diskHits, long misses, int memoryEntries) {
+        public long hits() {
+            return memoryHits + diskHits;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сообщение компилятора (javac или kotlinc) в разобранном виде: по нему редактор подчёркивает
+ * ошибку, не разбирая текст.
+ *
+ * Строки и колонки считаются с 1, смещения — с 0 в символах исходника, конец не включается.
+ * Неизвестная позиция — {@link #NOPOS}.
+ *
+ * @param fileName путь файла относительно корня исходников (pages/LoginPage.java)
+ * @param code     код сообщения компилятора (compiler.err.cant.resolve.location) или пустая строка
+ */
+public record CompileDiagnostic(Kind kind, String fileName, long line, long column,
+                                long startOffset, long endOffset, String code, String message) {
+    public enum Kind { ERROR, WARNING, NOTE }
+
+    public static final long NOPOS = -1;
+
+    public boolean isError() {
+        return kind == Kind.ERROR;
+    }
+
+    /** Есть ли позиция в тексте, которую можно подчеркнуть. */
+    public boolean hasRange() {
+        return startOffset >= 0;
+    }
+
+    static CompileDiagnostic of(Diagnostic<? extends JavaFileObject> d) {
+        Kind kind = switch (d.getKind()) {
+            case ERROR -> Kind.ERROR;
+            case WARNING, MANDATORY_WARNING -> Kind.WARNING;
+            default -> Kind.NOTE;
+        };
+        return new CompileDiagnostic(kind, d.getSource() == null ? "" : fileName(d.getSource().toUri()),
+                d.getLineNumber(), d.getColumnNumber(), d.getStartPosition(), d.getEndPosition(),
+                d.getCode() == null ? "" : d.getCode(), d.getMessage(null));
+    }
+
+    /** Все сообщения javac; текст каждого строится один раз и дальше только переиспользуется. */
+    static List<CompileDiagnostic> of(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        List<CompileDiagnostic> result = new ArrayList<>(diagnostics.size());
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics) result.add(of(d));
+        return List.copyOf(result);
+    }
+
+    /**
+     * Текст для терминала, по строке на сообщение: {@code [ERROR] Main.java, line 3: ...}.
+     *
+     * @param withFile указывать файл: в проекте из нескольких файлов одного номера строки мало
+     */
+    static String format(List<CompileDiagnostic> diagnostics, boolean withFile) {
+        StringBuilder sb = new StringBuilder();
+        for (CompileDiagnostic d : diagnostics) {
+            sb.append('[').append(d.kind).append("] ");
+            if (withFile && !d.fileName.isEmpty()) sb.append(d.fileName).append(", ");
+            if (d.line != NOPOS) sb.append("line ").append(d.line).append(": ");
+            sb.append(d.message).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Смещение символа по строке и колонке (с 1); {@link #NOPOS}, если такой позиции в тексте нет. */
+    static long offsetOf(String text, long line, long column) {
+        if (text == null || line < 1 || column < 1) return NOPOS;
+        int pos = 0;
+        for (long l = 1; l < line; l++) {
+            int nl = text.indexOf('\n', pos);
+            if (nl < 0) return NOPOS;
+            pos = nl + 1;
+        }
+        long offset = pos + column - 1;
+        return offset <= text.length() ? offset : NOPOS;
+    }
+
+    /** Формат: byte kind, UTF fileName, long line, long column, long start, long end, UTF code, UTF message. */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeUTF(fileName);
+        out.writeLong(line);
+        out.writeLong(column);
+        out.writeLong(startOffset);
+        out.writeLong(endOffset);
+        out.writeUTF(code);
+        out.writeUTF(message);
+    }
+
+    static CompileDiagnostic readFrom(DataInputStream in) throws IOException {
+        return new CompileDiagnostic(Kind.values()[in.readByte()], in.readUTF(), in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readUTF(), in.readUTF());
+    }
+
+    /** string:///pages/LoginPage.java у файлов в памяти, имя файла — у файлов на диске. */
+    private static String fileName(URI uri) {
+        String path = uri.getPath();
+        if (path == null) return "";
+        if ("file".equals(uri.getScheme())) return path.substring(path.lastIndexOf('/') + 1);
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+}
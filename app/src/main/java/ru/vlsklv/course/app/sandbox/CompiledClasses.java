@@ -0,0 +1,62 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Результат компиляции в памяти: binary name класса -> байткод.
+ *
+ * Умеет сериализоваться в простой бинарный формат, чтобы передать классы
+ * дочернему процессу через pipe, не записывая .class-файлы на диск.
+ */
+public final class CompiledClasses {
+    private final Map<String, byte[]> classes;
+
+    public CompiledClasses(Map<String, byte[]> classes) {
+        this.classes = Collections.unmodifiableMap(new LinkedHashMap<>(classes));
+    }
+
+    public Map<String, byte[]> classes() {
+        return classes;
+    }
+
+    public byte[] get(String binaryName) {
+        return classes.get(binaryName);
+    }
+
+    public boolean isEmpty() {
+        return classes.isEmpty();
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (byte[] b : classes.values()) total += b.length;
+        return total;
+    }
+
+    /** Формат: int count, затем count раз (UTF name, int length, bytes). */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().length);
+            out.write(e.getValue());
+        }
+    }
+
+    public static CompiledClasses readFrom(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            classes.put(name, bytes);
+        }
+        return new CompiledClasses(classes);
+    }
+}
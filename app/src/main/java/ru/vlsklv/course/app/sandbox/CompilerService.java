@@ -0,0 +1,140 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Долгоживущий javac для sandbox.
+ *
+ * Компилятор ищется один раз, а StandardJavaFileManager не создаётся на каждый запуск:
+ * открытый образ JDK и индексы платформенных классов остаются в нём между компиляциями.
+ * Сам file manager не потокобезопасен, поэтому их несколько ({@code shards}) и каждая
+ * компиляция берёт свой на время вызова javac.
+ *
+ * Первая компиляция в холодной JVM стоит около секунды (загрузка и JIT javac),
+ * поэтому {@link #prewarm()} прогоняет несколько компиляций в фоне при старте приложения.
+ */
+public final class CompilerService {
+    private static final String PREWARM_SOURCE = """
+            import java.util.ArrayList;
+            import java.util.List;
+
+            public class Main {
+                record Item(String name, int count) {}
+
+                public static void main(String[] args) {
+                    List<Item> items = new ArrayList<>();
+                    items.add(new Item("a", 1));
+                    for (Item i : items) System.out.println(i.name() + ": " + i.count());
+                }
+            }
+            """;
+    private static final int PREWARM_ROUNDS = 8;
+
+    private static final CompilerService SHARED = new CompilerService(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)));
+
+    private final JavaCompiler compiler;
+    private final int shards;
+    private final BlockingQueue<StandardJavaFileManager> idle;
+    private final AtomicBoolean prewarmStarted = new AtomicBoolean();
+    private int created;
+
+    public CompilerService(int shards) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        this.shards = Math.max(1, shards);
+        this.idle = new ArrayBlockingQueue<>(this.shards);
+    }
+
+    public static CompilerService shared() {
+        return SHARED;
+    }
+
+    /** {@code false}, если приложение запущено без jdk.compiler (JRE или урезанный runtime-image). */
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    JavaCompiler compiler() {
+        return compiler;
+    }
+
+    /** Прогревает javac в фоновом потоке; повторные вызовы ничего не делают. */
+    public void prewarm() {
+        if (!isAvailable() || !prewarmStarted.compareAndSet(false, true)) return;
+
+        Thread t = new Thread(() -> {
+            try {
+                for (int i = 0; i < PREWARM_ROUNDS; i++) compile("Main.java", PREWARM_SOURCE);
+            } catch (Exception ignored) {
+                // прогрев — только оптимизация
+            }
+        }, "sandbox-compiler-prewarm");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    JavaSandboxRunner.MemoryCompilation compile(String fileName, String source) throws IOException, InterruptedException {
+        return compile(fileName, source, () -> false);
+    }
+
+    /**
+     * Компиляция, которую можно прервать: {@code cancelled} проверяется на событиях javac.
+     * Прерванный javac бросает исключение, а его file manager заменяется свежим.
+     */
+    JavaSandboxRunner.MemoryCompilation compile(String fileName, String source, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        return withFileManager(std -> JavaSandboxRunner.compileInMemory(compiler, std, fileName, source, cancelled));
+    }
+
+    /** Выполняет {@code task} с тёплым file manager'ом, взятым на время вызова. */
+    <T> T withFileManager(FileManagerTask<T> task) throws IOException, InterruptedException {
+        StandardJavaFileManager std = acquire();
+        boolean healthy = false;
+        try {
+            T result = task.run(std);
+            healthy = true;
+            return result;
+        } finally {
+            release(std, healthy);
+        }
+    }
+
+    @FunctionalInterface
+    interface FileManagerTask<T> {
+        T run(StandardJavaFileManager std) throws IOException;
+    }
+
+    private StandardJavaFileManager acquire() throws InterruptedException {
+        StandardJavaFileManager std = idle.poll();
+        if (std != null) return std;
+        synchronized (this) {
+            if (created < shards) {
+                created++;
+                return compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+            }
+        }
+        return idle.take();
+    }
+
+    /** После исключения внутри javac состояние file manager'а не гарантировано — заменяем его. */
+    private void release(StandardJavaFileManager std, boolean healthy) {
+        if (!healthy) {
+            try {
+                std.close();
+            } catch (IOException ignored) {
+                // всё равно выбрасываем
+            }
+            std = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        }
+        idle.offer(std);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JavaFileManager, который держит исходники и байткод в памяти.
+ *
+ * Платформенные классы (JDK) по-прежнему читаются через делегата,
+ * а всё, что javac пишет в CLASS_OUTPUT, попадает в {@link #compiledClasses()}.
+ * Уже скомпилированные классы можно подать javac из памяти ({@code classPath}): для него они
+ * выглядят как .class-файлы в classpath. Так {@link SandboxWorkspace} перекомпилирует только
+ * изменённые файлы.
+ */
+final class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, MemoryClassFile> outputs = new LinkedHashMap<>();
+    private final Map<String, String> outputSources = new LinkedHashMap<>();
+    private final Map<String, byte[]> classPath;
+
+    InMemoryFileManager(StandardJavaFileManager delegate) {
+        this(delegate, Map.of());
+    }
+
+    /** @param classPath binary name -> байткод классов, которые javac должен видеть готовыми */
+    InMemoryFileManager(StandardJavaFileManager delegate, Map<String, byte[]> classPath) {
+        super(delegate);
+        this.classPath = classPath;
+    }
+
+    static JavaFileObject source(String fileName, String source) {
+        return new MemorySourceFile(fileName, source);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+        if (location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS) {
+            MemoryClassFile file = new MemoryClassFile(className);
+            outputs.put(className, file);
+            if (sibling instanceof MemorySourceFile src) outputSources.put(className, src.fileName);
+            return file;
+        }
+        throw new UnsupportedOperationException("Sandbox compiler writes only class files: " + location + " " + className);
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                         boolean recurse) throws IOException {
+        Iterable<JavaFileObject> delegated = super.list(location, packageName, kinds, recurse);
+        if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS) || classPath.isEmpty()) {
+            return delegated;
+        }
+        List<JavaFileObject> result = new ArrayList<>();
+        for (Map.Entry<String, byte[]> e : classPath.entrySet()) {
+            String pkg = packageOf(e.getKey());
+            boolean inPackage = pkg.equals(packageName)
+                    || recurse && (packageName.isEmpty() || pkg.startsWith(packageName + "."));
+            if (inPackage) result.add(new MemoryClassInput(e.getKey(), e.getValue()));
+        }
+        delegated.forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof MemoryClassInput input) return input.binaryName;
+        return super.inferBinaryName(location, file);
+    }
+
+    CompiledClasses compiledClasses() {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, MemoryClassFile> e : outputs.entrySet()) {
+            byte[] bytes = e.getValue().bytes();
+            if (bytes != null) classes.put(e.getKey(), bytes);
+        }
+        return new CompiledClasses(classes);
+    }
+
+    /** Из какого исходника (имя файла) получен каждый класс последней компиляции. */
+    Map<String, String> outputSources() {
+        return outputSources;
+    }
+
+    private static String packageOf(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        return dot < 0 ? "" : binaryName.substring(0, dot);
+    }
+
+    private static final class MemorySourceFile extends SimpleJavaFileObject {
+        private final String fileName;
+        private final String source;
+
+        MemorySourceFile(String fileName, String source) {
+            super(URI.create("string:///" + fileName), Kind.SOURCE);
+            this.fileName = fileName;
+            this.source = source == null ? "" : source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class MemoryClassInput extends SimpleJavaFileObject {
+        private final String binaryName;
+        private final byte[] bytes;
+
+        MemoryClassInput(String binaryName, byte[] bytes) {
+            super(URI.create("mem:///" + binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    private static final class MemoryClassFile extends SimpleJavaFileObject {
+        private volatile byte[] bytes;
+
+        MemoryClassFile(String className) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    bytes = toByteArray();
+                }
+            };
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+    }
+}
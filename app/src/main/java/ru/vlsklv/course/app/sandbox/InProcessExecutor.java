@@ -0,0 +1,222 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполнение скомпилированного Main прямо в JVM приложения.
+ *
+ * Только для доверенного контента (шаблоны уроков, которые печатают в stdout):
+ * - каждый запуск идёт в отдельном потоке и одноразовом classloader'е;
+ * - System.out/System.err/System.in один раз подменяются маршрутизирующими потоками,
+ *   которые для sandbox-потоков (и порождённых ими) пишут в буферы конкретного запуска;
+ * - по таймауту поток прерывается и бросается вместе с classloader'ом.
+ *
+ * Результат собирается, когда возвращается main: потоки, запущенные студентом,
+ * не дожидаемся (sandbox-поток daemon, и его потомки тоже).
+ *
+ * Классы, которые вызывают System.exit/Runtime.halt, сюда не попадают:
+ * {@link #canRunInProcess} отправляет их в обычный fork-режим.
+ */
+final class InProcessExecutor {
+    private static final InheritableThreadLocal<Capture> CURRENT = new InheritableThreadLocal<>();
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private static boolean installed;
+    private static Charset consoleCharset;
+
+    private InProcessExecutor() {}
+
+    static boolean canRunInProcess(CompiledClasses classes) {
+        for (byte[] bytes : classes.classes().values()) {
+            try {
+                ClassFileInfo info = ClassFileInfo.parse(bytes);
+                if (info.callsMethod("java/lang/System", "exit")
+                        || info.callsMethod("java/lang/Runtime", "exit")
+                        || info.callsMethod("java/lang/Runtime", "halt")) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static JavaSandboxRunner.RunResult execute(CompiledClasses classes, String mainClass, Duration timeout,
+                                               int outputLimitBytes, OutputListener listener, RunHandle<?> handle) {
+        installRouting();
+
+        Capture capture = new Capture(outputLimitBytes, listener);
+        int[] exitCode = {1};
+        ClassLoader loader = new MemoryClassLoader(classes, ClassLoader.getPlatformClassLoader());
+
+        // программа закончилась или запуск отменён; поток, который ждёт, при отмене не прерывается
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            CURRENT.set(capture);
+            try {
+                exitCode[0] = SandboxChildMain.invokeMain(loader, mainClass, new String[0], System.err);
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                finished.set(true);
+                done.countDown();
+            }
+        }, "sandbox-inprocess-" + THREAD_IDS.incrementAndGet());
+        thread.setDaemon(true);
+        long started = System.nanoTime();
+        if (!handle.attach(done::countDown)) return JavaSandboxRunner.RunResult.cancelled();
+        thread.start();
+
+        try {
+            done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            return JavaSandboxRunner.RunResult.fail("Запуск прерван.");
+        } finally {
+            handle.detach();
+        }
+
+        if (handle.isCancelled()) {
+            // поток программы получает interrupt, как при таймауте
+            thread.interrupt();
+            return JavaSandboxRunner.RunResult.cancelled();
+        }
+        if (!finished.get()) {
+            // Остановить поток принудительно нельзя: прерываем и бросаем его вместе с classloader'ом.
+            // Всё, что он напишет дальше, уйдёт в буфер этого запуска, который больше никто не читает.
+            thread.interrupt();
+            return JavaSandboxRunner.timeoutResult(timeout).withMetrics(metrics(started));
+        }
+
+        return JavaSandboxRunner.toRunResult(
+                exitCode[0],
+                capture.stdout.toString(consoleCharset),
+                capture.stderr.toString(consoleCharset),
+                capture.stdout.truncated() || capture.stderr.truncated()
+        ).withMetrics(metrics(started));
+    }
+
+    /** Память и CPU отдельного запуска в общей JVM не измерить: только время. */
+    private static RunMetrics metrics(long startedNanos) {
+        return new RunMetrics(JavaSandboxRunner.ExecutionMode.IN_PROCESS, null,
+                -1, -1, JavaSandboxRunner.millisSince(startedNanos), -1, -1);
+    }
+
+    private static synchronized void installRouting() {
+        if (installed) return;
+        installed = true;
+
+        String enc = System.getProperty("sun.stdout.encoding");
+        consoleCharset = enc != null && Charset.isSupported(enc) ? Charset.forName(enc) : Charset.defaultCharset();
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        InputStream originalIn = System.in;
+
+        System.setOut(new PrintStream(new RoutingOutputStream(originalOut, false), true, consoleCharset));
+        System.setErr(new PrintStream(new RoutingOutputStream(originalErr, true), true, consoleCharset));
+        System.setIn(new RoutingInputStream(originalIn));
+    }
+
+    private static final class Capture {
+        final OutputCapture stdout;
+        final OutputCapture stderr;
+        final OutputStream stdoutSink;
+        final OutputStream stderrSink;
+
+        Capture(int limitBytes, OutputListener listener) {
+            stdout = new OutputCapture(limitBytes);
+            stderr = new OutputCapture(limitBytes);
+            OutputListener outside = listener == null ? null : (channel, chunk) -> callOutside(listener, channel, chunk);
+            stdoutSink = StreamingDecoder.tee(stdout, outside, OutputListener.Channel.STDOUT, consoleCharset);
+            stderrSink = StreamingDecoder.tee(stderr, outside, OutputListener.Channel.STDERR, consoleCharset);
+        }
+
+        /**
+         * Listener вызывается в sandbox-потоке: на время вызова снимаем маршрутизацию,
+         * иначе его собственный System.out снова попал бы в этот же буфер.
+         */
+        private static void callOutside(OutputListener listener, OutputListener.Channel channel, String chunk) {
+            Capture self = CURRENT.get();
+            CURRENT.remove();
+            try {
+                listener.onOutput(channel, chunk);
+            } finally {
+                CURRENT.set(self);
+            }
+        }
+    }
+
+    private static final class RoutingOutputStream extends OutputStream {
+        private final OutputStream fallback;
+        private final boolean stderr;
+
+        RoutingOutputStream(OutputStream fallback, boolean stderr) {
+            this.fallback = fallback;
+            this.stderr = stderr;
+        }
+
+        private OutputStream target() {
+            Capture c = CURRENT.get();
+            if (c == null) return fallback;
+            return stderr ? c.stderrSink : c.stdoutSink;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /** Sandbox-потоки видят пустой stdin, остальные — настоящий. */
+    private static final class RoutingInputStream extends InputStream {
+        private static final InputStream EMPTY = new ByteArrayInputStream(new byte[0]);
+
+        private final InputStream fallback;
+
+        RoutingInputStream(InputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private InputStream target() {
+            return CURRENT.get() == null ? fallback : EMPTY;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+}
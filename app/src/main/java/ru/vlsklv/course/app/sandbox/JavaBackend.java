@@ -0,0 +1,22 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/** Java: javac в памяти, все режимы выполнения. */
+public final class JavaBackend implements SandboxBackend {
+    @Override
+    public String id() {
+        return "JAVA";
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return EnumSet.allOf(Capability.class);
+    }
+
+    @Override
+    public JavaSandboxRunner runner(JavaSandboxRunner.ExecutionMode executionMode) {
+        return new JavaSandboxRunner(JavaSandboxRunner.CompileMode.MEMORY, executionMode);
+    }
+}
@@ -1,106 +1,703 @@
 package ru.vlsklv.course.app.sandbox;
 
-import javax.tools.Diagnostic;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Минимальный sandbox-раннер для Java-кода:
- * - пишет исходник во временную папку
- * - компилирует через JavaCompiler (jdk.compiler)
+ * - компилирует исходник через JavaCompiler (jdk.compiler)
  * - запускает main-класс отдельным процессом
  *
+ * Режимы компиляции:
+ * - MEMORY (по умолчанию): исходник и байткод живут в памяти, классы передаются
+ *   дочерней JVM через stdin и загружаются {@link SandboxChildMain}. Диск не трогаем.
+ * - DISK: исходник и .class пишутся во временную папку, которая удаляется после запуска.
+ * Результаты компиляции в памяти кэшируются по содержимому ({@link CompilationCache}).
+ * Проект из нескольких файлов передаётся как {@link SandboxWorkspace} и компилируется
+ * инкрементально: только изменённые файлы и их зависимые.
+ *
+ * Режимы выполнения:
+ * - FORK (по умолчанию): новая JVM на каждый запуск.
+ * - POOLED: байткод отправляется в заранее запущенную worker-JVM из {@link WorkerPool}
+ *   (или из {@link WorkerCoordinator}, см. {@link #withWorkers}).
+ *   Всегда компилирует в памяти, независимо от CompileMode.
+ * - IN_PROCESS: Main выполняется в JVM приложения, в отдельном потоке и classloader'е
+ *   ({@link InProcessExecutor}). Только для доверенного контента; код с System.exit
+ *   автоматически уходит в FORK.
+ *
+ * stdout/stderr дочернего процесса читаются параллельно с его работой в буферы
+ * с лимитом (см. {@link OutputCapture}); если вывод обрезан, {@link RunResult#isOutputTruncated()}.
+ * Через {@link OutputListener} вывод можно получать по мере появления (в POOLED — одним
+ * куском в конце: worker возвращает вывод только вместе с результатом).
+ *
+ * {@link #start} запускает то же самое в фоновом потоке и возвращает {@link RunHandle},
+ * через который запуск можно остановить.
+ *
+ * {@link #runCases} проверяет код набором тестовых векторов (stdin, аргументы, ожидаемый stdout)
+ * за один старт JVM, независимо от режима выполнения (см. {@link CaseRunner}).
+ *
+ * Язык исходников — {@link Language}: Kotlin компилирует тёплый kotlinc из модуля runner
+ * ({@link KotlinCompiler}), дальше запуск тот же. Kotlin-программы выполняются только в
+ * FORK (POOLED и IN_PROCESS переходят на него): им нужен kotlin-stdlib в classloader'е программы.
+ *
  * Примечание для EXE-сборки через jlink/jpackage:
  * в runtime-image должны присутствовать модули java.compiler и jdk.compiler,
  * иначе ToolProvider.getSystemJavaCompiler() вернёт null.
  */
 public final class JavaSandboxRunner {
+    public enum CompileMode { DISK, MEMORY }
+
+    public enum ExecutionMode { FORK, POOLED, IN_PROCESS }
+
+    public enum Language {
+        JAVA("Main.java", "Main"),
+        KOTLIN("Main.kt", "MainKt");
+
+        private final String defaultFileName;
+        private final String defaultMainClass;
+
+        Language(String defaultFileName, String defaultMainClass) {
+            this.defaultFileName = defaultFileName;
+            this.defaultMainClass = defaultMainClass;
+        }
+
+        public String defaultFileName() { return defaultFileName; }
+        public String defaultMainClass() { return defaultMainClass; }
+    }
+
+    static final List<String> JAVAC_OPTIONS = List.of("--release", "17", "-encoding", "UTF-8");
+
+    /** Сколько ждать остаток вывода после выхода процесса (pipe может держать его потомок). */
+    private static final long DRAIN_GRACE_MILLIS = 1000;
+
+    private static final String NO_COMPILER_MESSAGE =
+            "В текущей сборке отсутствует Java-компилятор (ToolProvider.getSystemJavaCompiler() == null).\n" +
+                    "Для запуска кодовых заданий в EXE/runtime-image нужно включить модули: java.compiler и jdk.compiler.\n" +
+                    "Во время разработки запускайте приложение на JDK 17 (не JRE).";
+
+    private final CompileMode compileMode;
+    private final ExecutionMode executionMode;
+    private final int outputLimitBytes;
+    private final CompilationCache compilationCache;
+    private final LaunchProfile launchProfile;
+    private final Language language;
+    /** Для {@link SandboxScheduler}: новый фоновый запуск раннера вытесняет его ещё не начатые. */
+    private final Object owner;
+    /** {@code null} — POOLED через {@link WorkerPool#shared()}, векторы — в своей JVM на прогон. */
+    private final WorkerCoordinator workers;
+
+    public JavaSandboxRunner() {
+        this(CompileMode.MEMORY, ExecutionMode.FORK);
+    }
+
+    public JavaSandboxRunner(CompileMode compileMode) {
+        this(compileMode, ExecutionMode.FORK);
+    }
+
+    public JavaSandboxRunner(CompileMode compileMode, ExecutionMode executionMode) {
+        this(compileMode, executionMode, OutputCapture.DEFAULT_LIMIT_BYTES);
+    }
+
+    /**
+     * @param outputLimitBytes сколько байт stdout (и отдельно stderr) хранить: половина
+     *                         от начала вывода, половина от конца; середина отбрасывается.
+     */
+    public JavaSandboxRunner(CompileMode compileMode, ExecutionMode executionMode, int outputLimitBytes) {
+        this(compileMode, executionMode, outputLimitBytes, CompilationCache.shared());
+    }
+
+    /**
+     * @param compilationCache кэш результатов компиляции в памяти или {@code null}, чтобы
+     *                         компилировать каждый раз. DISK-режим кэш не использует.
+     */
+    public JavaSandboxRunner(CompileMode compileMode, ExecutionMode executionMode, int outputLimitBytes,
+                             CompilationCache compilationCache) {
+        this(compileMode, executionMode, outputLimitBytes, compilationCache, LaunchProfile.DEFAULT, Language.JAVA, new Object(), null);
+    }
+
+    private JavaSandboxRunner(CompileMode compileMode, ExecutionMode executionMode, int outputLimitBytes,
+                              CompilationCache compilationCache, LaunchProfile launchProfile, Language language,
+                              Object owner, WorkerCoordinator workers) {
+        this.compileMode = compileMode == null ? CompileMode.MEMORY : compileMode;
+        this.executionMode = executionMode == null ? ExecutionMode.FORK : executionMode;
+        this.outputLimitBytes = outputLimitBytes > 0 ? outputLimitBytes : OutputCapture.DEFAULT_LIMIT_BYTES;
+        this.compilationCache = compilationCache;
+        this.launchProfile = launchProfile == null ? LaunchProfile.DEFAULT : launchProfile;
+        this.language = language == null ? Language.JAVA : language;
+        this.owner = owner;
+        this.workers = workers;
+    }
+
+    /** Тот же раннер с другим профилем флагов дочерней JVM. */
+    public JavaSandboxRunner withLaunchProfile(LaunchProfile launchProfile) {
+        return new JavaSandboxRunner(compileMode, executionMode, outputLimitBytes, compilationCache, launchProfile, language, owner, workers);
+    }
+
+    /** Тот же раннер для исходников на другом языке. */
+    public JavaSandboxRunner withLanguage(Language language) {
+        return new JavaSandboxRunner(compileMode, executionMode, outputLimitBytes, compilationCache, launchProfile, language, owner, workers);
+    }
+
+    /**
+     * Тот же раннер на worker'ах {@code workers}: туда идут POOLED-запуски и тестовые векторы
+     * ({@link #runCases}) — векторы одного прогона выполняются параллельно, каждый отдельным
+     * запросом. Worker с чужими флагами перезапускается с флагами профиля запуска этого раннера.
+     */
+    public JavaSandboxRunner withWorkers(WorkerCoordinator workers) {
+        return new JavaSandboxRunner(compileMode, executionMode, outputLimitBytes, compilationCache, launchProfile, language, owner, workers);
+    }
+
+    public CompileMode compileMode() {
+        return compileMode;
+    }
+
+    public ExecutionMode executionMode() {
+        return executionMode;
+    }
+
+    public int outputLimitBytes() {
+        return outputLimitBytes;
+    }
+
+    public CompilationCache compilationCache() {
+        return compilationCache;
+    }
+
+    public LaunchProfile launchProfile() {
+        return launchProfile;
+    }
+
+    public Language language() {
+        return language;
+    }
+
+    /**
+     * Прогревает компилятор языка в фоне. javac прогревается при старте приложения, Kotlin —
+     * только здесь: его компилятор тяжелее, и нужен он не всем.
+     */
+    public void prewarm() {
+        if (language == Language.KOTLIN) {
+            KotlinCompiler.prewarm();
+        } else {
+            CompilerService.shared().prewarm();
+        }
+    }
+
     public RunResult compileAndRun(String fileName, String mainClass, String source, Duration timeout) {
-        if (fileName == null || fileName.isBlank()) fileName = "Main.java";
-        if (mainClass == null || mainClass.isBlank()) mainClass = "Main";
-        if (timeout == null) timeout = Duration.ofSeconds(5);
-
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        if (compiler == null) {
-            return RunResult.fail(
-                    "В текущей сборке отсутствует Java-компилятор (ToolProvider.getSystemJavaCompiler() == null).\n" +
-                            "Для запуска кодовых заданий в EXE/runtime-image нужно включить модули: java.compiler и jdk.compiler.\n" +
-                            "Во время разработки запускайте приложение на JDK 17 (не JRE)."
-            );
+        return compileAndRun(fileName, mainClass, source, timeout, null);
+    }
+
+    /**
+     * То же, что {@link #compileAndRun(String, String, String, Duration)}, но вывод программы
+     * дополнительно отдаётся в {@code listener} по мере появления.
+     */
+    public RunResult compileAndRun(String fileName, String mainClass, String source, Duration timeout,
+                                   OutputListener listener) {
+        return run(fileName, mainClass, source, timeout, listener, new RunHandle<>());
+    }
+
+    /**
+     * Запуск в фоне, через очередь {@link SandboxScheduler#shared()}. Итог — через
+     * {@link RunHandle#whenDone}; {@link RunHandle#cancel()} останавливает его сразу, не дожидаясь
+     * таймаута. Ещё не начатый запуск этого раннера (и его копий с другим профилем) новый вытесняет.
+     */
+    public RunHandle<RunResult> start(String fileName, String mainClass, String source, Duration timeout,
+                                      OutputListener listener) {
+        return inBackground(handle -> run(fileName, mainClass, source, timeout, listener, handle),
+                RunResult::cancelled, RunResult::fail);
+    }
+
+    /**
+     * Компилирует код и прогоняет его на тестовых векторах в одной дочерней JVM
+     * с флагами профиля запуска. {@code perCaseTimeout} действует на каждый вектор отдельно.
+     */
+    public CaseRunResult runCases(String fileName, String mainClass, String source, List<TestCase> cases,
+                                  Duration perCaseTimeout) {
+        return runCases(singleSource(fileName, source), mainClass, cases, perCaseTimeout, new RunHandle<>());
+    }
+
+    /** {@link #runCases} в фоновом потоке. */
+    public RunHandle<CaseRunResult> startCases(String fileName, String mainClass, String source, List<TestCase> cases,
+                                               Duration perCaseTimeout) {
+        return startCases(singleSource(fileName, source), mainClass, cases, perCaseTimeout);
+    }
+
+    /**
+     * Запуск проекта из нескольких файлов. Компилируется всегда в памяти и инкрементально:
+     * javac получает только файлы, изменённые с прошлой компиляции этого {@code workspace}, и их
+     * зависимые. Кэш компиляции по содержимому здесь не используется.
+     */
+    public RunResult compileAndRun(SandboxWorkspace workspace, String mainClass, Duration timeout, OutputListener listener) {
+        RunHandle<RunResult> handle = new RunHandle<>();
+        return run(mainClass, timeout, handle, (main, t) -> runCompiled(workspaceSource(workspace), main, t, listener, handle));
+    }
+
+    public RunHandle<RunResult> start(SandboxWorkspace workspace, String mainClass, Duration timeout, OutputListener listener) {
+        return inBackground(handle -> run(mainClass, timeout, handle,
+                        (main, t) -> runCompiled(workspaceSource(workspace), main, t, listener, handle)),
+                RunResult::cancelled, RunResult::fail);
+    }
+
+    public CaseRunResult runCases(SandboxWorkspace workspace, String mainClass, List<TestCase> cases, Duration perCaseTimeout) {
+        return runCases(workspaceSource(workspace), mainClass, cases, perCaseTimeout, new RunHandle<>());
+    }
+
+    public RunHandle<CaseRunResult> startCases(SandboxWorkspace workspace, String mainClass, List<TestCase> cases,
+                                               Duration perCaseTimeout) {
+        return startCases(workspaceSource(workspace), mainClass, cases, perCaseTimeout);
+    }
+
+    private RunHandle<CaseRunResult> startCases(CompileStep compile, String mainClass, List<TestCase> cases,
+                                                Duration perCaseTimeout) {
+        return inBackground(handle -> runCases(compile, mainClass, cases, perCaseTimeout, handle),
+                CaseRunResult::cancelled, CaseRunResult::fail);
+    }
+
+    /**
+     * Компилирует код, затем скрытые JUnit-тесты ({@code tests}: имя файла → исходник) против его
+     * классов, и прогоняет тесты через JUnit Platform в одной дочерней JVM, параллельно.
+     * {@code timeout} — на весь прогон. Только Java.
+     */
+    public JunitRunResult runTests(String fileName, String source, Map<String, String> tests, Duration timeout) {
+        return runTests(singleSource(fileName, source), tests, timeout, new RunHandle<>());
+    }
+
+    /** {@link #runTests} в фоновом потоке. */
+    public RunHandle<JunitRunResult> startTests(String fileName, String source, Map<String, String> tests, Duration timeout) {
+        return startTests(singleSource(fileName, source), tests, timeout);
+    }
+
+    public JunitRunResult runTests(SandboxWorkspace workspace, Map<String, String> tests, Duration timeout) {
+        return runTests(workspaceSource(workspace), tests, timeout, new RunHandle<>());
+    }
+
+    public RunHandle<JunitRunResult> startTests(SandboxWorkspace workspace, Map<String, String> tests, Duration timeout) {
+        return startTests(workspaceSource(workspace), tests, timeout);
+    }
+
+    private RunHandle<JunitRunResult> startTests(CompileStep compile, Map<String, String> tests, Duration timeout) {
+        return inBackground(handle -> runTests(compile, tests, timeout, handle),
+                JunitRunResult::cancelled, JunitRunResult::fail);
+    }
+
+    private CompileStep singleSource(String fileName, String source) {
+        String file = fileName == null || fileName.isBlank() ? language.defaultFileName() : fileName;
+        return handle -> compileCached(file, source, handle);
+    }
+
+    /** Java — инкрементально ({@link SandboxWorkspace#compile}), Kotlin — все файлы каждый раз. */
+    private CompileStep workspaceSource(SandboxWorkspace workspace) {
+        if (language == Language.KOTLIN) return handle -> KotlinCompiler.compile(workspace.files(), handle::isCancelled);
+        return handle -> workspace.compile(CompilerService.shared(), handle::isCancelled);
+    }
+
+    private <T> RunHandle<T> inBackground(Function<RunHandle<T>, T> body, Supplier<T> cancelled, Function<String, T> failed) {
+        return SandboxScheduler.shared().submit(SandboxScheduler.Priority.INTERACTIVE, owner, body, cancelled, failed);
+    }
+
+    private RunResult run(String fileName, String mainClass, String source, Duration timeout,
+                          OutputListener listener, RunHandle<?> handle) {
+        if (executionMode == ExecutionMode.FORK && compileMode == CompileMode.DISK && language == Language.JAVA) {
+            String file = fileName == null || fileName.isBlank() ? "Main.java" : fileName;
+            return run(mainClass, timeout, handle, (main, t) -> CompilerService.shared().isAvailable()
+                    ? runOnDisk(CompilerService.shared().compiler(), file, main, source, t, listener, handle)
+                    : RunResult.fail(NO_COMPILER_MESSAGE));
         }
+        return run(mainClass, timeout, handle, (main, t) -> runCompiled(singleSource(fileName, source), main, t, listener, handle));
+    }
+
+    private RunResult run(String mainClass, Duration timeout, RunHandle<?> handle, BiFunction<String, Duration, RunResult> body) {
+        RunResult rr = body.apply(mainClass == null || mainClass.isBlank() ? language.defaultMainClass() : mainClass,
+                timeout == null ? Duration.ofSeconds(5) : timeout);
+        // убитый процесс даёт случайный код выхода или обрывок вывода — это не результат программы
+        if (handle.isCancelled()) return RunResult.cancelled();
+        SandboxStats.shared().record(rr.getMetrics());
+        return rr;
+    }
+
+    private CaseRunResult runCases(CompileStep compile, String mainClass, List<TestCase> cases,
+                                   Duration perCaseTimeout, RunHandle<?> handle) {
+        if (mainClass == null || mainClass.isBlank()) mainClass = language.defaultMainClass();
+        if (perCaseTimeout == null) perCaseTimeout = Duration.ofSeconds(5);
+        if (!compilerAvailable()) return CaseRunResult.fail(NO_COMPILER_MESSAGE);
 
-        Path dir;
         try {
-            dir = Files.createTempDirectory("aqa-course-sandbox-");
-        } catch (IOException e) {
-            return RunResult.fail("Не удалось создать временную директорию: " + e.getMessage());
+            MemoryCompilation compilation = compile.compile(handle);
+            if (!compilation.success()) return CaseRunResult.compileError(compilation.diagnostics(), compilation.problems());
+            return new CaseRunner(childJvmOptions(), outputLimitBytes, workers)
+                    .run(compilation.classes(), mainClass, cases == null ? List.of() : cases, perCaseTimeout, handle);
+        } catch (Exception e) {
+            return handle.isCancelled() ? CaseRunResult.cancelled()
+                    : CaseRunResult.fail("Ошибка при компиляции/запуске: " + e.getMessage());
         }
+    }
 
-        try {
-            Path src = dir.resolve(fileName);
-            Files.writeString(src, source, StandardCharsets.UTF_8);
+    private JunitRunResult runTests(CompileStep compile, Map<String, String> tests, Duration timeout, RunHandle<?> handle) {
+        if (language != Language.JAVA) return JunitRunResult.fail("Скрытые JUnit-тесты пока поддерживаются только для Java.");
+        if (tests == null || tests.isEmpty()) return JunitRunResult.fail("У задания нет скрытых тестов.");
+        if (timeout == null) timeout = Duration.ofSeconds(15);
+        if (!compilerAvailable()) return JunitRunResult.fail(NO_COMPILER_MESSAGE);
 
-            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-            try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
-                Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromFiles(List.of(src.toFile()));
-                List<String> options = List.of("--release", "17", "-encoding", "UTF-8", "-d", dir.toAbsolutePath().toString());
+        try {
+            MemoryCompilation compilation = compile.compile(handle);
+            if (!compilation.success()) return JunitRunResult.compileError(compilation.diagnostics(), compilation.problems());
+            JunitRunner.Compiled compiled = JunitRunner.compileTests(compilation.classes(), tests, handle::isCancelled);
+            if (!compiled.success()) {
+                return JunitRunResult.compileError("Код не компилируется вместе с тестами:\n" + compiled.diagnostics(), List.of());
+            }
+            return new JunitRunner(childJvmOptions(), outputLimitBytes).run(compiled, timeout, handle);
+        } catch (Exception e) {
+            return handle.isCancelled() ? JunitRunResult.cancelled()
+                    : JunitRunResult.fail("Ошибка при компиляции/запуске тестов: " + e.getMessage());
+        }
+    }
 
-                Boolean ok = compiler.getTask(null, fm, diagnostics, options, null, units).call();
-                if (ok == null || !ok) {
-                    return RunResult.compileError(formatDiagnostics(diagnostics));
+    /** Компиляция в памяти и запуск в текущем режиме выполнения (FORK, POOLED или IN_PROCESS). */
+    private RunResult runCompiled(CompileStep compile, String mainClass, Duration timeout, OutputListener listener,
+                                  RunHandle<?> handle) {
+        if (!compilerAvailable()) return RunResult.fail(NO_COMPILER_MESSAGE);
+        try {
+            long compileStarted = System.nanoTime();
+            MemoryCompilation compilation = compile.compile(handle);
+            long compileMillis = millisSince(compileStarted);
+            if (!compilation.success()) {
+                return compileError(compilation, compileMillis);
+            }
+            if (executionMode == ExecutionMode.POOLED && language == Language.JAVA) {
+                long started = System.nanoTime();
+                RunResult rr = (workers != null
+                        ? workers.execute(compilation.classes(), mainClass, childJvmOptions(), timeout, outputLimitBytes, handle)
+                        : WorkerPool.shared().execute(compilation.classes(), mainClass, timeout, outputLimitBytes, handle))
+                        .withMetrics(new RunMetrics(ExecutionMode.POOLED, null, compileMillis, -1, millisSince(started), -1, -1));
+                if (listener != null) {
+                    if (!rr.getStdout().isEmpty()) listener.onOutput(OutputListener.Channel.STDOUT, rr.getStdout());
+                    if (!rr.getStderr().isEmpty()) listener.onOutput(OutputListener.Channel.STDERR, rr.getStderr());
                 }
+                return rr;
             }
+            RunResult rr = executionMode == ExecutionMode.IN_PROCESS && language == Language.JAVA
+                    && InProcessExecutor.canRunInProcess(compilation.classes())
+                    ? InProcessExecutor.execute(compilation.classes(), mainClass, timeout, outputLimitBytes, listener, handle)
+                    : forkWithClasses(compilation.classes(), mainClass, timeout, listener, handle);
+            return rr.withMetrics(rr.getMetrics().withCompileMillis(compileMillis));
+        } catch (Exception e) {
+            return RunResult.fail("Ошибка при компиляции/запуске: " + e.getMessage());
+        }
+    }
 
-            String javaBin = resolveJavaBin();
-            ProcessBuilder pb = new ProcessBuilder(
-                    javaBin,
-                    "-Xmx256m",
-                    "-cp",
-                    dir.toAbsolutePath().toString(),
-                    mainClass
-            );
-            pb.redirectErrorStream(false);
+    /** Откуда берутся классы для запуска: один исходник через кэш или {@link SandboxWorkspace}. */
+    @FunctionalInterface
+    private interface CompileStep {
+        MemoryCompilation compile(RunHandle<?> handle) throws IOException, InterruptedException;
+    }
 
-            Process p = pb.start();
-            boolean finished = p.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
-            if (!finished) {
-                p.destroyForcibly();
-                return RunResult.runtimeError("Превышен таймаут выполнения (" + timeout.toSeconds() + "s). Процесс остановлен.");
+    private RunResult forkWithClasses(CompiledClasses classes, String mainClass, Duration timeout,
+                                      OutputListener listener, RunHandle<?> handle) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(childCommand(childJvmOptions(), childClassPath(),
+                SandboxChildMain.class.getName(), mainClass));
+        pb.redirectErrorStream(false);
+
+        long spawned = System.nanoTime();
+        Process p = pb.start();
+        return awaitProcess(p, spawned, true, timeout, listener, handle, () -> {
+            try (DataOutputStream stdin = new DataOutputStream(new BufferedOutputStream(p.getOutputStream()))) {
+                classes.writeTo(stdin);
+            } catch (IOException e) {
+                // дочерний процесс мог завершиться раньше, чем прочитал классы: причину покажет stderr
             }
+        });
+    }
 
-            String out = readAll(p.getInputStream());
-            String err = readAll(p.getErrorStream());
-            int code = p.exitValue();
+    private RunResult runOnDisk(JavaCompiler compiler, String fileName, String mainClass, String source,
+                                Duration timeout, OutputListener listener, RunHandle<?> handle) {
+        SessionScratch.Lease lease;
+        try {
+            lease = SessionScratch.shared().lease();
+        } catch (IOException e) {
+            return RunResult.fail("Не удалось создать временную директорию: " + e.getMessage());
+        }
 
-            if (code != 0) {
-                return RunResult.runtimeError(
-                        "Процесс завершился с кодом " + code + ".\n" +
-                                (err.isBlank() ? "" : ("stderr:\n" + err + "\n")) +
-                                (out.isBlank() ? "" : ("stdout:\n" + out))
-                );
+        // каталог переиспользуется между запусками, очищает его фоновый уборщик
+        try (lease) {
+            Path dir = lease.dir();
+            long compileStarted = System.nanoTime();
+            List<CompileDiagnostic> diagnostics = compileOnDisk(compiler, dir, fileName, source);
+            long compileMillis = millisSince(compileStarted);
+            if (diagnostics != null) {
+                return compileError(MemoryCompilation.failed(diagnostics, false), compileMillis);
             }
+            if (handle.isCancelled()) return RunResult.cancelled();
 
-            return RunResult.ok(out, err);
+            ProcessBuilder pb = new ProcessBuilder(childCommand(launchProfile.jvmOptions(),
+                    dir.toAbsolutePath().toString(), mainClass));
+            pb.redirectErrorStream(false);
+
+            long spawned = System.nanoTime();
+            Process p = pb.start();
+            p.getOutputStream().close();
+            RunResult rr = awaitProcess(p, spawned, false, timeout, listener, handle, null);
+            return rr.withMetrics(rr.getMetrics().withCompileMillis(compileMillis));
         } catch (Exception e) {
             return RunResult.fail("Ошибка при компиляции/запуске: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Командная строка дочерней JVM. Вывод читается как UTF-8, поэтому и ребёнок пишет в UTF-8
+     * независимо от локали ОС (sun.* — для JDK 17, без префикса — для JDK 19+).
+     */
+    static List<String> childCommand(List<String> jvmOptions, String classPath, String... mainAndArgs) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(resolveJavaBin());
+        cmd.addAll(jvmOptions);
+        cmd.addAll(List.of(
+                "-Dsun.stdout.encoding=UTF-8",
+                "-Dsun.stderr.encoding=UTF-8",
+                "-Dstdout.encoding=UTF-8",
+                "-Dstderr.encoding=UTF-8"
+        ));
+        cmd.addAll(ChildJvmArchive.jvmOptions(classPath));
+        cmd.add("-cp");
+        cmd.add(classPath);
+        cmd.addAll(List.of(mainAndArgs));
+        return cmd;
+    }
+
+    /**
+     * Компиляция в памяти тёплым javac ({@link CompilerService}) через кэш, если он задан.
+     * Прерванная отменой компиляция бросает исключение и в кэш не попадает.
+     */
+    private MemoryCompilation compileCached(String fileName, String source, RunHandle<?> handle)
+            throws IOException, InterruptedException {
+        if (compilationCache == null) return compile(fileName, source, handle);
+
+        String key = CompilationCache.key(fileName, source, language == Language.KOTLIN ? KotlinCompiler.OPTIONS : JAVAC_OPTIONS);
+        MemoryCompilation cached = compilationCache.get(key);
+        if (cached != null) return cached;
+
+        MemoryCompilation compilation = compile(fileName, source, handle);
+        compilationCache.put(key, compilation);
+        return compilation;
+    }
+
+    private MemoryCompilation compile(String fileName, String source, RunHandle<?> handle)
+            throws IOException, InterruptedException {
+        if (language == Language.KOTLIN) return KotlinCompiler.compile(Map.of(fileName, source == null ? "" : source), handle::isCancelled);
+        return CompilerService.shared().compile(fileName, source, handle::isCancelled);
+    }
+
+    /** Kotlin-компилятор встроен в приложение, javac может отсутствовать в runtime-image. */
+    private boolean compilerAvailable() {
+        return language == Language.KOTLIN || CompilerService.shared().isAvailable();
+    }
+
+    /** Флаги профиля плюс, для Kotlin, kotlin-stdlib в classloader'е программы. */
+    private List<String> childJvmOptions() throws IOException {
+        if (language != Language.KOTLIN) return launchProfile.jvmOptions();
+        List<String> options = new ArrayList<>(launchProfile.jvmOptions());
+        options.add(KotlinCompiler.libsOption());
+        return options;
+    }
+
+    /**
+     * Компиляция в памяти со свежим file manager'ом (холодный путь, для сравнения в бенчмарке).
+     */
+    static MemoryCompilation compileInMemory(JavaCompiler compiler, String fileName, String source) throws IOException {
+        try (StandardJavaFileManager std = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            return compileInMemory(compiler, std, fileName, source, () -> false);
+        }
+    }
+
+    /**
+     * Компиляция в памяти: ни исходник, ни .class-файлы не попадают на диск.
+     * {@code std} не закрывается — им владеет вызывающий. Когда {@code cancelled} становится
+     * {@code true}, javac прерывается на ближайшем событии компиляции исключением.
+     */
+    static MemoryCompilation compileInMemory(JavaCompiler compiler, StandardJavaFileManager std,
+                                             String fileName, String source, BooleanSupplier cancelled) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        InMemoryFileManager fm = new InMemoryFileManager(std);
+        List<JavaFileObject> units = List.of(InMemoryFileManager.source(fileName, source));
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, JAVAC_OPTIONS, null, units);
+        cancelOn(task, cancelled);
+        Boolean ok = task.call();
+        if (ok == null || !ok) {
+            return MemoryCompilation.failed(CompileDiagnostic.of(diagnostics.getDiagnostics()), false);
+        }
+        return new MemoryCompilation(fm.compiledClasses(), null);
+    }
+
+    /** javac прервётся исключением на ближайшем событии компиляции после того, как {@code cancelled} станет true. */
+    static void cancelOn(JavaCompiler.CompilationTask task, BooleanSupplier cancelled) {
+        if (task instanceof JavacTask javacTask) {
+            javacTask.addTaskListener(new TaskListener() {
+                @Override
+                public void started(TaskEvent e) {
+                    if (cancelled.getAsBoolean()) throw new CancellationException();
+                }
+            });
+        }
+    }
+
+    /**
+     * Классический путь: исходник пишется в dir, javac кладёт .class туда же.
+     * Возвращает сообщения javac, если компиляция не удалась, или null при успехе.
+     */
+    static List<CompileDiagnostic> compileOnDisk(JavaCompiler compiler, Path dir, String fileName, String source) throws IOException {
+        Path src = dir.resolve(fileName);
+        Files.writeString(src, source, StandardCharsets.UTF_8);
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromFiles(List.of(src.toFile()));
+            List<String> options = new ArrayList<>(JAVAC_OPTIONS);
+            options.add("-d");
+            options.add(dir.toAbsolutePath().toString());
+
+            Boolean ok = compiler.getTask(null, fm, diagnostics, options, null, units).call();
+            return ok == null || !ok ? CompileDiagnostic.of(diagnostics.getDiagnostics()) : null;
+        }
+    }
+
+    /**
+     * Ждёт процесс, параллельно вычитывая stdout/stderr. {@code feedStdin} выполняется
+     * уже после старта вычитывания, чтобы запись в stdin не упёрлась в заполненный pipe.
+     * {@code markedMain} — процесс запущен через {@link SandboxChildMain}, и в stderr придёт маркер main.
+     */
+    private RunResult awaitProcess(Process p, long spawnedNanos, boolean markedMain, Duration timeout,
+                                   OutputListener listener, RunHandle<?> handle, Runnable feedStdin)
+            throws InterruptedException {
+        if (!handle.attach(() -> killTree(p))) return RunResult.cancelled();
+        try {
+            return awaitAttached(p, spawnedNanos, markedMain, timeout, listener, feedStdin);
         } finally {
-            try { deleteRecursive(dir); } catch (Exception ignored) {}
+            handle.detach();
+        }
+    }
+
+    private RunResult awaitAttached(Process p, long spawnedNanos, boolean markedMain, Duration timeout,
+                                    OutputListener listener, Runnable feedStdin) throws InterruptedException {
+        OutputCapture out = new OutputCapture(outputLimitBytes);
+        OutputCapture err = new OutputCapture(outputLimitBytes);
+        OutputStream errSink = StreamingDecoder.tee(err, listener, OutputListener.Channel.STDERR, StandardCharsets.UTF_8);
+        MainStartFilter mainStart = markedMain ? new MainStartFilter(errSink) : null;
+        StreamDrainer outPump = StreamDrainer.start(p.getInputStream(),
+                StreamingDecoder.tee(out, listener, OutputListener.Channel.STDOUT, StandardCharsets.UTF_8), "sandbox-stdout");
+        StreamDrainer errPump = StreamDrainer.start(p.getErrorStream(),
+                mainStart != null ? mainStart : errSink, "sandbox-stderr");
+
+        ChildProcessSampler sampler = ChildProcessSampler.start(p.toHandle());
+
+        if (feedStdin != null) feedStdin.run();
+
+        boolean finished = p.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (!finished) {
+            killTree(p);
+            return timeoutResult(timeout).withMetrics(forkMetrics(spawnedNanos, System.nanoTime(), mainStart, sampler.stop()));
         }
+        long exitedNanos = System.nanoTime();
+        ChildProcessSampler.Usage usage = sampler.stop();
+
+        outPump.await(DRAIN_GRACE_MILLIS);
+        errPump.await(DRAIN_GRACE_MILLIS);
+        return toRunResult(p.exitValue(), out, err).withMetrics(forkMetrics(spawnedNanos, exitedNanos, mainStart, usage));
+    }
+
+    private RunMetrics forkMetrics(long spawnedNanos, long exitedNanos, MainStartFilter mainStart,
+                                   ChildProcessSampler.Usage usage) {
+        long mainNanos = mainStart == null ? -1 : mainStart.seenAtNanos();
+        long spawnToMain = mainNanos < 0 ? -1 : (mainNanos - spawnedNanos) / 1_000_000;
+        long execution = (exitedNanos - (mainNanos < 0 ? spawnedNanos : mainNanos)) / 1_000_000;
+        return new RunMetrics(ExecutionMode.FORK, launchProfile, -1, spawnToMain, execution,
+                usage.cpuMillis(), usage.peakRssBytes());
+    }
+
+    private RunResult compileError(MemoryCompilation compilation, long compileMillis) {
+        return RunResult.compileError(compilation.diagnostics(), compilation.problems()).withMetrics(RunMetrics.compileOnly(
+                executionMode, executionMode == ExecutionMode.FORK ? launchProfile : null, compileMillis));
+    }
+
+    /**
+     * Убивает процесс вместе с потомками (программа студента могла запустить свои процессы).
+     * Сначала потомков: после смерти родителя они переходят к init и из descendants() пропадают.
+     */
+    static void killTree(Process p) {
+        p.descendants().forEach(ProcessHandle::destroyForcibly);
+        p.destroyForcibly();
+    }
+
+    static long millisSince(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    static RunResult timeoutResult(Duration timeout) {
+        return RunResult.runtimeError("Превышен таймаут выполнения (" + timeout.toSeconds() + "s). Процесс остановлен.");
+    }
+
+    static RunResult toRunResult(int code, OutputCapture out, OutputCapture err) {
+        return toRunResult(code,
+                out.toString(StandardCharsets.UTF_8),
+                err.toString(StandardCharsets.UTF_8),
+                out.truncated() || err.truncated());
     }
 
-    private static String resolveJavaBin() {
+    static RunResult toRunResult(int code, String out, String err, boolean truncated) {
+        if (code != 0) {
+            return RunResult.runtimeError(
+                    "Процесс завершился с кодом " + code + ".\n" +
+                            (err.isBlank() ? "" : ("stderr:\n" + err + "\n")) +
+                            (out.isBlank() ? "" : ("stdout:\n" + out)),
+                    out,
+                    err,
+                    truncated
+            );
+        }
+
+        return RunResult.ok(out, err, truncated);
+    }
+
+    /** Classpath дочерней JVM: стабильный jar из {@link ChildJvmArchive}, пока его нет — код приложения. */
+    static String childClassPath() {
+        ChildJvmArchive.prepareInBackground(); // первый fork запускает подготовку, если приложение ещё не запустило
+        String stable = ChildJvmArchive.stableClassPath();
+        return stable != null ? stable : codeSourcePath();
+    }
+
+    private static String codeSourcePath() {
+        try {
+            return Path.of(SandboxChildMain.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toAbsolutePath()
+                    .toString();
+        } catch (Exception e) {
+            return System.getProperty("java.class.path", ".");
+        }
+    }
+
+    static String resolveJavaBin() {
         String javaHome = System.getProperty("java.home");
         if (javaHome == null || javaHome.isBlank()) return "java";
         Path bin = Path.of(javaHome, "bin", isWindows() ? "java.exe" : "java");
@@ -112,28 +709,7 @@ public final class JavaSandboxRunner {
         return os.contains("win");
     }
 
-    private static String readAll(InputStream is) throws IOException {
-        if (is == null) return "";
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buf = new byte[8192];
-        int r;
-        while ((r = is.read(buf)) >= 0) {
-            baos.write(buf, 0, r);
-        }
-        return baos.toString(StandardCharsets.UTF_8);
-    }
-
-    private static String formatDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics) {
-        StringBuilder sb = new StringBuilder();
-        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
-            sb.append("[").append(d.getKind()).append("] ");
-            sb.append("line ").append(d.getLineNumber()).append(": ");
-            sb.append(d.getMessage(null)).append("\n");
-        }
-        return sb.toString();
-    }
-
-    private static void deleteRecursive(Path path) throws IOException {
+    static void deleteRecursive(Path path) throws IOException {
         if (path == null || !Files.exists(path)) return;
         if (Files.isDirectory(path)) {
             try (var s = Files.list(path)) {
@@ -143,40 +719,100 @@ public final class JavaSandboxRunner {
         Files.deleteIfExists(path);
     }
 
+    /**
+     * Классы или, если компиляция не удалась, сообщения компилятора: разобранные ({@code problems})
+     * и тем же текстом для терминала ({@code diagnostics}).
+     */
+    record MemoryCompilation(CompiledClasses classes, String diagnostics, List<CompileDiagnostic> problems) {
+        MemoryCompilation(CompiledClasses classes, String diagnostics) {
+            this(classes, diagnostics, List.of());
+        }
+
+        static MemoryCompilation failed(List<CompileDiagnostic> problems, boolean withFile) {
+            return new MemoryCompilation(null, CompileDiagnostic.format(problems, withFile), problems);
+        }
+
+        boolean success() { return classes != null; }
+    }
+
     public static final class RunResult {
-        public enum Status { OK, COMPILE_ERROR, RUNTIME_ERROR, FAIL }
+        public enum Status { OK, COMPILE_ERROR, RUNTIME_ERROR, FAIL, CANCELLED }
 
         private final Status status;
         private final String message;
         private final String stdout;
         private final String stderr;
+        private final boolean outputTruncated;
+        private final List<CompileDiagnostic> diagnostics;
+        private final RunMetrics metrics;
+
+        private RunResult(Status status, String message, String stdout, String stderr, boolean outputTruncated) {
+            this(status, message, stdout, stderr, outputTruncated, List.of(), RunMetrics.NONE);
+        }
 
-        private RunResult(Status status, String message, String stdout, String stderr) {
+        private RunResult(Status status, String message, String stdout, String stderr, boolean outputTruncated,
+                          List<CompileDiagnostic> diagnostics, RunMetrics metrics) {
             this.status = status;
             this.message = message;
             this.stdout = stdout;
             this.stderr = stderr;
+            this.outputTruncated = outputTruncated;
+            this.diagnostics = diagnostics;
+            this.metrics = metrics;
+        }
+
+        RunResult withMetrics(RunMetrics metrics) {
+            return new RunResult(status, message, stdout, stderr, outputTruncated, diagnostics, metrics);
         }
 
         public static RunResult ok(String stdout, String stderr) {
-            return new RunResult(Status.OK, "", stdout == null ? "" : stdout, stderr == null ? "" : stderr);
+            return ok(stdout, stderr, false);
+        }
+
+        public static RunResult ok(String stdout, String stderr, boolean outputTruncated) {
+            return new RunResult(Status.OK, "", stdout == null ? "" : stdout, stderr == null ? "" : stderr, outputTruncated);
         }
 
         public static RunResult compileError(String message) {
-            return new RunResult(Status.COMPILE_ERROR, message == null ? "" : message, "", "");
+            return compileError(message, List.of());
+        }
+
+        /** @param diagnostics те же сообщения, что в {@code message}, но разобранные — для редактора */
+        public static RunResult compileError(String message, List<CompileDiagnostic> diagnostics) {
+            return new RunResult(Status.COMPILE_ERROR, message == null ? "" : message, "", "", false,
+                    diagnostics == null ? List.of() : List.copyOf(diagnostics), RunMetrics.NONE);
         }
 
         public static RunResult runtimeError(String message) {
-            return new RunResult(Status.RUNTIME_ERROR, message == null ? "" : message, "", "");
+            return runtimeError(message, "", "", false);
+        }
+
+        public static RunResult runtimeError(String message, String stdout, String stderr, boolean outputTruncated) {
+            return new RunResult(Status.RUNTIME_ERROR, message == null ? "" : message,
+                    stdout == null ? "" : stdout, stderr == null ? "" : stderr, outputTruncated);
         }
 
         public static RunResult fail(String message) {
-            return new RunResult(Status.FAIL, message == null ? "" : message, "", "");
+            return new RunResult(Status.FAIL, message == null ? "" : message, "", "", false);
+        }
+
+        /** Запуск остановлен через {@link RunHandle#cancel()}. */
+        public static RunResult cancelled() {
+            return new RunResult(Status.CANCELLED, "Запуск остановлен.", "", "", false);
         }
 
         public Status getStatus() { return status; }
         public String getMessage() { return message; }
         public String getStdout() { return stdout; }
         public String getStderr() { return stderr; }
+
+        /** true, если stdout или stderr превысили лимит и середина вывода была отброшена. */
+        public boolean isOutputTruncated() { return outputTruncated; }
+
+        /** Сообщения компилятора; пусто, если компиляция прошла или до неё не дошло. */
+        public List<CompileDiagnostic> getDiagnostics() { return diagnostics; }
+
+        /** Время и память запуска; {@link RunMetrics#NONE}, если до запуска не дошло. */
+        public RunMetrics getMetrics() { return metrics; }
     }
 }
@@ -0,0 +1,117 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.List;
+
+/**
+ * Итог прогона скрытых JUnit-тестов ({@link JavaSandboxRunner#runTests}).
+ *
+ * {@link Status#OK} значит, что код и тесты скомпилировались и JUnit Platform отработала до конца;
+ * пройдены ли тесты — в {@link #tests()} и {@link #allPassed()}.
+ */
+public final class JunitRunResult {
+    public enum Status { OK, COMPILE_ERROR, FAIL, CANCELLED }
+
+    public enum Outcome { PASSED, FAILED, ABORTED, SKIPPED }
+
+    /**
+     * Результат одного теста. Упавшая инициализация класса (например, {@code @BeforeAll})
+     * тоже попадает сюда — строкой с именем класса.
+     *
+     * @param className binary name тестового класса
+     * @param name      отображаемое имя теста ({@code @DisplayName} или имя метода)
+     */
+    public record TestResult(String className, String name, Outcome outcome, String message, long millis) {
+        public boolean passed() {
+            return outcome == Outcome.PASSED;
+        }
+
+        public boolean failed() {
+            return outcome == Outcome.FAILED || outcome == Outcome.ABORTED;
+        }
+    }
+
+    private final Status status;
+    private final String message;
+    private final List<TestResult> tests;
+    private final String output;
+    private final List<CompileDiagnostic> diagnostics;
+
+    private JunitRunResult(Status status, String message, List<TestResult> tests, String output,
+                           List<CompileDiagnostic> diagnostics) {
+        this.status = status;
+        this.message = message == null ? "" : message;
+        this.tests = List.copyOf(tests);
+        this.output = output == null ? "" : output;
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    /** @param output что код и тесты напечатали в stdout/stderr за время прогона */
+    public static JunitRunResult ok(List<TestResult> tests, String output) {
+        return new JunitRunResult(Status.OK, "", tests, output, List.of());
+    }
+
+    public static JunitRunResult compileError(String message) {
+        return compileError(message, List.of());
+    }
+
+    /** @param diagnostics сообщения компилятора по коду студента; ошибки в скрытых тестах сюда не входят */
+    public static JunitRunResult compileError(String message, List<CompileDiagnostic> diagnostics) {
+        return new JunitRunResult(Status.COMPILE_ERROR, message, List.of(), "", diagnostics);
+    }
+
+    public static JunitRunResult fail(String message) {
+        return new JunitRunResult(Status.FAIL, message, List.of(), "", List.of());
+    }
+
+    /** Прогон остановлен через {@link RunHandle#cancel()}. */
+    public static JunitRunResult cancelled() {
+        return new JunitRunResult(Status.CANCELLED, "Запуск остановлен.", List.of(), "", List.of());
+    }
+
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public List<TestResult> tests() { return tests; }
+    public String getOutput() { return output; }
+    public List<CompileDiagnostic> getDiagnostics() { return diagnostics; }
+
+    /** Все тесты прошли; пропущенные ({@code @Disabled}) не мешают, но хотя бы один должен пройти. */
+    public boolean allPassed() {
+        return status == Status.OK && passedCount() > 0 && tests.stream().noneMatch(TestResult::failed);
+    }
+
+    public long passedCount() {
+        return tests.stream().filter(TestResult::passed).count();
+    }
+
+    /** Сколько тестов учитывается в «пройдено X из N»: все, кроме пропущенных. */
+    public long countedTests() {
+        return tests.stream().filter(t -> t.outcome() != Outcome.SKIPPED).count();
+    }
+
+    /** Текст для терминала: по строке на тест, у непройденных — сообщение assertion'а. */
+    public String report() {
+        if (status != Status.OK) return message;
+
+        StringBuilder sb = new StringBuilder();
+        for (TestResult t : tests) {
+            String name = simpleName(t.className()) + " > " + t.name();
+            switch (t.outcome()) {
+                case PASSED -> sb.append("[OK]   ").append(name).append(" (").append(t.millis()).append(" ms)\n");
+                case SKIPPED -> sb.append("[SKIP] ").append(name).append(t.message().isBlank() ? "" : ": " + t.message()).append('\n');
+                default -> {
+                    sb.append("[FAIL] ").append(name).append('\n');
+                    for (String line : t.message().split("\n", -1)) {
+                        sb.append("         ").append(line).append('\n');
+                    }
+                }
+            }
+        }
+        sb.append("\nПройдено ").append(passedCount()).append(" из ").append(countedTests()).append('.');
+        if (!output.isBlank()) sb.append("\n\nВывод:\n").append(output);
+        return sb.toString();
+    }
+
+    private static String simpleName(String binaryName) {
+        return binaryName.substring(binaryName.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,303 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Скрытые JUnit-тесты: компиляция тестов поверх классов студента и прогон в дочерней JVM
+ * ({@link SandboxJunitMain}).
+ *
+ * Тесты компилирует отдельный тёплый file manager, у которого в classpath JUnit; классы
+ * студента javac получает готовыми из памяти, поэтому код студента заново не компилируется.
+ * На прогон запускается одна JVM, тесты внутри идут параллельно.
+ *
+ * Отчёт дочерней JVM принимается, только если подписан ключом этого прогона, и если в нём не
+ * меньше тестов, чем {@code @Test}-методов в классах тестов (иначе часть тестов просто не дошла
+ * до отчёта, а «все прошли» было бы неправдой).
+ */
+final class JunitRunner {
+    /** По классу из каждого артефакта JUnit, который нужен javac и дочерней JVM. */
+    private static final List<String> MARKERS = List.of(
+            "org.junit.jupiter.api.Test",
+            "org.junit.jupiter.engine.JupiterTestEngine",
+            "org.junit.platform.engine.TestEngine",
+            "org.junit.platform.launcher.core.LauncherFactory",
+            "org.junit.platform.commons.annotation.Testable",
+            "org.opentest4j.AssertionFailedError",
+            "org.apiguardian.api.API");
+
+    /** Что извлекается из jar приложения, если JUnit упакован в него. */
+    private static final List<String> PREFIXES = List.of(
+            "org/junit/", "org/opentest4j/", "org/apiguardian/", "META-INF/services/org.junit.");
+
+    /** Столько stdout дочерней JVM хранится ради отчёта в его конце (см. {@link SandboxJunitMain#seal}). */
+    private static final int MAX_REPORT_BYTES = 16 * 1024 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Path CACHE_DIR = Path.of(System.getProperty("user.home"), ".aqa-course", "cache", "junit");
+
+    private static final Object COMPILE_LOCK = new Object();
+    private static StandardJavaFileManager fileManager;
+    private static volatile List<String> classPath;
+
+    private final List<String> jvmOptions;
+    private final int outputLimitBytes;
+
+    JunitRunner(List<String> jvmOptions, int outputLimitBytes) {
+        this.jvmOptions = jvmOptions;
+        this.outputLimitBytes = outputLimitBytes;
+    }
+
+    /**
+     * Код студента вместе с тестами и имена тестовых классов, либо текст ошибок компиляции тестов.
+     * {@code declaredTests} — сколько в тестовых классах {@code @Test}-методов.
+     */
+    record Compiled(CompiledClasses classes, List<String> testClasses, int declaredTests, String diagnostics) {
+        boolean success() {
+            return classes != null;
+        }
+    }
+
+    /**
+     * Компилирует {@code tests} (имя файла → исходник) против {@code program}. Тестовые классы —
+     * классы верхнего уровня из файлов тестов; вложенные ({@code @Nested}) JUnit найдёт сам.
+     */
+    static Compiled compileTests(CompiledClasses program, Map<String, String> tests, BooleanSupplier cancelled)
+            throws IOException {
+        JavaCompiler compiler = CompilerService.shared().compiler();
+        List<JavaFileObject> sources = new ArrayList<>();
+        tests.forEach((fileName, source) -> sources.add(InMemoryFileManager.source(fileName, source)));
+
+        synchronized (COMPILE_LOCK) {
+            if (fileManager == null) {
+                StandardJavaFileManager std = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+                std.setLocation(StandardLocation.CLASS_PATH, classPath().stream().map(File::new).toList());
+                fileManager = std;
+            }
+            InMemoryFileManager fm = new InMemoryFileManager(fileManager, program.classes());
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(null, fm, diagnostics, JavaSandboxRunner.JAVAC_OPTIONS, null, sources);
+            JavaSandboxRunner.cancelOn(task, cancelled);
+            boolean ok;
+            try {
+                ok = Boolean.TRUE.equals(task.call());
+            } catch (RuntimeException e) {
+                // после исключения внутри javac состояние file manager'а не гарантировано
+                try { fileManager.close(); } catch (IOException ignored) {}
+                fileManager = null;
+                throw e;
+            }
+            if (!ok) return new Compiled(null, List.of(), 0, CompileDiagnostic.format(CompileDiagnostic.of(diagnostics.getDiagnostics()), true));
+
+            Map<String, byte[]> classes = new LinkedHashMap<>(program.classes());
+            List<String> testClasses = new ArrayList<>();
+            for (Map.Entry<String, byte[]> e : fm.compiledClasses().classes().entrySet()) {
+                classes.put(e.getKey(), e.getValue());
+                if (!e.getKey().contains("$") && tests.containsKey(fm.outputSources().get(e.getKey()))) {
+                    testClasses.add(e.getKey());
+                }
+            }
+            CompiledClasses all = new CompiledClasses(classes);
+            return new Compiled(all, testClasses, countTests(all, testClasses), null);
+        }
+    }
+
+    /**
+     * {@code @Test}-методы тестовых классов, их суперклассов и {@code @Nested}-классов. Классы только
+     * загружаются, без инициализации: код студента здесь не выполняется. Абстрактные классы, классы
+     * с {@code @Disabled} и с условиями выполнения не считаются — JUnit может пропустить их целиком.
+     */
+    private static int countTests(CompiledClasses classes, List<String> testClasses) {
+        ClassLoader loader = new MemoryClassLoader(classes, JunitRunner.class.getClassLoader());
+        int count = 0;
+        try {
+            for (String name : testClasses) count += countTests(Class.forName(name, false, loader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return 0; // не загрузились здесь — не загрузятся и в дочерней JVM, там и будет ошибка
+        }
+        return count;
+    }
+
+    private static int countTests(Class<?> testClass) {
+        if (mayBeSkipped(testClass)) return 0;
+        int count = 0;
+        Set<String> seen = new HashSet<>();
+        for (Class<?> c = testClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method m : c.getDeclaredMethods()) {
+                // переопределённый метод считается по наследнику, который встречается раньше
+                String signature = m.getName() + Arrays.toString(m.getParameterTypes());
+                if (seen.add(signature) && hasAnnotation(m.getDeclaredAnnotations(), "org.junit.jupiter.api.Test")) count++;
+            }
+        }
+        for (Class<?> nested : testClass.getDeclaredClasses()) {
+            if (!Modifier.isStatic(nested.getModifiers())
+                    && hasAnnotation(nested.getDeclaredAnnotations(), "org.junit.jupiter.api.Nested")) {
+                count += countTests(nested);
+            }
+        }
+        return count;
+    }
+
+    private static boolean mayBeSkipped(Class<?> testClass) {
+        if (Modifier.isAbstract(testClass.getModifiers())) return true; // JUnit их не запускает, только наследников
+        for (Annotation a : testClass.getDeclaredAnnotations()) {
+            String name = a.annotationType().getName();
+            if (name.equals("org.junit.jupiter.api.Disabled") || name.startsWith("org.junit.jupiter.api.condition.")) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasAnnotation(Annotation[] annotations, String type) {
+        for (Annotation a : annotations) {
+            if (a.annotationType().getName().equals(type)) return true;
+        }
+        return false;
+    }
+
+    JunitRunResult run(Compiled compiled, Duration timeout, RunHandle<?> handle) throws IOException, InterruptedException {
+        if (compiled.testClasses().isEmpty()) return JunitRunResult.fail("В файлах скрытых тестов нет классов.");
+
+        String cp = JavaSandboxRunner.childClassPath() + File.pathSeparator + String.join(File.pathSeparator, classPath());
+        Process p = new ProcessBuilder(JavaSandboxRunner.childCommand(jvmOptions, cp, SandboxJunitMain.class.getName())).start();
+        if (!handle.attach(() -> JavaSandboxRunner.killTree(p))) return JunitRunResult.cancelled();
+        try {
+            byte[] key = new byte[SandboxJunitMain.KEY_BYTES];
+            RANDOM.nextBytes(key);
+            OutputCapture report = new OutputCapture(MAX_REPORT_BYTES);
+            OutputCapture output = new OutputCapture(outputLimitBytes);
+            StreamDrainer reportPump = StreamDrainer.start(p.getInputStream(), report, "sandbox-junit-report");
+            StreamDrainer outputPump = StreamDrainer.start(p.getErrorStream(), output, "sandbox-junit-output");
+
+            try (DataOutputStream stdin = new DataOutputStream(new BufferedOutputStream(p.getOutputStream()))) {
+                stdin.write(key);
+                compiled.classes().writeTo(stdin);
+                stdin.writeInt(compiled.testClasses().size());
+                for (String name : compiled.testClasses()) stdin.writeUTF(name);
+            } catch (IOException e) {
+                // дочерний процесс мог завершиться раньше, чем прочитал классы: причину покажет stderr
+            }
+
+            if (!p.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                JavaSandboxRunner.killTree(p);
+                return handle.isCancelled() ? JunitRunResult.cancelled()
+                        : JunitRunResult.fail("Превышен таймаут выполнения тестов (" + timeout.toSeconds() + "s). Процесс остановлен.");
+            }
+            reportPump.await(1000);
+            outputPump.await(1000);
+            if (handle.isCancelled()) return JunitRunResult.cancelled();
+
+            String text = output.toString(StandardCharsets.UTF_8);
+            List<JunitRunResult.TestResult> tests;
+            try {
+                byte[] sealed = SandboxJunitMain.unseal(report.toByteArray(), key);
+                tests = SandboxJunitMain.readReport(new DataInputStream(new ByteArrayInputStream(sealed)));
+            } catch (IOException e) {
+                // отчёта нет или он не наш: тест вызвал System.exit, JVM упала или код писал в stdout процесса
+                return JunitRunResult.fail("Тесты не завершились: процесс завершился с кодом " + p.exitValue() + "."
+                        + (text.isBlank() ? "" : "\n" + text));
+            }
+            // упавший класс (например, @BeforeAll) сам объясняет, почему тестов меньше
+            if (tests.size() < compiled.declaredTests() && tests.stream().noneMatch(JunitRunResult.TestResult::failed)) {
+                return JunitRunResult.fail("В отчёте тестов " + tests.size() + " из " + compiled.declaredTests()
+                        + ": часть тестов не выполнилась." + (text.isBlank() ? "" : "\n" + text));
+            }
+            return JunitRunResult.ok(tests, text);
+        } finally {
+            handle.detach();
+        }
+    }
+
+    /**
+     * Jar'ы (или папки классов) JUnit. Если JUnit упакован в jar приложения, он один раз
+     * извлекается в {@code ~/.aqa-course/cache/junit}, чтобы не отдавать тестам весь jar.
+     */
+    static List<String> classPath() throws IOException {
+        List<String> cached = classPath;
+        if (cached != null) return cached;
+        synchronized (JunitRunner.class) {
+            if (classPath != null) return classPath;
+            Set<Path> sources = new LinkedHashSet<>();
+            for (String marker : MARKERS) {
+                try {
+                    sources.add(codeSource(Class.forName(marker, false, JunitRunner.class.getClassLoader())));
+                } catch (Exception e) {
+                    throw new IOException("JUnit Platform недоступна: " + marker, e);
+                }
+            }
+            Path appJar = codeSource(JunitRunner.class);
+            List<String> result = new ArrayList<>();
+            for (Path source : sources) {
+                result.add((Files.isRegularFile(source) && source.equals(appJar) ? extract(source) : source).toString());
+            }
+            classPath = List.copyOf(result);
+            return classPath;
+        }
+    }
+
+    private static Path codeSource(Class<?> c) throws IOException {
+        try {
+            return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toAbsolutePath();
+        } catch (Exception e) {
+            throw new IOException("Не удалось определить, откуда загружен " + c.getName(), e);
+        }
+    }
+
+    private static Path extract(Path appJar) throws IOException {
+        String stamp = Long.toHexString(Files.size(appJar)) + "-" + Long.toHexString(Files.getLastModifiedTime(appJar).toMillis());
+        Path target = CACHE_DIR.resolve("junit-" + stamp + ".jar");
+        if (Files.isRegularFile(target)) return target;
+
+        Files.createDirectories(CACHE_DIR);
+        Path tmp = Files.createTempFile(CACHE_DIR, "junit-", ".tmp");
+        try {
+            try (JarFile jar = new JarFile(appJar.toFile());
+                 JarOutputStream out = new JarOutputStream(Files.newOutputStream(tmp))) {
+                for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                    JarEntry e = entries.nextElement();
+                    if (e.isDirectory() || PREFIXES.stream().noneMatch(e.getName()::startsWith)) continue;
+                    out.putNextEntry(new JarEntry(e.getName()));
+                    jar.getInputStream(e).transferTo(out);
+                    out.closeEntry();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/** Kotlin: встроенный kotlinc, выполнение только в FORK (программе нужен kotlin-stdlib). */
+public final class KotlinBackend implements SandboxBackend {
+    @Override
+    public String id() {
+        return "KOTLIN";
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return EnumSet.of(Capability.STREAMING);
+    }
+
+    @Override
+    public JavaSandboxRunner runner(JavaSandboxRunner.ExecutionMode executionMode) {
+        return new JavaSandboxRunner(JavaSandboxRunner.CompileMode.MEMORY, JavaSandboxRunner.ExecutionMode.FORK)
+                .withLanguage(JavaSandboxRunner.Language.KOTLIN);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.vlsklv.course.app.sandbox;
+
+import ru.vlsklv.course.runner.KotlinCompilerService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Kotlin для {@link JavaSandboxRunner}: тёплый компилятор из модуля runner отдаёт классы в том же
+ * виде, что и javac, поэтому запуск, таймауты и {@link JavaSandboxRunner.RunResult} общие.
+ */
+final class KotlinCompiler {
+    /** Для ключа {@link CompilationCache}: другая версия компилятора — другой байткод. */
+    static final List<String> OPTIONS = List.of(
+            "kotlinc", KotlinCompilerService.VERSION, "-jvm-target", KotlinCompilerService.JVM_TARGET);
+
+    private KotlinCompiler() {}
+
+    static JavaSandboxRunner.MemoryCompilation compile(Map<String, String> sources, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        KotlinCompilerService.Compilation c;
+        try (SessionScratch.Lease lease = SessionScratch.shared().lease()) {
+            c = KotlinCompilerService.shared().compile(sources, cancelled, lease.dir());
+        }
+        if (c.isSuccess()) return new JavaSandboxRunner.MemoryCompilation(new CompiledClasses(c.getClasses()), null);
+
+        List<CompileDiagnostic> problems = new ArrayList<>(c.getMessages().size());
+        for (KotlinCompilerService.Message m : c.getMessages()) problems.add(diagnostic(m, sources.get(m.getFileName())));
+        return new JavaSandboxRunner.MemoryCompilation(null, c.getDiagnostics(), List.copyOf(problems));
+    }
+
+    /** kotlinc даёт строки и колонки, редактору нужны смещения: считаются по исходнику. */
+    private static CompileDiagnostic diagnostic(KotlinCompilerService.Message m, String source) {
+        long nopos = CompileDiagnostic.NOPOS;
+        long start = m.getLine() < 1 ? nopos : CompileDiagnostic.offsetOf(source, m.getLine(), m.getColumn());
+        long end = m.getLineEnd() < 1 ? nopos : CompileDiagnostic.offsetOf(source, m.getLineEnd(), m.getColumnEnd());
+        return new CompileDiagnostic(
+                m.isError() ? CompileDiagnostic.Kind.ERROR : CompileDiagnostic.Kind.WARNING,
+                m.getFileName(),
+                m.getLine() < 1 ? nopos : m.getLine(),
+                m.getColumn() < 1 ? nopos : m.getColumn(),
+                start,
+                end < start ? start : end,
+                "",
+                m.getText());
+    }
+
+    /** Опция дочерней JVM, которая даёт программе kotlin-stdlib ({@link SandboxChildMain#LIBS_PROPERTY}). */
+    static String libsOption() throws IOException {
+        return "-D" + SandboxChildMain.LIBS_PROPERTY + "="
+                + String.join(File.pathSeparator, KotlinCompilerService.shared().runtimeClassPath());
+    }
+
+    static void prewarm() {
+        KotlinCompilerService.shared().prewarm();
+    }
+}
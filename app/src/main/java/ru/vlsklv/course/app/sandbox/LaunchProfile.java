@@ -0,0 +1,77 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.List;
+
+/**
+ * Набор флагов дочерней JVM.
+ *
+ * Задаётся в уроке ({@code launchProfile} у {@code CodeAssignment}) или выбирается в песочнице.
+ * Действует на запуски отдельной JVM (FORK и fallback из IN_PROCESS) и на worker'ы
+ * {@link WorkerCoordinator}; у worker'ов {@link WorkerPool} флаги общие и задаются при старте пула.
+ */
+public enum LaunchProfile {
+    /**
+     * Короткие учебные программы: только C1, один поток компилятора, Serial GC,
+     * маленький стек. Меньше потоков и памяти при старте — быстрее до main.
+     */
+    FAST_START("fast-start", "Быстрый старт", List.of(
+            "-Xmx256m",
+            "-Xss512k",
+            "-XX:TieredStopAtLevel=1",
+            "-XX:CICompilerCount=1",
+            "-XX:+UseSerialGC",
+            "-Xshare:auto"
+    )),
+
+    /** Уроки с замерами производительности: C2 и Parallel GC, куча заранее. */
+    THROUGHPUT("throughput", "Производительность", List.of(
+            "-Xms256m",
+            "-Xmx512m",
+            "-XX:+UseParallelGC"
+    )),
+
+    /** Минимум памяти, например для нескольких запусков параллельно. */
+    LOW_MEMORY("low-memory", "Экономия памяти", List.of(
+            "-Xmx64m",
+            "-Xss256k",
+            "-XX:TieredStopAtLevel=1",
+            "-XX:CICompilerCount=1",
+            "-XX:+UseSerialGC",
+            "-XX:ReservedCodeCacheSize=16m",
+            "-XX:MaxMetaspaceSize=64m"
+    ));
+
+    public static final LaunchProfile DEFAULT = FAST_START;
+
+    private final String id;
+    private final String title;
+    private final List<String> jvmOptions;
+
+    LaunchProfile(String id, String title, List<String> jvmOptions) {
+        this.id = id;
+        this.title = title;
+        this.jvmOptions = jvmOptions;
+    }
+
+    /** Имя в YAML урока: fast-start / throughput / low-memory. */
+    public String id() {
+        return id;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public List<String> jvmOptions() {
+        return jvmOptions;
+    }
+
+    /** Профиль по имени из YAML; пустое или неизвестное имя — {@link #DEFAULT}. */
+    public static LaunchProfile fromId(String id) {
+        if (id == null || id.isBlank()) return DEFAULT;
+        for (LaunchProfile p : values()) {
+            if (p.id.equalsIgnoreCase(id.trim()) || p.name().equalsIgnoreCase(id.trim())) return p;
+        }
+        return DEFAULT;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Фильтр stderr дочерней JVM: находит маркер {@link SandboxChildMain#MAIN_MARKER}, запоминает
+ * момент его прихода и не пропускает его дальше. После маркера байты идут насквозь без проверки,
+ * так что вывод самой программы никогда не разбирается.
+ */
+final class MainStartFilter extends OutputStream {
+    private static final byte[] MARKER = SandboxChildMain.MAIN_MARKER.getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private int matched;
+    private volatile long seenAtNanos = -1;
+
+    MainStartFilter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** {@link System#nanoTime()} прихода маркера или -1, если main так и не был вызван. */
+    long seenAtNanos() {
+        return seenAtNanos;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (seenAtNanos >= 0) {
+            out.write(b);
+            return;
+        }
+        if ((byte) b == MARKER[matched]) {
+            if (++matched == MARKER.length) seenAtNanos = System.nanoTime();
+            return;
+        }
+        // первый байт маркера внутри маркера не встречается, поэтому достаточно начать сначала
+        out.write(MARKER, 0, matched);
+        matched = 0;
+        if ((byte) b == MARKER[0]) {
+            matched = 1;
+        } else {
+            out.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (seenAtNanos >= 0) {
+            out.write(b, off, len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            write(b[off + i]);
+            if (seenAtNanos >= 0) {
+                out.write(b, off + i + 1, len - i - 1);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.vlsklv.course.app.sandbox;
+
+/**
+ * Загружает классы прямо из {@link CompiledClasses}, без .class-файлов на диске.
+ */
+final class MemoryClassLoader extends ClassLoader {
+    private final CompiledClasses classes;
+
+    MemoryClassLoader(CompiledClasses classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) throw new ClassNotFoundException(name);
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Буфер вывода с ограничением по размеру: хранит начало (head) и конец (tail, кольцевой буфер).
+ *
+ * Всё, что между ними, только подсчитывается, поэтому болтливый цикл не раздувает память
+ * и не тормозит: запись сверх лимита стоит одного копирования в кольцо.
+ */
+final class OutputCapture extends OutputStream {
+    static final int DEFAULT_LIMIT_BYTES = 1024 * 1024;
+
+    private final int headLimit;
+    private final int tailLimit;
+
+    private byte[] head = new byte[256];
+    private int headLen;
+
+    private byte[] tail;
+    private int tailPos;
+    private boolean tailWrapped;
+
+    private long total;
+
+    OutputCapture(int limitBytes) {
+        int limit = Math.max(1024, limitBytes);
+        this.headLimit = limit / 2;
+        this.tailLimit = limit - headLimit;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        total += len;
+
+        int toHead = Math.min(len, headLimit - headLen);
+        if (toHead > 0) {
+            ensureHead(headLen + toHead);
+            System.arraycopy(b, off, head, headLen, toHead);
+            headLen += toHead;
+            off += toHead;
+            len -= toHead;
+        }
+        if (len == 0) return;
+
+        if (tail == null) tail = new byte[tailLimit];
+        if (len >= tailLimit) {
+            System.arraycopy(b, off + len - tailLimit, tail, 0, tailLimit);
+            tailPos = 0;
+            tailWrapped = true;
+            return;
+        }
+        int first = Math.min(len, tailLimit - tailPos);
+        System.arraycopy(b, off, tail, tailPos, first);
+        System.arraycopy(b, off + first, tail, 0, len - first);
+        if (tailPos + len >= tailLimit) tailWrapped = true;
+        tailPos = (tailPos + len) % tailLimit;
+    }
+
+    private void ensureHead(int capacity) {
+        if (capacity <= head.length) return;
+        head = Arrays.copyOf(head, Math.min(headLimit, Math.max(capacity, head.length * 2)));
+    }
+
+    synchronized boolean truncated() {
+        return total > (long) headLimit + tailLimit;
+    }
+
+    synchronized long totalBytes() {
+        return total;
+    }
+
+    synchronized byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(headLen + (tail == null ? 0 : tailLimit) + 64);
+        out.write(head, 0, headLen);
+        if (tail == null) return out.toByteArray();
+
+        if (truncated()) {
+            long skipped = total - headLimit - tailLimit;
+            out.writeBytes(("\n\n... [вывод обрезан: пропущено " + skipped + " байт] ...\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (tailWrapped) {
+            out.write(tail, tailPos, tailLimit - tailPos);
+            out.write(tail, 0, tailPos);
+        } else {
+            out.write(tail, 0, tailPos);
+        }
+        return out.toByteArray();
+    }
+
+    String toString(Charset charset) {
+        return new String(toByteArray(), charset);
+    }
+}
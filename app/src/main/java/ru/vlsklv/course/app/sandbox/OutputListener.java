@@ -0,0 +1,15 @@
+package ru.vlsklv.course.app.sandbox;
+
+/**
+ * Получатель вывода программы по мере его появления.
+ *
+ * Вызывается из фоновых потоков раннера: UI должен сам перенести данные в FX-поток
+ * (и желательно пачками, см. {@code TerminalFeed}). Итоговый {@link JavaSandboxRunner.RunResult}
+ * всё равно возвращается целиком после завершения.
+ */
+@FunctionalInterface
+public interface OutputListener {
+    enum Channel { STDOUT, STDERR }
+
+    void onOutput(Channel channel, String chunk);
+}
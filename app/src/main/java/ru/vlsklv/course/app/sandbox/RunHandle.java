@@ -0,0 +1,83 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Запуск, начатый {@link JavaSandboxRunner#start} или {@link JavaSandboxRunner#startCases}
+ * (или фоновая компиляция {@link SandboxWorkspace#precompile()}): результат и возможность остановить.
+ *
+ * {@link #cancel()} действует на текущую фазу: javac прерывается на ближайшем событии компиляции,
+ * дерево дочерних процессов (FORK) и worker-JVM (POOLED) убиваются, ожидание потока
+ * IN_PROCESS прерывается. Итог отменённого запуска — {@link JavaSandboxRunner.RunResult#cancelled()}
+ * (для тестов — {@link CaseRunResult#cancelled()}).
+ */
+public final class RunHandle<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private boolean cancelled;
+    private Runnable stopper;
+
+    RunHandle() {}
+
+    /** Останавливает запуск. {@code false}, если он уже завершён или отменён. */
+    public boolean cancel() {
+        Runnable stop;
+        synchronized (this) {
+            if (cancelled || result.isDone()) return false;
+            cancelled = true;
+            stop = stopper;
+        }
+        if (stop != null) stop.run();
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /** Ждёт итога запуска. Раннер сам превращает ошибки в результат, поэтому исключения здесь нет. */
+    public T await() throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * {@code callback} получит итог в потоке раннера, или сразу, если запуск уже завершён.
+     * В UI результат нужно передавать в FX-поток самому.
+     */
+    public void whenDone(Consumer<? super T> callback) {
+        result.thenAccept(callback);
+    }
+
+    /**
+     * Действие, которое остановит текущую фазу. Если отмена уже запрошена, выполняется сразу
+     * и возвращается {@code false} — фазу начинать не нужно.
+     */
+    boolean attach(Runnable stop) {
+        synchronized (this) {
+            if (!cancelled) {
+                stopper = stop;
+                return true;
+            }
+        }
+        stop.run();
+        return false;
+    }
+
+    synchronized void detach() {
+        stopper = null;
+    }
+
+    void complete(T value) {
+        detach();
+        result.complete(value);
+    }
+}
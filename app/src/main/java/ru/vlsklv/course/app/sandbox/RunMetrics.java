@@ -0,0 +1,40 @@
+package ru.vlsklv.course.app.sandbox;
+
+/**
+ * Замеры одного запуска по фазам. Везде -1 — фазы не было или её нельзя измерить.
+ *
+ * @param executionMode     где фактически выполнялся код (IN_PROCESS с System.exit уходит в FORK)
+ * @param launchProfile     флаги дочерней JVM; {@code null}, если отдельной JVM не было
+ * @param compileMillis     javac или попадание в кэш компиляции
+ * @param spawnToMainMillis от старта дочерней JVM до вызова main (только FORK в режиме MEMORY)
+ * @param executionMillis   от вызова main до завершения; если момент вызова неизвестен —
+ *                          от старта процесса (потока, запроса к worker'у)
+ * @param cpuMillis         процессорное время дочерней JVM (ProcessHandle.Info), только FORK
+ * @param peakRssBytes      пиковый RSS дочерней JVM (VmHWM из /proc), только FORK в Linux
+ */
+public record RunMetrics(JavaSandboxRunner.ExecutionMode executionMode, LaunchProfile launchProfile,
+                         long compileMillis, long spawnToMainMillis, long executionMillis,
+                         long cpuMillis, long peakRssBytes) {
+    public static final RunMetrics NONE = new RunMetrics(null, null, -1, -1, -1, -1, -1);
+
+    /** Только компиляция: до запуска дело не дошло. */
+    static RunMetrics compileOnly(JavaSandboxRunner.ExecutionMode executionMode, LaunchProfile launchProfile,
+                                  long compileMillis) {
+        return new RunMetrics(executionMode, launchProfile, compileMillis, -1, -1, -1, -1);
+    }
+
+    RunMetrics withCompileMillis(long compileMillis) {
+        return new RunMetrics(executionMode, launchProfile, compileMillis, spawnToMainMillis, executionMillis,
+                cpuMillis, peakRssBytes);
+    }
+
+    /** Время запуска целиком: старт JVM плюс работа программы, без компиляции. */
+    public long wallTimeMillis() {
+        if (executionMillis < 0) return -1;
+        return Math.max(0, spawnToMainMillis) + executionMillis;
+    }
+
+    public boolean hasPeakRss() {
+        return peakRssBytes >= 0;
+    }
+}
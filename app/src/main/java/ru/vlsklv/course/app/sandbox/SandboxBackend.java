@@ -0,0 +1,41 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.Set;
+
+/**
+ * Бэкенд выполнения кода заданий: что он умеет и как получить его раннер.
+ *
+ * Реализации подключаются через {@link java.util.ServiceLoader}
+ * ({@code META-INF/services/ru.vlsklv.course.app.sandbox.SandboxBackend}) и выбираются
+ * по полю {@code runner} задания с кодом — см. {@link SandboxBackends}.
+ */
+public interface SandboxBackend {
+    enum Capability {
+        /** Вывод программы по мере появления ({@link OutputListener}). */
+        STREAMING,
+        /** Тёплые worker-JVM ({@link JavaSandboxRunner.ExecutionMode#POOLED}). */
+        POOLED,
+        /** Запуск в JVM приложения ({@link JavaSandboxRunner.ExecutionMode#IN_PROCESS}). */
+        IN_PROCESS
+    }
+
+    /** Значение {@code runner} задания: "JAVA", "KOTLIN". */
+    String id();
+
+    Set<Capability> capabilities();
+
+    /** Раннер с данным режимом выполнения; режимы, которых нет в {@link #capabilities()}, заменяются на FORK. */
+    JavaSandboxRunner runner(JavaSandboxRunner.ExecutionMode executionMode);
+
+    /**
+     * Раннер в самом дешёвом подходящем режиме. POOLED не платит за старт JVM, но отдаёт вывод
+     * одним куском в конце, поэтому выбирается, только когда {@code streaming} не нужен.
+     * IN_PROCESS сам не выбирается никогда: он только для доверенного кода.
+     */
+    default JavaSandboxRunner runner(boolean streaming) {
+        if (!streaming && capabilities().contains(Capability.POOLED)) {
+            return runner(JavaSandboxRunner.ExecutionMode.POOLED);
+        }
+        return runner(JavaSandboxRunner.ExecutionMode.FORK);
+    }
+}
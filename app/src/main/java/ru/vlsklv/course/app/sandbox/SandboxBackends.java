@@ -0,0 +1,45 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Реестр {@link SandboxBackend}, загруженных через {@link ServiceLoader}, по значению
+ * {@code runner} задания. Пустой или неизвестный {@code runner} — Java, как и раньше.
+ * Если два бэкенда объявили один id, остаётся первый найденный.
+ */
+public final class SandboxBackends {
+    public static final String DEFAULT_ID = "JAVA";
+
+    private static final SandboxBackends SHARED = new SandboxBackends(
+            ServiceLoader.load(SandboxBackend.class, SandboxBackends.class.getClassLoader()));
+
+    private final Map<String, SandboxBackend> backends = new LinkedHashMap<>();
+
+    public SandboxBackends(Iterable<SandboxBackend> backends) {
+        for (SandboxBackend b : backends) this.backends.putIfAbsent(normalize(b.id()), b);
+        // без META-INF/services (например, запуск из IDE без ресурсов) Java всё равно должна работать
+        this.backends.putIfAbsent(DEFAULT_ID, new JavaBackend());
+    }
+
+    public static SandboxBackends shared() {
+        return SHARED;
+    }
+
+    public SandboxBackend get(String runnerId) {
+        SandboxBackend b = backends.get(normalize(runnerId));
+        return b != null ? b : backends.get(DEFAULT_ID);
+    }
+
+    public Collection<SandboxBackend> all() {
+        return Collections.unmodifiableCollection(backends.values());
+    }
+
+    private static String normalize(String id) {
+        return id == null || id.isBlank() ? DEFAULT_ID : id.trim().toUpperCase(Locale.ROOT);
+    }
+}
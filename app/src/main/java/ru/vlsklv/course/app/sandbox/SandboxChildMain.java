@@ -0,0 +1,117 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Точка входа дочерней JVM для in-memory режима.
+ *
+ * Читает байткод из stdin (см. {@link CompiledClasses#writeTo}), определяет классы
+ * в отдельном classloader'е и вызывает main указанного класса.
+ * Аргументы: {@code <mainClass> [args...]}.
+ */
+public final class SandboxChildMain {
+    /**
+     * Пишется в stderr прямо перед вызовом main: по нему родитель замеряет время от старта
+     * процесса до кода студента и вырезает маркер из вывода ({@link MainStartFilter}).
+     */
+    static final String MAIN_MARKER = "\u0001aqa:main\n";
+
+    /** Библиотеки, которые видит программа (kotlin-stdlib для Kotlin): пути через File.pathSeparator. */
+    static final String LIBS_PROPERTY = "aqa.sandbox.libs";
+
+    private SandboxChildMain() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: SandboxChildMain <mainClass> [args...]");
+            System.exit(2);
+        }
+
+        // DataInputStream не буферизует сам, поэтому остаток System.in после классов не теряется
+        CompiledClasses classes = CompiledClasses.readFrom(new DataInputStream(System.in));
+
+        String[] mainArgs = new String[args.length - 1];
+        System.arraycopy(args, 1, mainArgs, 0, mainArgs.length);
+
+        ClassLoader loader = new MemoryClassLoader(classes, programParent());
+        System.err.print(MAIN_MARKER);
+        System.err.flush();
+        int code = invokeMain(loader, args[0], mainArgs, System.err);
+        if (code != 0) System.exit(code);
+    }
+
+    /**
+     * Родитель classloader'а программы: платформенные классы и библиотеки из {@link #LIBS_PROPERTY}.
+     * Классы sandbox из classpath программе не видны.
+     */
+    static ClassLoader programParent() throws MalformedURLException {
+        String libs = System.getProperty(LIBS_PROPERTY, "");
+        if (libs.isBlank()) return ClassLoader.getPlatformClassLoader();
+
+        List<URL> urls = new ArrayList<>();
+        for (String lib : libs.split(File.pathSeparator)) {
+            if (!lib.isBlank()) urls.add(Path.of(lib).toUri().toURL());
+        }
+        return new URLClassLoader("sandbox-libs", urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+    }
+
+    /**
+     * Вызывает {@code public static void main(String[])} так же, как стандартный java-лаунчер,
+     * и возвращает код выхода: 0 при успехе, 1 если main не найден или бросил исключение.
+     */
+    static int invokeMain(ClassLoader loader, String mainClassName, String[] args, PrintStream err) {
+        Thread current = Thread.currentThread();
+        ClassLoader previous = current.getContextClassLoader();
+        current.setContextClassLoader(loader);
+        try {
+            Method main = Class.forName(mainClassName, true, loader).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                err.println("Ошибка: метод main в классе " + mainClassName + " должен быть static");
+                return 1;
+            }
+            main.invoke(null, (Object) args);
+            return 0;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            err.println("Ошибка: не найден класс " + mainClassName + " с методом public static void main(String[] args)");
+            return 1;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            hideLauncherFrames(cause);
+            err.print("Exception in thread \"main\" ");
+            cause.printStackTrace(err);
+            return 1;
+        } catch (Throwable t) {
+            err.println("Ошибка запуска: " + t);
+            return 1;
+        } finally {
+            current.setContextClassLoader(previous);
+            err.flush();
+        }
+    }
+
+    /** Убирает из трассы кадры reflection и самого лаунчера: студенту они ничего не говорят. */
+    static void hideLauncherFrames(Throwable t) {
+        StackTraceElement[] trace = t.getStackTrace();
+        int end = trace.length;
+        for (int i = 0; i < trace.length; i++) {
+            String cls = trace[i].getClassName();
+            if (cls.startsWith("jdk.internal.reflect.") || cls.startsWith("java.lang.reflect.")) {
+                end = i;
+                break;
+            }
+        }
+        if (end < trace.length) t.setStackTrace(Arrays.copyOf(trace, end));
+    }
+}
@@ -0,0 +1,204 @@
+package ru.vlsklv.course.app.sandbox;
+
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Точка входа дочерней JVM для скрытых JUnit-тестов.
+ *
+ * Из stdin читает ключ прогона ({@link #KEY_BYTES} случайных байт), классы (код студента и тесты,
+ * см. {@link CompiledClasses#writeTo}), затем число и имена тестовых классов. Тесты выполняет
+ * JUnit Platform ({@link LauncherFactory}), методы и классы — параллельно. Отчёт ({@link #writeReport})
+ * уходит в конец stdout, поэтому всё, что печатают код и тесты, перенаправляется в stderr.
+ *
+ * Код студента работает в той же JVM и может писать в stdout процесса в обход System.out. Поэтому
+ * отчёт подписан ключом прогона ({@link #seal}): ключ приходит до загрузки кода студента и хранится
+ * только в локальной переменной, так что подделанный отчёт {@link JunitRunner} отвергнет.
+ */
+public final class SandboxJunitMain {
+    /** Параллельное выполнение Jupiter: и классы, и методы внутри класса. */
+    static final Map<String, String> PARALLEL = Map.of(
+            "junit.jupiter.execution.parallel.enabled", "true",
+            "junit.jupiter.execution.parallel.mode.default", "concurrent",
+            "junit.jupiter.execution.parallel.mode.classes.default", "concurrent");
+
+    /** Длиннее сообщение assertion'а студенту не нужно (и writeUTF ограничен 64 КБ). */
+    private static final int MAX_MESSAGE = 2000;
+
+    static final int KEY_BYTES = 32;
+
+    private static final String MAC = "HmacSHA256";
+
+    private SandboxJunitMain() {}
+
+    public static void main(String[] args) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        byte[] key = new byte[KEY_BYTES];
+        in.readFully(key);
+        CompiledClasses classes = CompiledClasses.readFrom(in);
+        List<String> testClasses = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) testClasses.add(in.readUTF());
+
+        FileOutputStream report = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+
+        // JUnit должен видеть те же аннотации, что и тесты, поэтому родитель — classloader приложения
+        ClassLoader loader = new MemoryClassLoader(classes, SandboxJunitMain.class.getClassLoader());
+        Thread.currentThread().setContextClassLoader(loader);
+
+        List<DiscoverySelector> selectors = new ArrayList<>();
+        for (String name : testClasses) selectors.add(DiscoverySelectors.selectClass(loader.loadClass(name)));
+        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectors)
+                .configurationParameters(PARALLEL)
+                .build();
+
+        Results results = new Results();
+        LauncherFactory.create().execute(request, results);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeReport(new DataOutputStream(bytes), results.list());
+        System.err.flush();
+        report.write(seal(bytes.toByteArray(), key));
+        report.flush();
+        // halt, а не exit: потоки студента не должны держать JVM, а его shutdown hook'и — дописывать в stdout
+        Runtime.getRuntime().halt(0);
+    }
+
+    /** Отчёт, его длина и HMAC отчёта на ключе прогона: так отчёт можно найти в конце stdout после любого вывода. */
+    static byte[] seal(byte[] report, byte[] key) throws IOException {
+        byte[] mac = mac(report, key);
+        return ByteBuffer.allocate(report.length + Integer.BYTES + mac.length)
+                .put(report).putInt(report.length).put(mac).array();
+    }
+
+    /** Отчёт из конца {@code output}; {@link IOException}, если его нет или подпись не сходится. */
+    static byte[] unseal(byte[] output, byte[] key) throws IOException {
+        int macLength = mac(new byte[0], key).length;
+        int trailer = Integer.BYTES + macLength;
+        if (output.length < trailer) throw new IOException("no report");
+        int length = ByteBuffer.wrap(output, output.length - trailer, Integer.BYTES).getInt();
+        if (length < 0 || length > output.length - trailer) throw new IOException("bad report length");
+        byte[] report = Arrays.copyOfRange(output, output.length - trailer - length, output.length - trailer);
+        byte[] mac = Arrays.copyOfRange(output, output.length - macLength, output.length);
+        if (!MessageDigest.isEqual(mac, mac(report, key))) throw new IOException("bad report signature");
+        return report;
+    }
+
+    private static byte[] mac(byte[] data, byte[] key) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC);
+            mac.init(new SecretKeySpec(key, MAC));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Формат: int count, затем count раз (UTF className, UTF name, byte outcome, UTF message, long millis). */
+    static void writeReport(DataOutputStream out, List<JunitRunResult.TestResult> tests) throws IOException {
+        out.writeInt(tests.size());
+        for (JunitRunResult.TestResult t : tests) {
+            out.writeUTF(t.className());
+            out.writeUTF(t.name());
+            out.writeByte(t.outcome().ordinal());
+            out.writeUTF(t.message());
+            out.writeLong(t.millis());
+        }
+    }
+
+    static List<JunitRunResult.TestResult> readReport(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        JunitRunResult.Outcome[] outcomes = JunitRunResult.Outcome.values();
+        List<JunitRunResult.TestResult> tests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tests.add(new JunitRunResult.TestResult(in.readUTF(), in.readUTF(), outcomes[in.readByte()], in.readUTF(), in.readLong()));
+        }
+        return tests;
+    }
+
+    /**
+     * Собирает результаты тестов; вызывается из потоков JUnit параллельно. Контейнеры не
+     * попадают в отчёт, кроме упавшего класса: иначе его тесты просто пропали бы из итога.
+     */
+    private static final class Results implements TestExecutionListener {
+        private final Map<String, Long> started = new ConcurrentHashMap<>();
+        private final List<JunitRunResult.TestResult> tests = new ArrayList<>();
+
+        @Override
+        public void executionStarted(TestIdentifier id) {
+            started.put(id.getUniqueId(), System.nanoTime());
+        }
+
+        @Override
+        public void executionSkipped(TestIdentifier id, String reason) {
+            if (id.isTest()) add(id, JunitRunResult.Outcome.SKIPPED, reason == null ? "" : reason, 0);
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier id, TestExecutionResult result) {
+            Long start = started.remove(id.getUniqueId());
+            long millis = start == null ? 0 : (System.nanoTime() - start) / 1_000_000;
+            JunitRunResult.Outcome outcome = switch (result.getStatus()) {
+                case SUCCESSFUL -> JunitRunResult.Outcome.PASSED;
+                case ABORTED -> JunitRunResult.Outcome.ABORTED;
+                case FAILED -> JunitRunResult.Outcome.FAILED;
+            };
+            boolean failedClass = outcome != JunitRunResult.Outcome.PASSED
+                    && id.getSource().filter(ClassSource.class::isInstance).isPresent();
+            if (!id.isTest() && !failedClass) return;
+            add(id, outcome, result.getThrowable().map(SandboxJunitMain::message).orElse(""), millis);
+        }
+
+        private synchronized void add(TestIdentifier id, JunitRunResult.Outcome outcome, String message, long millis) {
+            tests.add(new JunitRunResult.TestResult(className(id), id.getDisplayName(), outcome, message, millis));
+        }
+
+        synchronized List<JunitRunResult.TestResult> list() {
+            return new ArrayList<>(tests);
+        }
+
+        private static String className(TestIdentifier id) {
+            TestSource source = id.getSource().orElse(null);
+            if (source instanceof MethodSource m) return m.getClassName();
+            if (source instanceof ClassSource c) return c.getClassName();
+            return "";
+        }
+    }
+
+    /** У assertion'а важен только текст, у остального — тип исключения. */
+    private static String message(Throwable t) {
+        String text = t instanceof AssertionError && t.getMessage() != null ? t.getMessage() : t.toString();
+        return text.length() <= MAX_MESSAGE ? text : text.substring(0, MAX_MESSAGE) + "...";
+    }
+}
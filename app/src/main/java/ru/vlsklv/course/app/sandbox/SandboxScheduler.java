@@ -0,0 +1,229 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Общая очередь работы sandbox для всего приложения: компиляции и запуски.
+ *
+ * Одновременно выполняется не больше {@link #limit()} задач (зависит от числа ядер), остальные
+ * ждут: сначала {@link Priority#INTERACTIVE} («Запустить», «Проверить»), потом
+ * {@link Priority#BACKGROUND} (фоновая компиляция), внутри приоритета — по очереди.
+ *
+ * Задача с владельцем (раннер экрана, workspace) вытесняет ещё не начатые задачи того же
+ * владельца с тем же или более низким приоритетом: нужен только последний запрос. Если очередь
+ * заполнена, выбрасывается самая старая фоновая задача; новая фоновая задача сверх лимита
+ * отклоняется, интерактивная принимается всегда. Вытесненные и отклонённые задачи завершаются
+ * как отменённые.
+ */
+public final class SandboxScheduler {
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    /** По последним {@link #WINDOW} задачам. */
+    public static final int WINDOW = 256;
+
+    private static final Comparator<Task<?>> ORDER =
+            Comparator.<Task<?>, Priority>comparing(t -> t.priority).thenComparingLong(t -> t.seq);
+
+    // после ORDER: конструктор уже использует очередь
+    private static final SandboxScheduler SHARED = new SandboxScheduler(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2), 32);
+
+    private final int limit;
+    private final int capacity;
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>(ORDER);
+    private final long[] waits = new long[WINDOW];
+    private int waitNext;
+    private int waitSize;
+    private int running;
+    private int maxQueued;
+    private long seq;
+    private long started;
+    private long superseded;
+    private long rejected;
+
+    /**
+     * @param limit    сколько задач выполняется одновременно
+     * @param capacity сколько задач может ждать в очереди (интерактивные принимаются и сверх неё)
+     */
+    public SandboxScheduler(int limit, int capacity) {
+        this.limit = Math.max(1, limit);
+        this.capacity = Math.max(1, capacity);
+        for (int i = 0; i < this.limit; i++) {
+            Thread t = new Thread(this::work, "sandbox-scheduler-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    public static SandboxScheduler shared() {
+        return SHARED;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /** Очередь и время ожидания в ней: ожидание — от постановки в очередь до начала выполнения. */
+    public record Metrics(int limit, int running, int queued, int maxQueued, long started, long superseded,
+                          long rejected, SandboxStats.Percentiles waitMillis) {
+        @Override
+        public String toString() {
+            String s = String.format(Locale.ROOT, "limit=%d running=%d queued=%d maxQueued=%d started=%d superseded=%d rejected=%d",
+                    limit, running, queued, maxQueued, started, superseded, rejected);
+            if (waitMillis.isEmpty()) return s;
+            return s + String.format(Locale.ROOT, "  wait p50=%d p95=%d max=%d ms", waitMillis.p50(), waitMillis.p95(), waitMillis.max());
+        }
+    }
+
+    public synchronized Metrics metrics() {
+        return new Metrics(limit, running, queue.size(), maxQueued, started, superseded, rejected,
+                SandboxStats.Percentiles.of(Arrays.stream(waits, 0, waitSize)));
+    }
+
+    /** Работа без результата и без владельца, например JavaFX {@code Task}. */
+    public void execute(Priority priority, Runnable work) {
+        submit(priority, null, handle -> {
+            work.run();
+            return null;
+        }, () -> null, message -> null);
+    }
+
+    /**
+     * Ставит задачу в очередь. {@link RunHandle#cancel()} до начала выполнения убирает её из
+     * очереди, после — действует как обычно (задача сама подключает остановку своих фаз).
+     *
+     * @param owner     чьи ещё не начатые задачи вытесняет эта; {@code null} — ничьи
+     * @param cancelled итог отменённой, вытесненной или отклонённой задачи
+     * @param failed    итог задачи, бросившей исключение
+     */
+    <T> RunHandle<T> submit(Priority priority, Object owner, Function<RunHandle<T>, T> body,
+                            Supplier<T> cancelled, Function<String, T> failed) {
+        RunHandle<T> handle = new RunHandle<>();
+        Task<T> task = new Task<>(priority, owner, handle, body, cancelled, failed);
+        handle.attach(() -> {
+            if (remove(task)) task.drop();
+        });
+
+        List<Task<?>> dropped = new ArrayList<>();
+        boolean accepted = true;
+        synchronized (this) {
+            task.seq = ++seq;
+            if (owner != null) {
+                for (Iterator<Task<?>> it = queue.iterator(); it.hasNext(); ) {
+                    Task<?> t = it.next();
+                    if (t.owner == owner && t.priority.compareTo(priority) >= 0) {
+                        it.remove();
+                        dropped.add(t);
+                        superseded++;
+                    }
+                }
+            }
+            if (queue.size() >= capacity) {
+                Task<?> oldestBackground = queue.stream()
+                        .filter(t -> t.priority == Priority.BACKGROUND)
+                        .min(ORDER)
+                        .orElse(null);
+                if (oldestBackground != null) {
+                    queue.remove(oldestBackground);
+                    dropped.add(oldestBackground);
+                    rejected++;
+                } else if (priority == Priority.BACKGROUND) {
+                    accepted = false;
+                    rejected++;
+                }
+            }
+            if (accepted) {
+                queue.add(task);
+                maxQueued = Math.max(maxQueued, queue.size());
+                notifyAll();
+            }
+        }
+        dropped.forEach(Task::drop);
+        if (!accepted) task.drop();
+        return handle;
+    }
+
+    private synchronized boolean remove(Task<?> task) {
+        return queue.remove(task);
+    }
+
+    private void work() {
+        while (true) {
+            Task<?> task;
+            synchronized (this) {
+                while (queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // планировщик живёт всё время работы приложения: случайный interrupt не останавливает поток
+                    }
+                }
+                task = queue.poll();
+                running++;
+                started++;
+                waits[waitNext] = (System.nanoTime() - task.enqueuedNanos) / 1_000_000;
+                waitNext = (waitNext + 1) % WINDOW;
+                if (waitSize < WINDOW) waitSize++;
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    running--;
+                }
+            }
+        }
+    }
+
+    private static final class Task<T> {
+        final Priority priority;
+        final Object owner;
+        final long enqueuedNanos = System.nanoTime();
+        final RunHandle<T> handle;
+        final Function<RunHandle<T>, T> body;
+        final Supplier<T> cancelled;
+        final Function<String, T> failed;
+        long seq;
+
+        Task(Priority priority, Object owner, RunHandle<T> handle, Function<RunHandle<T>, T> body,
+             Supplier<T> cancelled, Function<String, T> failed) {
+            this.priority = priority == null ? Priority.INTERACTIVE : priority;
+            this.owner = owner;
+            this.handle = handle;
+            this.body = body;
+            this.cancelled = cancelled;
+            this.failed = failed;
+        }
+
+        void drop() {
+            handle.complete(cancelled.get());
+        }
+
+        void run() {
+            // дальше остановку подключает сама задача; отмена, пришедшая между poll и detach, видна по флагу
+            handle.detach();
+            if (handle.isCancelled()) {
+                drop();
+                return;
+            }
+            T value;
+            try {
+                value = body.apply(handle);
+            } catch (RuntimeException | Error e) {
+                value = handle.isCancelled() ? cancelled.get() : failed.apply("Ошибка при компиляции/запуске: " + e);
+            } finally {
+                // флаг, оставленный задачей, не должен достаться следующей задаче этого потока
+                Thread.interrupted();
+            }
+            handle.complete(value);
+        }
+    }
+}
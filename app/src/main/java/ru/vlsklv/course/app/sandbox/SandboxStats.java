@@ -0,0 +1,130 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Сводка замеров запусков в этом процессе приложения, по режиму и профилю запуска.
+ *
+ * На каждый ключ хранятся последние {@link #WINDOW} запусков, так что память не растёт,
+ * а percentiles отражают текущее поведение.
+ */
+public final class SandboxStats {
+    public static final int WINDOW = 256;
+
+    private static final SandboxStats SHARED = new SandboxStats();
+
+    private final Map<Key, Samples> samples = new LinkedHashMap<>();
+
+    public static SandboxStats shared() {
+        return SHARED;
+    }
+
+    public synchronized void record(RunMetrics metrics) {
+        if (metrics == null || metrics.executionMode() == null) return;
+        samples.computeIfAbsent(new Key(metrics.executionMode(), metrics.launchProfile()), k -> new Samples())
+                .add(metrics);
+    }
+
+    public synchronized List<Summary> snapshot() {
+        List<Summary> result = new ArrayList<>();
+        for (Map.Entry<Key, Samples> e : samples.entrySet()) {
+            result.add(e.getValue().summarize(e.getKey()));
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        samples.clear();
+    }
+
+    /** Профиль {@code null} — запуск без отдельной JVM (pooled, in-process). */
+    public record Key(JavaSandboxRunner.ExecutionMode executionMode, LaunchProfile launchProfile) {
+        @Override
+        public String toString() {
+            return launchProfile == null
+                    ? executionMode.name().toLowerCase(Locale.ROOT)
+                    : executionMode.name().toLowerCase(Locale.ROOT) + "/" + launchProfile.id();
+        }
+    }
+
+    /** Распределение одной фазы; -1 — замеров этой фазы не было. */
+    public record Percentiles(long p50, long p95, long max) {
+        static final Percentiles NONE = new Percentiles(-1, -1, -1);
+
+        /** Отрицательные значения — «не измерено» — в распределение не входят. */
+        public static Percentiles of(LongStream values) {
+            long[] sorted = values.filter(v -> v >= 0).sorted().toArray();
+            if (sorted.length == 0) return NONE;
+            return new Percentiles(percentile(sorted, 50), percentile(sorted, 95), sorted[sorted.length - 1]);
+        }
+
+        private static long percentile(long[] sorted, int p) {
+            int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+        }
+
+        boolean isEmpty() {
+            return max < 0;
+        }
+    }
+
+    /** Время в миллисекундах, память в байтах. */
+    public record Summary(Key key, int runs, Percentiles compile, Percentiles spawnToMain, Percentiles execution,
+                          Percentiles wall, Percentiles cpu, Percentiles peakRss) {
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-22s runs=%4d", key, runs));
+            appendMillis(sb, "compile", compile);
+            appendMillis(sb, "spawn", spawnToMain);
+            appendMillis(sb, "exec", execution);
+            appendMillis(sb, "wall", wall);
+            appendMillis(sb, "cpu", cpu);
+            if (!peakRss.isEmpty()) {
+                sb.append(String.format(Locale.ROOT, "  rss p50=%.1f max=%.1f MiB", mib(peakRss.p50()), mib(peakRss.max())));
+            }
+            return sb.toString();
+        }
+
+        private static void appendMillis(StringBuilder sb, String name, Percentiles p) {
+            if (p.isEmpty()) return;
+            sb.append(String.format(Locale.ROOT, "  %s p50=%d p95=%d ms", name, p.p50(), p.p95()));
+        }
+
+        private static double mib(long bytes) {
+            return bytes / (1024.0 * 1024.0);
+        }
+    }
+
+    private static final class Samples {
+        private final RunMetrics[] ring = new RunMetrics[WINDOW];
+        private int next;
+        private int size;
+
+        void add(RunMetrics m) {
+            ring[next] = m;
+            next = (next + 1) % WINDOW;
+            if (size < WINDOW) size++;
+        }
+
+        Summary summarize(Key key) {
+            return new Summary(key, size,
+                    percentiles(RunMetrics::compileMillis),
+                    percentiles(RunMetrics::spawnToMainMillis),
+                    percentiles(RunMetrics::executionMillis),
+                    percentiles(RunMetrics::wallTimeMillis),
+                    percentiles(RunMetrics::cpuMillis),
+                    percentiles(RunMetrics::peakRssBytes));
+        }
+
+        private Percentiles percentiles(ToLongFunction<RunMetrics> field) {
+            return Percentiles.of(Arrays.stream(ring, 0, size).mapToLong(field));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Точка входа долгоживущей worker-JVM для {@link WorkerPool}.
+ *
+ * Протокол идёт через stdin/stdout процесса (см. {@link #readRequest}/{@link #writeResponse}).
+ * Каждый запуск получает свежий classloader (статика студента не переживает запуск),
+ * свой System.in из запроса и собственные буферы для System.out/System.err.
+ *
+ * Переживает запуск только то, что живёт вне classloader'а: потоки студента и общее состояние JDK
+ * (локаль, часовой пояс, системные свойства, обработчик необработанных исключений). Если после
+ * запуска что-то из этого осталось или изменилось, worker отвечает {@link #RESPONSE_TAINTED} и
+ * завершается: следующий запуск, возможно чужого решения, получит новый процесс.
+ */
+public final class SandboxWorkerMain {
+    static final int REQUEST_RUN = 1;
+
+    static final int RESPONSE_FINISHED = 0;
+    /** Студент вызвал System.exit: код выхода пул возьмёт у завершившегося процесса. */
+    static final int RESPONSE_EXITED = 1;
+    /** Запуск завершён, но после него остались потоки студента или изменённое состояние JDK. */
+    static final int RESPONSE_TAINTED = 2;
+
+    private static final Object PROTOCOL_LOCK = new Object();
+
+    private static DataOutputStream protocolOut;
+    private static volatile RunCapture current;
+    /** Общий для всех запусков: библиотеки (kotlin-stdlib) загружаются один раз на worker. */
+    private static ClassLoader libraries;
+
+    private SandboxWorkerMain() {}
+
+    public static void main(String[] args) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        protocolOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+        // stdin/stdout процесса заняты протоколом: студенческий код их видеть не должен
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        libraries = SandboxChildMain.programParent();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            RunCapture run = current;
+            if (run != null) respond(RESPONSE_EXITED, -1, run);
+        }, "sandbox-worker-exit"));
+
+        while (true) {
+            Request request;
+            try {
+                request = readRequest(in);
+            } catch (EOFException e) {
+                return; // пул закрыл pipe — штатное завершение
+            }
+            RunCapture run = new RunCapture(request.outputLimitBytes());
+            current = run;
+            boolean[] tainted = new boolean[1];
+            int exitCode = runMain(request, run, tainted);
+            current = null;
+            respond(tainted[0] ? RESPONSE_TAINTED : RESPONSE_FINISHED, exitCode, run);
+            // поток студента ещё может писать в System.out или читать System.in следующего запроса
+            if (tainted[0]) Runtime.getRuntime().halt(0);
+        }
+    }
+
+    /** {@code tainted[0]} — после запуска worker повторно использовать нельзя. */
+    private static int runMain(Request request, RunCapture run, boolean[] tainted) {
+        JdkState state = JdkState.capture();
+        Set<Thread> before = new HashSet<>(Thread.getAllStackTraces().keySet());
+        run.open(request.stdin());
+
+        ClassLoader loader = new MemoryClassLoader(request.classes(), libraries);
+        int code = 1;
+        try {
+            code = SandboxChildMain.invokeMain(loader, request.mainClass(), request.args(), run.err);
+            if (code == 0) joinStartedThreads(before);
+        } catch (InterruptedException e) {
+            code = 1;
+        } finally {
+            run.close();
+            Thread.interrupted();
+        }
+        tainted[0] = !startedThreads(before).isEmpty() || !state.equals(JdkState.capture());
+        return code;
+    }
+
+    /** Как и обычная JVM, дожидаемся не-daemon потоков, запущенных студентом. */
+    private static void joinStartedThreads(Set<Thread> before) throws InterruptedException {
+        for (Thread t : startedThreads(before)) {
+            if (!t.isDaemon()) t.join();
+        }
+    }
+
+    /** Живые потоки, которых не было до запуска. */
+    private static List<Thread> startedThreads(Set<Thread> before) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> !before.contains(t) && t != Thread.currentThread() && t.isAlive())
+                .toList();
+    }
+
+    private static void respond(int status, int exitCode, RunCapture run) {
+        synchronized (PROTOCOL_LOCK) {
+            if (run.responded) return;
+            run.responded = true;
+            try {
+                writeResponse(protocolOut, status, exitCode, run.stdout.toByteArray(), run.stderr.toByteArray(),
+                        run.stdout.truncated() || run.stderr.truncated());
+            } catch (IOException ignored) {
+                // пул уже закрыл pipe
+            }
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, CompiledClasses classes, String mainClass, String[] args,
+                             byte[] stdin, int outputLimitBytes) throws IOException {
+        out.writeInt(REQUEST_RUN);
+        classes.writeTo(out);
+        out.writeUTF(mainClass);
+        out.writeInt(args.length);
+        for (String a : args) out.writeUTF(a);
+        out.writeInt(stdin.length);
+        out.write(stdin);
+        out.writeInt(outputLimitBytes);
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in) throws IOException {
+        int type = in.readInt();
+        if (type != REQUEST_RUN) throw new IOException("Unknown request type: " + type);
+        CompiledClasses classes = CompiledClasses.readFrom(in);
+        String mainClass = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) args[i] = in.readUTF();
+        byte[] stdin = new byte[in.readInt()];
+        in.readFully(stdin);
+        return new Request(classes, mainClass, args, stdin, in.readInt());
+    }
+
+    static void writeResponse(DataOutputStream out, int status, int exitCode, byte[] stdout, byte[] stderr,
+                              boolean truncated) throws IOException {
+        out.writeInt(status);
+        out.writeInt(exitCode);
+        out.writeInt(stdout.length);
+        out.write(stdout);
+        out.writeInt(stderr.length);
+        out.write(stderr);
+        out.writeBoolean(truncated);
+        out.flush();
+    }
+
+    static Response readResponse(DataInputStream in) throws IOException {
+        int status = in.readInt();
+        int exitCode = in.readInt();
+        byte[] stdout = new byte[in.readInt()];
+        in.readFully(stdout);
+        byte[] stderr = new byte[in.readInt()];
+        in.readFully(stderr);
+        return new Response(status, exitCode,
+                new String(stdout, StandardCharsets.UTF_8),
+                new String(stderr, StandardCharsets.UTF_8),
+                in.readBoolean());
+    }
+
+    record Request(CompiledClasses classes, String mainClass, String[] args, byte[] stdin, int outputLimitBytes) {}
+
+    record Response(int status, int exitCode, String stdout, String stderr, boolean truncated) {}
+
+    /**
+     * Вывод одного запуска. Потоки System.out/System.err запуска закрываются вместе с ним:
+     * запомнивший их поток студента дальше пишет в никуда, а не в вывод следующего запуска.
+     */
+    private static final class RunCapture {
+        private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+        final OutputCapture stdout;
+        final OutputCapture stderr;
+        boolean responded;
+        PrintStream out;
+        PrintStream err;
+
+        RunCapture(int outputLimitBytes) {
+            stdout = new OutputCapture(outputLimitBytes);
+            stderr = new OutputCapture(outputLimitBytes);
+        }
+
+        void open(byte[] stdin) {
+            out = new PrintStream(stdout, true, StandardCharsets.UTF_8);
+            err = new PrintStream(stderr, true, StandardCharsets.UTF_8);
+            System.setIn(new ByteArrayInputStream(stdin));
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        void close() {
+            System.setIn(new ByteArrayInputStream(new byte[0]));
+            System.setOut(DISCARD);
+            System.setErr(DISCARD);
+            out.close();
+            err.close();
+        }
+    }
+
+    /** Общее состояние JDK, которое код студента может поменять для всех следующих запусков. */
+    private record JdkState(Locale locale, Locale displayLocale, Locale formatLocale, String timeZone,
+                            Map<Object, Object> properties, Thread.UncaughtExceptionHandler uncaughtHandler) {
+        static JdkState capture() {
+            return new JdkState(Locale.getDefault(), Locale.getDefault(Locale.Category.DISPLAY),
+                    Locale.getDefault(Locale.Category.FORMAT), TimeZone.getDefault().getID(),
+                    new HashMap<>(System.getProperties()), Thread.getDefaultUncaughtExceptionHandler());
+        }
+    }
+}
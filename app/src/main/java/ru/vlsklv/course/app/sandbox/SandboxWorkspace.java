@@ -0,0 +1,236 @@
+package ru.vlsklv.course.app.sandbox;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Исходники задания из нескольких файлов (page objects, DTO, хелперы) с инкрементальной компиляцией.
+ *
+ * Между компиляциями хранится состояние последней успешной: хэш каждого файла, его классы и
+ * классы, на которые он ссылается ({@link ClassFileInfo}). Перекомпилируются только изменённые
+ * файлы и те, что от них зависят (транзитивно); классы остальных javac получает готовыми из памяти.
+ *
+ * Зависимость — ссылка в constant pool или упоминание имени класса в исходнике: static final
+ * константы javac встраивает, и ссылки на их класс в байткоде не остаётся.
+ *
+ * Правка файлов ({@link #put}) и компиляция могут идти из разных потоков: компилируется
+ * снимок файлов на момент начала.
+ */
+public final class SandboxWorkspace {
+    /** Итог последней компиляции: сколько файлов в проекте, сколько из них ушло в javac и за сколько. */
+    public record CompileStats(int units, int recompiled, long millis) {
+        public static final CompileStats NONE = new CompileStats(0, 0, -1);
+    }
+
+    private record Unit(String hash, Map<String, byte[]> classes, Set<String> references) {}
+
+    private final Map<String, String> files = new LinkedHashMap<>();
+
+    private final Object compileLock = new Object();
+    private final Map<String, Unit> units = new HashMap<>();
+    private CompileStats lastCompile = CompileStats.NONE;
+
+    /** Добавляет или заменяет файл; {@code fileName} — путь относительно корня исходников (pages/LoginPage.java). */
+    public synchronized void put(String fileName, String source) {
+        files.put(fileName, source == null ? "" : source);
+    }
+
+    public synchronized void remove(String fileName) {
+        files.remove(fileName);
+    }
+
+    public synchronized List<String> fileNames() {
+        return List.copyOf(files.keySet());
+    }
+
+    public synchronized String source(String fileName) {
+        return files.get(fileName);
+    }
+
+    /** Снимок файлов: имя → текст. */
+    synchronized Map<String, String> files() {
+        return new LinkedHashMap<>(files);
+    }
+
+    public CompileStats lastCompile() {
+        synchronized (compileLock) {
+            return lastCompile;
+        }
+    }
+
+    /**
+     * Компилирует текущие файлы в фоне, чтобы к запуску классы были готовы: запуск с теми же
+     * исходниками javac уже не вызывает, а если фоновая компиляция ещё идёт — дожидается её.
+     * {@link RunHandle#cancel()} прерывает javac, так что устаревшая компиляция новой не мешает.
+     * Итог — {@link #lastCompile()} или {@link CompileStats#NONE}, если компиляция не состоялась.
+     * Идёт через {@link SandboxScheduler} с фоновым приоритетом: запуски её обгоняют, а ещё не
+     * начатую фоновую компиляцию этого workspace новая вытесняет.
+     */
+    public RunHandle<CompileStats> precompile() {
+        return SandboxScheduler.shared().submit(SandboxScheduler.Priority.BACKGROUND, this, handle -> {
+            if (handle.isCancelled() || !javaOnly() || !CompilerService.shared().isAvailable()) return CompileStats.NONE;
+            try {
+                compile(CompilerService.shared(), handle::isCancelled);
+                return lastCompile();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                // отменена или не удалась: запуск скомпилирует сам
+                return CompileStats.NONE;
+            }
+        }, () -> CompileStats.NONE, message -> CompileStats.NONE);
+    }
+
+    /** Фоновая компиляция — только для javac; Kotlin-файлы компилирует запуск. */
+    private synchronized boolean javaOnly() {
+        return files.keySet().stream().allMatch(f -> f.endsWith(".java"));
+    }
+
+    JavaSandboxRunner.MemoryCompilation compile(CompilerService compilerService, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        Map<String, String> snapshot = files();
+        synchronized (compileLock) {
+            long started = System.nanoTime();
+
+            Map<String, String> hashes = new HashMap<>();
+            Set<String> changed = new LinkedHashSet<>();
+            for (Map.Entry<String, String> e : snapshot.entrySet()) {
+                String hash = sha256(e.getValue());
+                hashes.put(e.getKey(), hash);
+                Unit unit = units.get(e.getKey());
+                if (unit == null || !unit.hash().equals(hash)) changed.add(e.getKey());
+            }
+            Set<String> removed = new HashSet<>(units.keySet());
+            removed.removeAll(snapshot.keySet());
+
+            Set<String> dirty = withDependents(changed, removed, snapshot);
+            if (dirty.isEmpty()) {
+                units.keySet().removeAll(removed);
+                lastCompile = new CompileStats(snapshot.size(), 0, JavaSandboxRunner.millisSince(started));
+                return new JavaSandboxRunner.MemoryCompilation(allClasses(snapshot), null);
+            }
+
+            Map<String, byte[]> classPath = new LinkedHashMap<>();
+            for (String fileName : snapshot.keySet()) {
+                if (!dirty.contains(fileName)) classPath.putAll(units.get(fileName).classes());
+            }
+            List<JavaFileObject> sources = dirty.stream()
+                    .map(f -> InMemoryFileManager.source(f, snapshot.get(f)))
+                    .toList();
+
+            JavaCompiler compiler = compilerService.compiler();
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            InMemoryFileManager fm = compilerService.withFileManager(std -> {
+                InMemoryFileManager mem = new InMemoryFileManager(std, classPath);
+                JavaCompiler.CompilationTask task =
+                        compiler.getTask(null, mem, diagnostics, JavaSandboxRunner.JAVAC_OPTIONS, null, sources);
+                JavaSandboxRunner.cancelOn(task, cancelled);
+                return Boolean.TRUE.equals(task.call()) ? mem : null;
+            });
+            lastCompile = new CompileStats(snapshot.size(), dirty.size(), JavaSandboxRunner.millisSince(started));
+            if (fm == null) {
+                // состояние не трогаем: следующая компиляция снова начнёт от последней успешной
+                return JavaSandboxRunner.MemoryCompilation.failed(
+                        CompileDiagnostic.of(diagnostics.getDiagnostics()), snapshot.size() > 1);
+            }
+
+            units.keySet().removeAll(removed);
+            Map<String, Map<String, byte[]>> bySource = new HashMap<>();
+            for (Map.Entry<String, byte[]> e : fm.compiledClasses().classes().entrySet()) {
+                String fileName = fm.outputSources().get(e.getKey());
+                bySource.computeIfAbsent(fileName, k -> new LinkedHashMap<>()).put(e.getKey(), e.getValue());
+            }
+            for (String fileName : dirty) {
+                units.put(fileName, unit(hashes.get(fileName), bySource.getOrDefault(fileName, Map.of())));
+            }
+            return new JavaSandboxRunner.MemoryCompilation(allClasses(snapshot), null);
+        }
+    }
+
+    /** Изменённые и удалённые файлы плюс все, кто от них зависит (транзитивно); удалённые в итог не входят. */
+    private Set<String> withDependents(Set<String> changed, Set<String> removed, Map<String, String> snapshot) {
+        Set<String> dirty = new LinkedHashSet<>(changed);
+        Deque<String> queue = new ArrayDeque<>(changed);
+        queue.addAll(removed);
+        while (!queue.isEmpty()) {
+            String fileName = queue.poll();
+            Unit old = units.get(fileName);
+            Set<String> internalNames = new HashSet<>();
+            Set<String> simpleNames = new HashSet<>();
+            simpleNames.add(baseName(fileName));
+            if (old != null) {
+                for (String binaryName : old.classes().keySet()) {
+                    internalNames.add(binaryName.replace('.', '/'));
+                    simpleNames.add(topLevelSimpleName(binaryName));
+                }
+            }
+            for (String other : snapshot.keySet()) {
+                if (dirty.contains(other)) continue;
+                Unit unit = units.get(other);
+                if (!Collections.disjoint(unit.references(), internalNames) || mentions(snapshot.get(other), simpleNames)) {
+                    dirty.add(other);
+                    queue.add(other);
+                }
+            }
+        }
+        return dirty;
+    }
+
+    private CompiledClasses allClasses(Map<String, String> snapshot) {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (String fileName : snapshot.keySet()) classes.putAll(units.get(fileName).classes());
+        return new CompiledClasses(classes);
+    }
+
+    private static Unit unit(String hash, Map<String, byte[]> classes) throws IOException {
+        Set<String> own = new HashSet<>();
+        for (String binaryName : classes.keySet()) own.add(binaryName.replace('.', '/'));
+        Set<String> references = new HashSet<>();
+        for (byte[] bytes : classes.values()) references.addAll(ClassFileInfo.parse(bytes).referencedClasses());
+        references.removeAll(own);
+        return new Unit(hash, classes, references);
+    }
+
+    private static boolean mentions(String source, Set<String> simpleNames) {
+        for (String name : simpleNames) {
+            if (!name.isEmpty() && Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(source).find()) return true;
+        }
+        return false;
+    }
+
+    private static String baseName(String fileName) {
+        String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+        return name.endsWith(".java") ? name.substring(0, name.length() - ".java".length()) : name;
+    }
+
+    private static String topLevelSimpleName(String binaryName) {
+        String simple = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        int nested = simple.indexOf('$');
+        return nested < 0 ? simple : simple.substring(0, nested);
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
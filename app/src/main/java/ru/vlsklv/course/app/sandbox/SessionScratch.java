@@ -0,0 +1,204 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рабочие каталоги sandbox на время сессии приложения: исходники и классы для запуска с диска,
+ * временные файлы kotlinc.
+ *
+ * Корень — {@code aqa-course-sandbox-<pid>-<старт процесса>} в {@code /dev/shm} или
+ * {@code $XDG_RUNTIME_DIR}, если они есть (tmpfs: ни диска, ни fsync), иначе во временной папке ОС.
+ * Переопределить: {@code -Daqa.sandbox.scratch=<папка>}.
+ *
+ * Запуск берёт каталог через {@link #lease()} и после запуска возвращает. Каталог очищает фоновый
+ * поток-уборщик, после чего он снова выдаётся. Поэтому запуск не платит ни за создание, ни за
+ * удаление. Чистых каталогов хранится не больше {@link #MAX_IDLE}, лишние удаляются. Каталоги
+ * сессий, которые завершились аварийно, удаляет {@link #prepareInBackground()} при старте.
+ */
+public final class SessionScratch {
+    /** Сколько очищенных каталогов держать наготове. */
+    static final int MAX_IDLE = 4;
+
+    private static final String PREFIX = "aqa-course-sandbox-";
+
+    private static final SessionScratch SHARED = new SessionScratch(defaultBase());
+
+    private final Path base;
+    private final Path root;
+    private final Deque<Path> idle = new ArrayDeque<>();
+    private final BlockingQueue<Path> dirty = new LinkedBlockingQueue<>();
+    private final AtomicInteger seq = new AtomicInteger();
+    private final AtomicBoolean prepareStarted = new AtomicBoolean();
+    private final AtomicBoolean janitorStarted = new AtomicBoolean();
+
+    SessionScratch(Path base) {
+        ProcessHandle self = ProcessHandle.current();
+        this.base = base;
+        this.root = base.resolve(PREFIX + self.pid() + "-" + startMillis(self).orElse(0L));
+    }
+
+    public static SessionScratch shared() {
+        return SHARED;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    /** Пустой каталог в собственном распоряжении; {@link Lease#close()} отдаёт его уборщику. */
+    public Lease lease() throws IOException {
+        startJanitor();
+        synchronized (idle) {
+            Path dir = idle.poll();
+            if (dir != null) return new Lease(dir);
+        }
+        return new Lease(Files.createDirectories(root.resolve("run-" + seq.incrementAndGet())));
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Path dir;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Path dir) {
+            this.dir = dir;
+        }
+
+        public Path dir() {
+            return dir;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) dirty.add(dir);
+        }
+    }
+
+    /**
+     * В фоне удаляет каталоги умерших сессий и заранее создаёт один рабочий каталог.
+     * Повторные вызовы ничего не делают.
+     */
+    public void prepareInBackground() {
+        if (!prepareStarted.compareAndSet(false, true)) return;
+
+        Thread t = new Thread(() -> {
+            sweepOrphans();
+            try {
+                lease().close();
+            } catch (IOException ignored) {
+                // создастся при первом запуске
+            }
+        }, "sandbox-scratch-prepare");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /** Удаляет корень этой сессии; вызывается при закрытии приложения. */
+    public void close() {
+        synchronized (idle) {
+            idle.clear();
+        }
+        dirty.clear();
+        try {
+            JavaSandboxRunner.deleteRecursive(root);
+        } catch (IOException ignored) {
+            // останется до следующего старта: его удалит sweepOrphans
+        }
+    }
+
+    /** Каталоги других сессий, чей процесс уже не жив (или это уже другой процесс с тем же pid). */
+    void sweepOrphans() {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(base, PREFIX + "*")) {
+            for (Path dir : dirs) {
+                if (!dir.equals(root) && orphaned(dir.getFileName().toString())) {
+                    try {
+                        JavaSandboxRunner.deleteRecursive(dir);
+                    } catch (IOException ignored) {
+                        // например, занят на Windows: попробуем при следующем старте
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // базовой папки нет или нет прав — убирать нечего
+        }
+    }
+
+    private static boolean orphaned(String name) {
+        String[] parts = name.substring(PREFIX.length()).split("-");
+        if (parts.length != 2) return false;
+        try {
+            long pid = Long.parseLong(parts[0]);
+            long started = Long.parseLong(parts[1]);
+            Optional<ProcessHandle> owner = ProcessHandle.of(pid).filter(ProcessHandle::isAlive);
+            return owner.isEmpty() || owner.flatMap(SessionScratch::startMillis).map(s -> s != started).orElse(false);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void startJanitor() {
+        if (!janitorStarted.compareAndSet(false, true)) return;
+
+        Thread t = new Thread(this::clean, "sandbox-scratch-janitor");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    private void clean() {
+        while (true) {
+            Path dir;
+            try {
+                dir = dirty.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            boolean keep;
+            synchronized (idle) {
+                keep = idle.size() < MAX_IDLE;
+            }
+            try {
+                if (keep) {
+                    try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                        for (Path child : children) JavaSandboxRunner.deleteRecursive(child);
+                    }
+                    synchronized (idle) {
+                        idle.push(dir);
+                    }
+                } else {
+                    JavaSandboxRunner.deleteRecursive(dir);
+                }
+            } catch (IOException e) {
+                // не удалось очистить — каталог больше не выдаём, удалим вместе с корнем
+            }
+        }
+    }
+
+    private static Optional<Long> startMillis(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toEpochMilli);
+    }
+
+    private static Path defaultBase() {
+        String configured = System.getProperty("aqa.sandbox.scratch", "");
+        if (!configured.isBlank()) return Path.of(configured);
+
+        if (System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            Path shm = Path.of("/dev/shm");
+            if (Files.isDirectory(shm) && Files.isWritable(shm)) return shm;
+            String runtime = System.getenv("XDG_RUNTIME_DIR");
+            if (runtime != null && !runtime.isBlank() && Files.isDirectory(Path.of(runtime))) return Path.of(runtime);
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"));
+    }
+}
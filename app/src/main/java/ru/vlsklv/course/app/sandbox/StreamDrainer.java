@@ -0,0 +1,44 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Фоновый поток, который читает stdout/stderr процесса, пока тот работает.
+ *
+ * Без этого программа, напечатавшая больше, чем вмещает буфер pipe в ОС,
+ * блокируется на записи и выглядит как зависшая.
+ */
+final class StreamDrainer {
+    private final Thread thread;
+
+    private StreamDrainer(Thread thread) {
+        this.thread = thread;
+    }
+
+    static StreamDrainer start(InputStream in, OutputStream sink, String name) {
+        Thread t = new Thread(() -> {
+            byte[] buf = new byte[8192];
+            try (in) {
+                int r;
+                while ((r = in.read(buf)) >= 0) {
+                    sink.write(buf, 0, r);
+                }
+            } catch (IOException ignored) {
+                // процесс убит или pipe закрыт — просто заканчиваем чтение
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        return new StreamDrainer(t);
+    }
+
+    /**
+     * Ждёт конца потока. Ограничение по времени нужно на случай, если pipe
+     * держит открытым порождённый студентом процесс.
+     */
+    void await(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+}
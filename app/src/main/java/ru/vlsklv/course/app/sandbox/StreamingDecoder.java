@@ -0,0 +1,83 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Декодирует байты вывода в строки и отдаёт их {@link OutputListener}.
+ *
+ * Многобайтовый символ, разрезанный между двумя чтениями pipe, дожидается следующего куска.
+ */
+final class StreamingDecoder extends OutputStream {
+    private final OutputListener listener;
+    private final OutputListener.Channel channel;
+    private final CharsetDecoder decoder;
+
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+
+    StreamingDecoder(OutputListener listener, OutputListener.Channel channel, Charset charset) {
+        this.listener = listener;
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Пишет одновременно в буфер результата и в listener (если он задан). */
+    static OutputStream tee(OutputCapture capture, OutputListener listener, OutputListener.Channel channel, Charset charset) {
+        if (listener == null) return capture;
+        StreamingDecoder decoder = new StreamingDecoder(listener, channel, charset);
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                capture.write(b, off, len);
+                decoder.write(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        ByteBuffer in;
+        if (pending.hasRemaining()) {
+            in = ByteBuffer.allocate(pending.remaining() + len);
+            in.put(pending).put(b, off, len).flip();
+        } else {
+            in = ByteBuffer.wrap(b, off, len);
+        }
+
+        StringBuilder sb = new StringBuilder(len);
+        while (true) {
+            chars.clear();
+            boolean overflow = decoder.decode(in, chars, false).isOverflow();
+            chars.flip();
+            sb.append(chars);
+            if (!overflow) break;
+        }
+
+        // хвост незаконченного символа сохраняем до следующей записи
+        pending = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : ByteBuffer.allocate(0);
+
+        if (sb.length() == 0) return;
+        try {
+            listener.onOutput(channel, sb.toString());
+        } catch (RuntimeException ignored) {
+            // ошибка в UI-подписчике не должна ломать чтение вывода
+        }
+    }
+}
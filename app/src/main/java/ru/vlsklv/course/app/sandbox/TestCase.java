@@ -0,0 +1,36 @@
+package ru.vlsklv.course.app.sandbox;
+
+import ru.vlsklv.course.engine.grading.OutputComparator;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Один тестовый вектор задания: что подать программе и что она должна напечатать.
+ *
+ * @param name           имя для отчёта; пустое — «Тест N»
+ * @param stdin          содержимое System.in (UTF-8); {@code null} — пустой ввод
+ * @param args           аргументы main
+ * @param expectedStdout ожидаемый stdout; пустой — достаточно успешного завершения
+ */
+public record TestCase(String name, String stdin, List<String> args, String expectedStdout) {
+    public TestCase {
+        name = name == null ? "" : name;
+        stdin = stdin == null ? "" : stdin;
+        args = args == null ? List.of() : List.copyOf(args);
+    }
+
+    /**
+     * Совпадает ли вывод с ожидаемым. Сравнение не чувствительно к переводам строк (CRLF/LF),
+     * пробелам в конце строк и пустым строкам в начале и конце.
+     */
+    public boolean accepts(String stdout) {
+        return mismatch(stdout).isEmpty();
+    }
+
+    /** Первое расхождение вывода с ожидаемым ({@link OutputComparator}); пусто, если вывод принят. */
+    public Optional<OutputComparator.Mismatch> mismatch(String stdout) {
+        if (expectedStdout == null || expectedStdout.isBlank()) return Optional.empty();
+        return OutputComparator.compare(expectedStdout, stdout);
+    }
+}
@@ -0,0 +1,292 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Долгоживущие worker-JVM ({@link SandboxWorkerMain}) для проверки многих решений сразу: пакетной
+ * проверки и сервера проверки. В отличие от {@link WorkerPool#shared()}, рассчитанного на одного
+ * пользователя, размер задаётся под число ядер, а у каждого worker'а свой предел кучи.
+ *
+ * Каждый worker обслуживает свой поток со своей очередью. Запуски раздаются по очередям по кругу;
+ * освободившийся поток берёт работу из начала своей очереди, а если она пуста — крадёт с конца
+ * чужой. Так долгий запуск в одном worker'е не держит очередь за ним.
+ *
+ * Флаги JVM у запуска свои (профиль запуска задания, {@link LaunchProfile}): если они не совпадают
+ * с флагами, с которыми стартовал worker слота, worker перезапускается с нужными. Задания с
+ * разными профилями в одном координаторе поэтому чередуются с перезапусками.
+ *
+ * Worker заменяется новым после таймаута, System.exit, падения или {@code maxRunsPerWorker}
+ * запусков, а также если запуск оставил свои потоки или изменил состояние JDK (см.
+ * {@link SandboxWorkerMain}): иначе они повлияли бы на вывод следующего, возможно чужого, решения.
+ * Если worker упал посреди запуска сам (не таймаут и не System.exit), запуск один раз
+ * повторяется на новом worker'е; упал снова — падение и есть результат.
+ */
+public final class WorkerCoordinator implements AutoCloseable {
+    /** Столько же, сколько у worker'ов {@link WorkerPool}. */
+    public static final int DEFAULT_HEAP_MB = 256;
+
+    public static final int DEFAULT_MAX_RUNS_PER_WORKER = 200;
+
+    /** Счётчики с момента создания; {@code tainted} — замены из-за оставленных запуском потоков или состояния. */
+    public record Stats(int workers, long completed, long stolen, long restarts, long replayed, long tainted) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "workers=%d completed=%d stolen=%d restarts=%d replayed=%d tainted=%d",
+                    workers, completed, stolen, restarts, replayed, tainted);
+        }
+    }
+
+    private final List<String> heapOptions;
+    private final int maxRunsPerWorker;
+    private final Slot[] slots;
+    /** Разрешений не меньше, чем запусков в очередях: поток, получивший разрешение, ищет работу. */
+    private final Semaphore queued = new Semaphore(0);
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong tainted = new AtomicLong();
+    private volatile boolean closed;
+
+    public WorkerCoordinator(int workers) {
+        this(workers, DEFAULT_HEAP_MB, DEFAULT_MAX_RUNS_PER_WORKER);
+    }
+
+    /**
+     * @param workers          сколько worker-JVM держать, обычно по числу ядер
+     * @param heapMegabytes    предел кучи каждого worker'а ({@code -Xmx}), если профиль запуска не задаёт свой
+     * @param maxRunsPerWorker после стольких запусков worker заменяется новым
+     */
+    public WorkerCoordinator(int workers, int heapMegabytes, int maxRunsPerWorker) {
+        this.heapOptions = List.of("-Xmx" + Math.max(16, heapMegabytes) + "m");
+        this.maxRunsPerWorker = Math.max(1, maxRunsPerWorker);
+        this.slots = new Slot[Math.max(1, workers)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i);
+            Thread t = new Thread(slots[i]::work, "sandbox-coordinator-" + i);
+            t.setDaemon(true);
+            slots[i].thread = t;
+            t.start();
+        }
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public Stats stats() {
+        return new Stats(slots.length, completed.get(), stolen.get(), restarts.get(), replayed.get(), tainted.get());
+    }
+
+    /**
+     * Ставит запуск в очередь одного из worker'ов. {@link RunHandle#cancel()} до начала убирает
+     * запуск из очереди, во время — убивает worker (он будет заменён).
+     *
+     * @param jvmOptions флаги JVM запуска, обычно профиля задания
+     */
+    RunHandle<JavaSandboxRunner.RunResult> submit(CompiledClasses classes, String mainClass, String[] args, byte[] stdin,
+                                                  List<String> jvmOptions, Duration timeout, int outputLimitBytes) {
+        Job job = new Job(classes, mainClass, args, stdin, workerOptions(jvmOptions), timeout, outputLimitBytes);
+        if (closed) {
+            job.handle.complete(JavaSandboxRunner.RunResult.cancelled());
+            return job.handle;
+        }
+        Slot slot = slots[Math.floorMod(nextSlot.getAndIncrement(), slots.length)];
+        job.handle.attach(() -> {
+            if (slot.jobs.remove(job)) job.handle.complete(JavaSandboxRunner.RunResult.cancelled());
+        });
+        slot.jobs.addLast(job);
+        // close() мог пройти между проверкой выше и addLast: его очистка очередей этот запуск не видела
+        if (closed && slot.jobs.remove(job)) {
+            job.handle.complete(JavaSandboxRunner.RunResult.cancelled());
+            return job.handle;
+        }
+        queued.release();
+        return job.handle;
+    }
+
+    /** Синхронный запуск, как {@link WorkerPool#execute}: отмена {@code handle} отменяет и его. */
+    JavaSandboxRunner.RunResult execute(CompiledClasses classes, String mainClass, List<String> jvmOptions, Duration timeout,
+                                        int outputLimitBytes, RunHandle<?> handle) {
+        RunHandle<JavaSandboxRunner.RunResult> run = submit(classes, mainClass, new String[0], new byte[0], jvmOptions,
+                timeout, outputLimitBytes);
+        if (!handle.attach(run::cancel)) {
+            run.cancel();
+            return JavaSandboxRunner.RunResult.cancelled();
+        }
+        try {
+            return run.await();
+        } catch (InterruptedException e) {
+            run.cancel();
+            return JavaSandboxRunner.RunResult.fail("Запуск прерван.");
+        } finally {
+            handle.detach();
+        }
+    }
+
+    /** Предел кучи координатора, затем флаги запуска: из повторённых флагов JVM действует последний. */
+    private List<String> workerOptions(List<String> jvmOptions) {
+        if (jvmOptions == null || jvmOptions.isEmpty()) return heapOptions;
+        List<String> options = new ArrayList<>(heapOptions);
+        options.addAll(jvmOptions);
+        return List.copyOf(options);
+    }
+
+    /** Убивает worker'ы; идущие запуски завершаются ошибкой, стоящие в очереди — как отменённые. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Slot slot : slots) {
+            slot.thread.interrupt();
+            WorkerPool.Worker w = slot.worker;
+            if (w != null) w.destroy();
+            for (Job job; (job = slot.jobs.pollFirst()) != null; ) job.handle.complete(JavaSandboxRunner.RunResult.cancelled());
+        }
+    }
+
+    private static final class Job {
+        final CompiledClasses classes;
+        final String mainClass;
+        final String[] args;
+        final byte[] stdin;
+        final List<String> jvmOptions;
+        final Duration timeout;
+        final int outputLimitBytes;
+        final RunHandle<JavaSandboxRunner.RunResult> handle = new RunHandle<>();
+
+        Job(CompiledClasses classes, String mainClass, String[] args, byte[] stdin, List<String> jvmOptions,
+            Duration timeout, int outputLimitBytes) {
+            this.classes = classes;
+            this.mainClass = mainClass;
+            this.args = args;
+            this.stdin = stdin;
+            this.jvmOptions = jvmOptions;
+            this.timeout = timeout;
+            this.outputLimitBytes = outputLimitBytes;
+        }
+    }
+
+    /** Worker-JVM, её очередь и обслуживающий их поток. */
+    private final class Slot {
+        final int index;
+        final ConcurrentLinkedDeque<Job> jobs = new ConcurrentLinkedDeque<>();
+        Thread thread;
+        /** Заменяет только поток слота; {@link WorkerCoordinator#close()} лишь убивает. */
+        volatile WorkerPool.Worker worker;
+        /** С какими флагами запущен {@link #worker}. */
+        List<String> workerOptions;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        void work() {
+            // первый запуск не должен платить за старт JVM; флаги — как у заданий с профилем по умолчанию
+            worker = startWorker(workerOptions(LaunchProfile.DEFAULT.jvmOptions()));
+            try {
+                while (!closed) {
+                    queued.acquire();
+                    Job job = take();
+                    // разрешение запуска, отменённого в очереди: работы под него уже нет
+                    if (job != null) run(job);
+                }
+            } catch (InterruptedException e) {
+                // close()
+            } finally {
+                if (worker != null) worker.destroy();
+            }
+        }
+
+        /** Своя очередь — с начала, чужие — с конца, начиная со следующего слота. */
+        private Job take() {
+            Job job = jobs.pollFirst();
+            if (job != null) return job;
+            for (int i = 1; i < slots.length; i++) {
+                job = slots[(index + i) % slots.length].jobs.pollLast();
+                if (job != null) {
+                    stolen.incrementAndGet();
+                    return job;
+                }
+            }
+            return null;
+        }
+
+        private void run(Job job) {
+            job.handle.detach();
+            for (int attempt = 0; ; attempt++) {
+                if (job.handle.isCancelled()) {
+                    finish(job, JavaSandboxRunner.RunResult.cancelled());
+                    return;
+                }
+                if (worker != null && !job.jvmOptions.equals(workerOptions)) {
+                    worker.destroy();
+                    restarts.incrementAndGet();
+                    worker = null;
+                }
+                if (worker == null) worker = startWorker(job.jvmOptions);
+                if (worker == null) {
+                    finish(job, JavaSandboxRunner.RunResult.fail("Не удалось запустить worker-JVM."));
+                    return;
+                }
+
+                WorkerPool.Worker current = worker;
+                if (!job.handle.attach(current::destroy)) {
+                    replaceWorker();
+                    finish(job, JavaSandboxRunner.RunResult.cancelled());
+                    return;
+                }
+                WorkerPool.Outcome outcome;
+                try {
+                    outcome = current.run(job.classes, job.mainClass, job.args, job.stdin, job.timeout, job.outputLimitBytes);
+                } finally {
+                    job.handle.detach();
+                }
+                // итог tainted-запуска верный: заменяем worker, но запуск не повторяем
+                if (outcome.tainted()) tainted.incrementAndGet();
+                if (!outcome.reusable() || current.runs() >= maxRunsPerWorker) replaceWorker();
+
+                if (job.handle.isCancelled()) {
+                    finish(job, JavaSandboxRunner.RunResult.cancelled());
+                    return;
+                }
+                if (outcome.crashed() && attempt == 0) {
+                    replayed.incrementAndGet();
+                    continue;
+                }
+                finish(job, outcome.result());
+                return;
+            }
+        }
+
+        private void finish(Job job, JavaSandboxRunner.RunResult result) {
+            completed.incrementAndGet();
+            job.handle.complete(result);
+        }
+
+        /** Новый worker запускается сразу, пока очередь ждёт: следующий запуск снова попадёт в тёплый процесс. */
+        private void replaceWorker() {
+            worker.destroy();
+            restarts.incrementAndGet();
+            worker = startWorker(workerOptions);
+        }
+
+        private WorkerPool.Worker startWorker(List<String> options) {
+            if (closed) return null;
+            workerOptions = options;
+            try {
+                return WorkerPool.Worker.start(options);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package ru.vlsklv.course.app.sandbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Пул заранее запущенных worker-JVM ({@link SandboxWorkerMain}).
+ *
+ * Вместо старта новой JVM на каждый запуск байткод отправляется уже прогретому
+ * процессу через pipe. Worker пересоздаётся после таймаута, падения процесса
+ * или {@code maxRunsPerWorker} запусков.
+ */
+public final class WorkerPool {
+    private static final WorkerPool SHARED = new WorkerPool(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)),
+            100
+    );
+
+    /** Worker живёт долго и выполняет много программ, поэтому C2 и GC по умолчанию, а не профиль запуска. */
+    static final List<String> WORKER_JVM_OPTIONS = List.of("-Xmx256m");
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sandbox-worker-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int size;
+    private final int maxRunsPerWorker;
+
+    private final Deque<Worker> idle = new ArrayDeque<>();
+    private int alive;
+    private boolean closed;
+
+    public WorkerPool(int size, int maxRunsPerWorker) {
+        this.size = Math.max(1, size);
+        this.maxRunsPerWorker = Math.max(1, maxRunsPerWorker);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "sandbox-worker-pool-shutdown"));
+    }
+
+    public static WorkerPool shared() {
+        return SHARED;
+    }
+
+    /** Запускает недостающие worker'ы в фоне, чтобы первый запуск не платил за старт JVM. */
+    public void prestart() {
+        Thread t = new Thread(() -> {
+            while (true) {
+                synchronized (this) {
+                    if (closed || alive >= size) return;
+                    alive++;
+                }
+                spawnIntoIdle();
+            }
+        }, "sandbox-worker-prestart");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public JavaSandboxRunner.RunResult execute(CompiledClasses classes, String mainClass, Duration timeout,
+                                              int outputLimitBytes) {
+        return execute(classes, mainClass, timeout, outputLimitBytes, new RunHandle<>());
+    }
+
+    /**
+     * Отмена во время ожидания свободного worker'а будит ожидание, во время запуска — убивает worker.
+     * Поток, вызвавший запуск, не прерывается: это может быть поток {@link SandboxScheduler}.
+     */
+    JavaSandboxRunner.RunResult execute(CompiledClasses classes, String mainClass, Duration timeout,
+                                       int outputLimitBytes, RunHandle<?> handle) {
+        Worker worker;
+        if (!handle.attach(this::wakeWaiters)) return JavaSandboxRunner.RunResult.cancelled();
+        try {
+            worker = acquire(handle);
+        } catch (CancellationException e) {
+            return JavaSandboxRunner.RunResult.cancelled();
+        } catch (IOException e) {
+            return JavaSandboxRunner.RunResult.fail("Не удалось запустить worker-JVM: " + e.getMessage());
+        } catch (InterruptedException e) {
+            return JavaSandboxRunner.RunResult.fail("Запуск прерван.");
+        } finally {
+            handle.detach();
+        }
+
+        boolean reusable = false;
+        try {
+            if (!handle.attach(worker::destroy)) return JavaSandboxRunner.RunResult.cancelled();
+            Outcome outcome = worker.run(classes, mainClass, new String[0], new byte[0], timeout, outputLimitBytes);
+            reusable = outcome.reusable() && worker.runs < maxRunsPerWorker;
+            return outcome.result();
+        } finally {
+            handle.detach();
+            release(worker, reusable);
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        for (Worker w : idle) w.destroy();
+        idle.clear();
+        notifyAll();
+    }
+
+    private synchronized void wakeWaiters() {
+        notifyAll();
+    }
+
+    /** {@code null} — свободных нет, но можно запустить новый worker; отмена — {@link CancellationException}. */
+    private synchronized Worker acquireIdle(RunHandle<?> handle) throws InterruptedException {
+        while (true) {
+            if (closed) throw new IllegalStateException("Worker pool is closed");
+            if (handle.isCancelled()) throw new CancellationException();
+            Worker w = idle.pollFirst();
+            if (w != null) return w;
+            if (alive < size) {
+                alive++;
+                return null;
+            }
+            wait();
+        }
+    }
+
+    private Worker acquire(RunHandle<?> handle) throws IOException, InterruptedException {
+        Worker w = acquireIdle(handle);
+        if (w != null) return w;
+        try {
+            return Worker.start();
+        } catch (IOException e) {
+            synchronized (this) {
+                alive--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(Worker worker, boolean reusable) {
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.addFirst(worker);
+                notifyAll();
+                return;
+            }
+        }
+        worker.destroy();
+        replaceInBackground();
+    }
+
+    /** Отработавший worker заменяем сразу, чтобы следующий запуск снова попал в тёплый процесс. */
+    private void replaceInBackground() {
+        Thread t = new Thread(this::spawnIntoIdle, "sandbox-worker-respawn");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void spawnIntoIdle() {
+        Worker fresh = null;
+        try {
+            fresh = Worker.start();
+        } catch (IOException ignored) {
+            // следующий acquire попробует ещё раз
+        }
+        synchronized (this) {
+            if (fresh != null && !closed) {
+                idle.addLast(fresh);
+            } else {
+                alive--;
+                if (fresh != null) fresh.destroy();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * {@code reusable == false}: процесс убит, упал, вызван System.exit или запуск оставил свои потоки
+     * и изменённое состояние JDK — для следующего запуска нужен новый.
+     * {@code crashed}: процесс умер сам, не по таймауту и не через System.exit.
+     * {@code tainted}: запуск прошёл, но оставил свои потоки или изменённое состояние JDK.
+     */
+    record Outcome(JavaSandboxRunner.RunResult result, boolean reusable, boolean crashed, boolean tainted) {
+        Outcome(JavaSandboxRunner.RunResult result, boolean reusable) {
+            this(result, reusable, false, false);
+        }
+
+        Outcome(JavaSandboxRunner.RunResult result, boolean reusable, boolean crashed) {
+            this(result, reusable, crashed, false);
+        }
+    }
+
+    /**
+     * Один worker-процесс. Используется пулом, {@link CaseRunner} (отдельный worker на прогон тестов)
+     * и {@link WorkerCoordinator}.
+     */
+    static final class Worker {
+        private final Process process;
+        private final DataOutputStream in;
+        private final DataInputStream out;
+        private int runs;
+
+        private Worker(Process process) {
+            this.process = process;
+            this.in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        static Worker start() throws IOException {
+            return start(WORKER_JVM_OPTIONS);
+        }
+
+        static Worker start(List<String> jvmOptions) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(JavaSandboxRunner.childCommand(jvmOptions,
+                    JavaSandboxRunner.childClassPath(), SandboxWorkerMain.class.getName()));
+            // stdout/stdin заняты протоколом, вывод студента приходит в ответе
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            return new Worker(pb.start());
+        }
+
+        Outcome run(CompiledClasses classes, String mainClass, String[] args, byte[] stdin, Duration timeout,
+                    int outputLimitBytes) {
+            runs++;
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> kill = WATCHDOG.schedule(() -> {
+                timedOut.set(true);
+                JavaSandboxRunner.killTree(process);
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            Outcome outcome = exchange(classes, mainClass, args, stdin, timeout, outputLimitBytes, timedOut);
+            kill.cancel(false);
+            // watchdog мог сработать уже после ответа: такой процесс повторно не используем
+            return timedOut.get() && outcome.reusable() ? new Outcome(outcome.result(), false) : outcome;
+        }
+
+        int runs() {
+            return runs;
+        }
+
+        private Outcome exchange(CompiledClasses classes, String mainClass, String[] args, byte[] stdin,
+                                 Duration timeout, int outputLimitBytes, AtomicBoolean timedOut) {
+            try {
+                SandboxWorkerMain.writeRequest(in, classes, mainClass, args, stdin, outputLimitBytes);
+                SandboxWorkerMain.Response response = SandboxWorkerMain.readResponse(out);
+
+                if (response.status() == SandboxWorkerMain.RESPONSE_EXITED) {
+                    // System.exit() в коде студента: worker умирает, код выхода берём у процесса
+                    int code = process.waitFor();
+                    return new Outcome(JavaSandboxRunner.toRunResult(code, response.stdout(), response.stderr(), response.truncated()), false);
+                }
+                // RESPONSE_TAINTED: итог верный, но worker после ответа завершается сам
+                boolean tainted = response.status() == SandboxWorkerMain.RESPONSE_TAINTED;
+                return new Outcome(JavaSandboxRunner.toRunResult(response.exitCode(), response.stdout(), response.stderr(), response.truncated()),
+                        !tainted, false, tainted);
+            } catch (IOException e) {
+                if (timedOut.get()) return new Outcome(JavaSandboxRunner.timeoutResult(timeout), false);
+                return new Outcome(JavaSandboxRunner.RunResult.runtimeError(
+                        "Worker-JVM аварийно завершилась" + exitSuffix() + "."), false, true);
+            } catch (InterruptedException e) {
+                return new Outcome(JavaSandboxRunner.RunResult.fail("Запуск прерван."), false);
+            }
+        }
+
+        private String exitSuffix() {
+            try {
+                return process.waitFor(1, TimeUnit.SECONDS) ? " с кодом " + process.exitValue() : "";
+            } catch (InterruptedException e) {
+                return "";
+            }
+        }
+
+        /** Вместе с потомками: запущенный студентом процесс может держать pipe ответа открытым. */
+        void destroy() {
+            try { in.close(); } catch (IOException ignored) {}
+            JavaSandboxRunner.killTree(process);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package ru.vlsklv.course.app.ui;
 
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
@@ -13,18 +12,34 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import ru.vlsklv.course.app.grading.CodeGrader;
+import ru.vlsklv.course.app.grading.Grade;
+import ru.vlsklv.course.app.sandbox.CaseRunResult;
 import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.JunitRunResult;
+import ru.vlsklv.course.app.sandbox.LaunchProfile;
+import ru.vlsklv.course.app.sandbox.RunHandle;
+import ru.vlsklv.course.app.sandbox.SandboxBackends;
+import ru.vlsklv.course.app.sandbox.TestCase;
 import ru.vlsklv.course.app.ui.kit.AppButton;
 import ru.vlsklv.course.app.ui.kit.AppPanel;
-import ru.vlsklv.course.app.ui.kit.CodeUi;
+import ru.vlsklv.course.app.ui.kit.RunSlot;
+import ru.vlsklv.course.app.ui.kit.TerminalFeed;
+import ru.vlsklv.course.app.ui.kit.WorkspaceEditors;
+import ru.vlsklv.course.engine.grading.OutputComparator;
+import ru.vlsklv.course.engine.grading.OutputDiff;
 import ru.vlsklv.course.engine.model.CodeAssignment;
 import ru.vlsklv.course.engine.model.CourseTrack;
 import ru.vlsklv.course.engine.model.Lesson;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiConsumer;
 
 public class CodeAssignmentView {
+    private static final String RUN_FAILED = "Код не прошёл компиляцию/запуск. Исправьте ошибки и повторите.";
+
     private final Navigator nav;
     private final String lessonId;
 
@@ -57,17 +72,13 @@ public class CodeAssignmentView {
         subtitle.getStyleClass().add("muted");
         subtitle.setWrapText(true);
 
-        String template = ca.getTemplate() == null ? null : nav.loader().readResourceText(ca.getTemplate());
-        if (template == null) template = "// Template not found\n";
-
-        CodeUi.EditorBundle bundle = CodeUi.createJavaEditor(template);
-        bundle.scroll().setMaxWidth(Double.MAX_VALUE);
+        WorkspaceEditors editors = new WorkspaceEditors(CodeGrader.templateFiles(nav.loader(), ca));
 
         Label editorTitle = new Label("Редактор");
         editorTitle.getStyleClass().add("panel-title");
 
-        AppPanel editorPanel = new AppPanel(editorTitle, bundle.scroll());
-        AppPanel.grow(bundle.scroll());
+        AppPanel editorPanel = new AppPanel(editorTitle, editors.view());
+        AppPanel.grow(editors.view());
 
         Label termTitle = new Label("Вывод (терминал)");
         termTitle.getStyleClass().add("panel-title");
@@ -84,10 +95,23 @@ public class CodeAssignmentView {
         status.getStyleClass().addAll("status-bar", "muted");
         status.setWrapText(true);
 
-        JavaSandboxRunner runner = new JavaSandboxRunner();
+        JavaSandboxRunner runner = SandboxBackends.shared().get(ca.getRunner()).runner(true)
+                .withLaunchProfile(LaunchProfile.fromId(ca.getLaunchProfile()));
+        runner.prewarm();
+
+        var stop = AppButton.danger("Стоп", null);
+        RunSlot runs = new RunSlot(stop);
 
-        var back = AppButton.secondary("Назад к теории", e -> nav.showLesson(lessonId));
-        var toList = AppButton.ghost("К списку уроков", e -> nav.showLessonList());
+        var back = AppButton.secondary("Назад к теории", e -> {
+            runs.abandon();
+            editors.cancelPrecompile();
+            nav.showLesson(lessonId);
+        });
+        var toList = AppButton.ghost("К списку уроков", e -> {
+            runs.abandon();
+            editors.cancelPrecompile();
+            nav.showLessonList();
+        });
 
         var run = AppButton.secondary("Запустить", null);
         var check = AppButton.primary("Проверить", null);
@@ -117,103 +141,122 @@ public class CodeAssignmentView {
         };
 
         BiConsumer<Boolean, Runnable> startRun = (checkMode, afterUiUnlock) -> {
+            // новый запуск не ждёт предыдущий: тот останавливается, его вывод больше не показываем
+            runs.abandon();
             terminal.clear();
             resetStatus.run();
             setRunning.run();
-            bundle.hidePopup().run();
-
-            run.setDisable(true);
-            check.setDisable(true);
-
-            Task<JavaSandboxRunner.RunResult> task = new Task<>() {
-                @Override
-                protected JavaSandboxRunner.RunResult call() {
-                    return runner.compileAndRun(
-                            ca.getFileName(),
-                            ca.getMainClass(),
-                            bundle.editor().getText(),
-                            java.time.Duration.ofSeconds(5)
-                    );
-                }
+            editors.hidePopups();
+
+            Map<String, String> tests = checkMode ? CodeGrader.hiddenTests(nav.loader(), ca) : Map.of();
+            List<TestCase> cases = checkMode ? CodeGrader.testCases(ca) : List.of();
+            CodeGrader.Rule rule = CodeGrader.rule(tests, cases);
+            Runnable onPassed = () -> {
+                markDone(lesson);
+                check.setDisable(true);
             };
 
-            task.setOnSucceeded(ev -> {
-                JavaSandboxRunner.RunResult rr = task.getValue();
-
-                if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
-                    terminal.appendText(rr.getStdout());
-                    if (rr.getStderr() != null && !rr.getStderr().isBlank()) {
-                        terminal.appendText("\n[stderr]\n" + rr.getStderr());
+            if (rule == CodeGrader.Rule.TESTS) {
+                RunHandle<JunitRunResult> testHandle = runner.startTests(
+                        editors.sync(),
+                        tests,
+                        CodeGrader.TESTS_TIMEOUT
+                );
+                runs.track(testHandle, null);
+
+                testHandle.whenDone(res -> Platform.runLater(() -> {
+                    if (!runs.release(testHandle)) return;
+                    terminal.setText(res.report());
+                    editors.showDiagnostics(res.getDiagnostics());
+
+                    if (res.getStatus() == JunitRunResult.Status.CANCELLED) {
+                        resetStatus.run();
+                        status.setText("Запуск остановлен.");
+                    } else {
+                        showCounts(status, CodeGrader.decide(res), onPassed);
                     }
 
-                    if (!checkMode) {
-                        status.getStyleClass().removeAll("muted", "error");
-                        if (!status.getStyleClass().contains("success")) status.getStyleClass().add("success");
-                        status.setText("Выполнено.");
+                    if (afterUiUnlock != null) afterUiUnlock.run();
+                }));
+                return;
+            }
+
+            if (rule == CodeGrader.Rule.CASES) {
+                RunHandle<CaseRunResult> caseHandle = runner.startCases(
+                        editors.sync(),
+                        ca.getMainClass(),
+                        cases,
+                        CodeGrader.RUN_TIMEOUT
+                );
+                runs.track(caseHandle, null);
+
+                caseHandle.whenDone(res -> Platform.runLater(() -> {
+                    if (!runs.release(caseHandle)) return;
+                    terminal.setText(res.report());
+                    editors.showDiagnostics(res.getDiagnostics());
+
+                    if (res.getStatus() == CaseRunResult.Status.CANCELLED) {
+                        resetStatus.run();
+                        status.setText("Запуск остановлен.");
                     } else {
-                        String expected = ca.getExpectedStdout();
-                        if (expected == null || expected.isBlank()) {
-                            status.getStyleClass().removeAll("muted", "error");
-                            if (!status.getStyleClass().contains("success")) status.getStyleClass().add("success");
-                            status.setText("Код запущен. Для задания не задан expectedStdout — считается пройденным при успешном запуске.");
-                            markDone(lesson);
-                            check.setDisable(true);
-                        } else {
-                            String actual = rr.getStdout();
-                            String normExpected = normalizeForCompare(expected);
-                            String normActual = normalizeForCompare(actual);
-
-                            if (normExpected.equals(normActual)) {
-                                status.getStyleClass().removeAll("muted", "error");
-                                if (!status.getStyleClass().contains("success")) status.getStyleClass().add("success");
-                                status.setText("Проверка пройдена. Следующий урок станет доступен.");
-                                markDone(lesson);
-                                check.setDisable(true);
-                            } else {
-                                status.getStyleClass().removeAll("muted", "success");
-                                if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                                status.setText(
-                                        "Проверка не пройдена. Ожидаемый вывод не совпал.\n\n" +
-                                                "Ожидалось:\n" + expected + "\n\n" +
-                                                "Получено:\n" + actual
-                                );
-                            }
-                        }
+                        showCounts(status, CodeGrader.decide(res, cases.size()), onPassed);
                     }
+
+                    if (afterUiUnlock != null) afterUiUnlock.run();
+                }));
+                return;
+            }
+
+            TerminalFeed feed = new TerminalFeed(terminal);
+            feed.start();
+
+            RunHandle<JavaSandboxRunner.RunResult> handle = runner.start(
+                    editors.sync(),
+                    ca.getMainClass(),
+                    CodeGrader.RUN_TIMEOUT,
+                    feed
+            );
+            runs.track(handle, feed);
+
+            handle.whenDone(rr -> Platform.runLater(() -> {
+                if (!runs.release(handle)) return;
+                feed.finish(rr);
+                editors.showDiagnostics(rr.getDiagnostics());
+
+                if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.CANCELLED) {
+                    resetStatus.run();
+                    status.setText("Запуск остановлен.");
+                } else if (checkMode) {
+                    String expected = ca.getExpectedStdout();
+                    CodeGrader.Decision decision = CodeGrader.decide(expected, rr);
+                    OutputComparator.Mismatch mismatch = decision.mismatch();
+                    showDecision(status, decision,
+                            expected == null || expected.isBlank()
+                                    ? "Код запущен. Для задания не задан expectedStdout — считается пройденным при успешном запуске."
+                                    : "Проверка пройдена. Следующий урок станет доступен.",
+                            mismatch == null ? "" : "Проверка не пройдена. Ожидаемый вывод не совпал.\n"
+                                    + mismatch.describe(expected, rr.getStdout()),
+                            RUN_FAILED,
+                            onPassed);
+                    if (mismatch != null) terminal.appendText("\n\n---\n" + diffReport(expected, rr.getStdout()));
+                } else if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
+                    status.getStyleClass().removeAll("muted", "error");
+                    if (!status.getStyleClass().contains("success")) status.getStyleClass().add("success");
+                    status.setText("Выполнено.");
                 } else {
-                    terminal.appendText(rr.getMessage());
                     status.getStyleClass().removeAll("muted", "success");
                     if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                    status.setText("Код не прошёл компиляцию/запуск. Исправьте ошибки и повторите.");
+                    status.setText(RUN_FAILED);
                 }
 
-                run.setDisable(false);
-                if (!check.isDisabled()) check.setDisable(false);
-                if (afterUiUnlock != null) afterUiUnlock.run();
-            });
-
-            task.setOnFailed(ev -> {
-                Throwable ex = task.getException();
-                terminal.appendText(ex == null ? "Unknown error" : ex.getMessage());
-
-                status.getStyleClass().removeAll("muted", "success");
-                if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                status.setText("Ошибка запуска.");
-
-                run.setDisable(false);
-                if (!check.isDisabled()) check.setDisable(false);
                 if (afterUiUnlock != null) afterUiUnlock.run();
-            });
-
-            Thread t = new Thread(task, "code-assignment-runner");
-            t.setDaemon(true);
-            t.start();
+            }));
         };
 
         run.setOnAction(e -> startRun.accept(false, null));
         check.setOnAction(e -> startRun.accept(true, null));
 
-        HBox actions = new HBox(12, back, toList, run, check);
+        HBox actions = new HBox(12, back, toList, stop, run, check);
         actions.setAlignment(Pos.CENTER_RIGHT);
 
         BorderPane pane = new BorderPane();
@@ -227,7 +270,7 @@ public class CodeAssignmentView {
         BorderPane.setMargin(bottom, new Insets(12, 0, 0, 0));
 
         // небольшой фокус на редактор
-        Platform.runLater(bundle.editor()::requestFocus);
+        Platform.runLater(editors.main().editor()::requestFocus);
 
         return pane;
     }
@@ -238,21 +281,30 @@ public class CodeAssignmentView {
         nav.saveProgress();
     }
 
-    private static String normalizeForCompare(String text) {
-        if (text == null) return "";
-        String t = text.replace("\r\n", "\n").replace("\r", "\n");
+    private static void showCounts(Label status, CodeGrader.Decision decision, Runnable onPassed) {
+        showDecision(status, decision,
+                "Проверка пройдена: все тесты (" + decision.total() + ") прошли. Следующий урок станет доступен.",
+                "Проверка не пройдена: тестов пройдено " + decision.passed() + " из " + decision.total() + ".",
+                RUN_FAILED,
+                onPassed);
+    }
 
-        String[] lines = t.split("\n", -1);
-        StringBuilder sb = new StringBuilder();
-        for (String line : lines) {
-            String rtrim = line.replaceAll("[ \t]+$", "");
-            sb.append(rtrim).append("\n");
+    /** Вердикт {@link CodeGrader#decide} в строке статуса: решает проверку он, здесь только текст. */
+    static void showDecision(Label status, CodeGrader.Decision decision, String passedText, String failedText,
+                             String errorText, Runnable onPassed) {
+        status.getStyleClass().removeAll("muted", "success", "error");
+        if (decision.verdict() == Grade.Verdict.PASSED) {
+            status.getStyleClass().add("success");
+            status.setText(passedText);
+            if (onPassed != null) onPassed.run();
+            return;
         }
+        status.getStyleClass().add("error");
+        status.setText(decision.verdict() == Grade.Verdict.FAILED ? failedText : errorText);
+    }
 
-        String res = sb.toString();
-        while (res.endsWith("\n\n")) {
-            res = res.substring(0, res.length() - 1);
-        }
-        return res.trim();
+    /** Только различающиеся участки вывода с контекстом: весь вывод целиком в метку не помещается. */
+    static String diffReport(String expected, String actual) {
+        return "Различия (- ожидалось, + получено):\n" + OutputDiff.diff(expected, actual).format();
     }
 }
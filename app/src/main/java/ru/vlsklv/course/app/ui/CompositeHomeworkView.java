@@ -1,7 +1,6 @@
 package ru.vlsklv.course.app.ui;
 
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
@@ -11,15 +10,26 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import ru.vlsklv.course.app.grading.CodeGrader;
+import ru.vlsklv.course.app.sandbox.CaseRunResult;
 import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.JunitRunResult;
+import ru.vlsklv.course.app.sandbox.LaunchProfile;
+import ru.vlsklv.course.app.sandbox.RunHandle;
+import ru.vlsklv.course.app.sandbox.SandboxBackends;
+import ru.vlsklv.course.app.sandbox.TestCase;
 import ru.vlsklv.course.app.ui.kit.AppButton;
 import ru.vlsklv.course.app.ui.kit.AppPanel;
-import ru.vlsklv.course.app.ui.kit.CodeUi;
+import ru.vlsklv.course.app.ui.kit.RunSlot;
+import ru.vlsklv.course.app.ui.kit.TerminalFeed;
+import ru.vlsklv.course.app.ui.kit.WorkspaceEditors;
+import ru.vlsklv.course.engine.grading.OutputComparator;
 import ru.vlsklv.course.engine.model.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -165,16 +175,12 @@ public class CompositeHomeworkView {
         VBox.setVgrow(quizPanel, Priority.ALWAYS);
         quizTab.setContent(quizRoot);
 
-        String templateText = code.getTemplate() == null ? null : nav.loader().readResourceText(code.getTemplate());
-        if (templateText == null) templateText = "// Template not found\n";
-
-        CodeUi.EditorBundle bundle = CodeUi.createJavaEditor(templateText);
-        bundle.scroll().setMaxWidth(Double.MAX_VALUE);
+        WorkspaceEditors editors = new WorkspaceEditors(CodeGrader.templateFiles(nav.loader(), code));
 
         Label editorTitle = new Label("Редактор");
         editorTitle.getStyleClass().add("panel-title");
 
-        AppPanel editorPanel = new AppPanel(editorTitle, bundle.scroll());
+        AppPanel editorPanel = new AppPanel(editorTitle, editors.view());
         VBox.setVgrow(editorPanel, Priority.ALWAYS);
 
         Label termTitle = new Label("Вывод (терминал)");
@@ -196,7 +202,9 @@ public class CompositeHomeworkView {
         codeStatus.getStyleClass().addAll("status-bar", "muted");
         codeStatus.setWrapText(true);
 
-        JavaSandboxRunner runner = new JavaSandboxRunner();
+        JavaSandboxRunner runner = SandboxBackends.shared().get(code == null ? null : code.getRunner()).runner(true)
+                .withLaunchProfile(LaunchProfile.fromId(code == null ? null : code.getLaunchProfile()));
+        if (code != null) runner.prewarm();
 
         Runnable resetCodeStatus = () -> {
             codeStatus.getStyleClass().removeAll("error", "success");
@@ -207,18 +215,20 @@ public class CompositeHomeworkView {
         var runBtn = AppButton.secondary("Запустить", null);
         var checkBtn = AppButton.primary("Проверить код", null);
         var clearBtn = AppButton.secondary("Очистить вывод", e -> terminal.clear());
+        var stopBtn = AppButton.danger("Стоп", null);
+        RunSlot runs = new RunSlot(stopBtn);
 
         CodeAssignment finalCode = code;
-        runBtn.setOnAction(e -> runAsync(bundle, runner, finalCode, terminal, codeStatus, resetCodeStatus, false, null));
+        runBtn.setOnAction(e -> runAsync(editors, runner, runs, finalCode, terminal, codeStatus, resetCodeStatus, false, null));
 
         CodeAssignment finalCode1 = code;
-        checkBtn.setOnAction(e -> runAsync(bundle, runner, finalCode1, terminal, codeStatus, resetCodeStatus, true, () -> {
+        checkBtn.setOnAction(e -> runAsync(editors, runner, runs, finalCode1, terminal, codeStatus, resetCodeStatus, true, () -> {
             markDone(lesson);
             checkBtn.setDisable(true);
             runBtn.setDisable(true);
         }));
 
-        HBox codeActions = new HBox(12, clearBtn, runBtn, checkBtn);
+        HBox codeActions = new HBox(12, clearBtn, stopBtn, runBtn, checkBtn);
         codeActions.setAlignment(Pos.CENTER_RIGHT);
 
         VBox codeRoot = new VBox(12, split, codeStatus, codeActions);
@@ -226,8 +236,16 @@ public class CompositeHomeworkView {
         VBox.setVgrow(split, Priority.ALWAYS);
         codeTab.setContent(codeRoot);
 
-        var backTheory = AppButton.ghost("Назад к теории", e -> nav.showLesson(lessonId));
-        var toList = AppButton.secondary("К списку уроков", e -> nav.showLessonList());
+        var backTheory = AppButton.ghost("Назад к теории", e -> {
+            runs.abandon();
+            editors.cancelPrecompile();
+            nav.showLesson(lessonId);
+        });
+        var toList = AppButton.secondary("К списку уроков", e -> {
+            runs.abandon();
+            editors.cancelPrecompile();
+            nav.showLessonList();
+        });
 
         HBox pageActions = new HBox(12, backTheory, toList);
         pageActions.setAlignment(Pos.CENTER_RIGHT);
@@ -239,13 +257,14 @@ public class CompositeHomeworkView {
         pane.setBottom(pageActions);
         BorderPane.setMargin(pageActions, new Insets(12, 0, 0, 0));
 
-        Platform.runLater(bundle.editor()::requestFocus);
+        Platform.runLater(editors.main().editor()::requestFocus);
         return pane;
     }
 
     private void runAsync(
-            CodeUi.EditorBundle bundle,
+            WorkspaceEditors editors,
             JavaSandboxRunner runner,
+            RunSlot runs,
             CodeAssignment ca,
             TextArea terminal,
             Label status,
@@ -253,84 +272,111 @@ public class CompositeHomeworkView {
             boolean isCheck,
             Runnable onCheckSuccess
     ) {
-        bundle.hidePopup().run();
+        editors.hidePopups();
+        // новый запуск не ждёт предыдущий: тот останавливается, его вывод больше не показываем
+        runs.abandon();
         terminal.clear();
         resetStatus.run();
 
         status.setText("Запуск...");
-        Task<JavaSandboxRunner.RunResult> task = new Task<>() {
-            @Override
-            protected JavaSandboxRunner.RunResult call() {
-                return runner.compileAndRun(
-                        ca.getFileName(),
-                        ca.getMainClass(),
-                        bundle.editor().getText(),
-                        java.time.Duration.ofSeconds(5)
-                );
-            }
-        };
 
-        task.setOnSucceeded(ev -> {
-            JavaSandboxRunner.RunResult rr = task.getValue();
-            if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
-                terminal.appendText(rr.getStdout());
-                if (rr.getStderr() != null && !rr.getStderr().isBlank()) {
-                    terminal.appendText("\n[stderr]\n" + rr.getStderr());
+        Map<String, String> tests = isCheck ? CodeGrader.hiddenTests(nav.loader(), ca) : Map.of();
+        List<TestCase> cases = isCheck ? CodeGrader.testCases(ca) : List.of();
+        CodeGrader.Rule rule = CodeGrader.rule(tests, cases);
+
+        if (rule == CodeGrader.Rule.TESTS) {
+            RunHandle<JunitRunResult> testHandle = runner.startTests(
+                    editors.sync(),
+                    tests,
+                    CodeGrader.TESTS_TIMEOUT
+            );
+            runs.track(testHandle, null);
+
+            testHandle.whenDone(res -> Platform.runLater(() -> {
+                if (!runs.release(testHandle)) return;
+                terminal.setText(res.report());
+                editors.showDiagnostics(res.getDiagnostics());
+                if (res.getStatus() == JunitRunResult.Status.CANCELLED) {
+                    status.setText("Запуск остановлен.");
+                } else {
+                    showCounts(status, CodeGrader.decide(res), onCheckSuccess);
                 }
+            }));
+            return;
+        }
 
-                if (!isCheck) {
-                    status.getStyleClass().removeAll("muted", "error");
-                    status.getStyleClass().add("success");
-                    status.setText("Выполнено.");
-                    return;
+        if (rule == CodeGrader.Rule.CASES) {
+            RunHandle<CaseRunResult> caseHandle = runner.startCases(
+                    editors.sync(),
+                    ca.getMainClass(),
+                    cases,
+                    CodeGrader.RUN_TIMEOUT
+            );
+            runs.track(caseHandle, null);
+
+            caseHandle.whenDone(res -> Platform.runLater(() -> {
+                if (!runs.release(caseHandle)) return;
+                terminal.setText(res.report());
+                editors.showDiagnostics(res.getDiagnostics());
+                if (res.getStatus() == CaseRunResult.Status.CANCELLED) {
+                    status.setText("Запуск остановлен.");
+                } else {
+                    showCounts(status, CodeGrader.decide(res, cases.size()), onCheckSuccess);
                 }
+            }));
+            return;
+        }
 
+        TerminalFeed feed = new TerminalFeed(terminal);
+        feed.start();
+
+        RunHandle<JavaSandboxRunner.RunResult> handle = runner.start(
+                editors.sync(),
+                ca.getMainClass(),
+                CodeGrader.RUN_TIMEOUT,
+                feed
+        );
+        runs.track(handle, feed);
+
+        handle.whenDone(rr -> Platform.runLater(() -> {
+            if (!runs.release(handle)) return;
+            feed.finish(rr);
+            editors.showDiagnostics(rr.getDiagnostics());
+            if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.CANCELLED) {
+                status.setText("Запуск остановлен.");
+            } else if (isCheck) {
                 String expected = ca.getExpectedStdout();
-                if (expected == null || expected.isBlank()) {
-                    status.getStyleClass().removeAll("muted", "error");
-                    status.getStyleClass().add("success");
-                    status.setText("Код запущен. expectedStdout не задан — считаем шаг пройденным.");
-                    if (onCheckSuccess != null) onCheckSuccess.run();
-                    return;
-                }
-
-                String actual = rr.getStdout();
-                String ne = normalizeForCompare(expected);
-                String na = normalizeForCompare(actual);
-
-                if (ne.equals(na)) {
-                    status.getStyleClass().removeAll("muted", "error");
-                    status.getStyleClass().add("success");
-                    status.setText("Проверка пройдена. Урок закрыт как выполненный.");
-                    if (onCheckSuccess != null) onCheckSuccess.run();
-                } else {
-                    status.getStyleClass().removeAll("muted", "success");
-                    status.getStyleClass().add("error");
-                    status.setText("Проверка не пройдена: вывод не совпал.");
-
-                    terminal.appendText("\n\n---\nОжидалось:\n" + expected + "\n\nПолучено:\n" + actual);
+                CodeGrader.Decision decision = CodeGrader.decide(expected, rr);
+                CodeAssignmentView.showDecision(status, decision,
+                        expected == null || expected.isBlank()
+                                ? "Код запущен. expectedStdout не задан — считаем шаг пройденным."
+                                : "Проверка пройдена. Урок закрыт как выполненный.",
+                        "Проверка не пройдена: вывод не совпал.",
+                        "Ошибка.",
+                        onCheckSuccess);
+                OutputComparator.Mismatch mismatch = decision.mismatch();
+                if (mismatch != null) {
+                    terminal.appendText("\n\n---\n" + mismatch.describe(expected, rr.getStdout())
+                            + "\n\n" + CodeAssignmentView.diffReport(expected, rr.getStdout()));
                 }
+            } else if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
+                status.getStyleClass().removeAll("muted", "error");
+                status.getStyleClass().add("success");
+                status.setText("Выполнено.");
             } else {
                 status.getStyleClass().removeAll("muted", "success");
                 status.getStyleClass().add("error");
                 status.setText("Ошибка.");
-
-                terminal.appendText(rr.getMessage());
             }
-        });
-
-        task.setOnFailed(ev -> {
-            status.getStyleClass().removeAll("muted", "success");
-            status.getStyleClass().add("error");
-            status.setText("Ошибка запуска.");
-
-            Throwable ex = task.getException();
-            terminal.appendText(ex == null ? "Unknown error" : ex.getMessage());
-        });
+        }));
+    }
 
-        Thread t = new Thread(task, "composite-runner");
-        t.setDaemon(true);
-        t.start();
+    private static void showCounts(Label status, CodeGrader.Decision decision, Runnable onPassed) {
+        CodeAssignmentView.showDecision(status, decision,
+                "Проверка пройдена: все тесты (" + decision.total() + ") прошли. Урок закрыт как выполненный.",
+                "Проверка не пройдена: тестов пройдено " + decision.passed() + " из " + decision.total() + ".",
+                "Ошибка.",
+                onPassed);
     }
 
     private void markDone(Lesson lesson) {
@@ -339,23 +385,6 @@ public class CompositeHomeworkView {
         nav.saveProgress();
     }
 
-    private static String normalizeForCompare(String text) {
-        if (text == null) return "";
-        String t = text.replace("\r\n", "\n").replace("\r", "\n");
-
-        String[] lines = t.split("\n", -1);
-        StringBuilder sb = new StringBuilder();
-        for (String line : lines) {
-            String rtrim = line.replaceAll("[ \t]+$", "");
-            sb.append(rtrim).append("\n");
-        }
-
-        String res = sb.toString();
-        while (res.endsWith("\n\n")) {
-            res = res.substring(0, res.length() - 1);
-        }
-        return res.trim();
-    }
 
     private static final class QuestionBlock {
         final VBox root = new VBox(10);
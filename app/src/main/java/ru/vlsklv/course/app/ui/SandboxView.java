@@ -17,12 +17,24 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.LaunchProfile;
+import ru.vlsklv.course.app.sandbox.RunHandle;
+import ru.vlsklv.course.app.sandbox.RunMetrics;
+import ru.vlsklv.course.app.sandbox.SandboxBackends;
+import ru.vlsklv.course.app.sandbox.SandboxScheduler;
 import ru.vlsklv.course.app.autotest.JunitAutotestRunner;
 import ru.vlsklv.course.app.ui.kit.AppButton;
 import ru.vlsklv.course.app.ui.kit.AppPanel;
 import ru.vlsklv.course.app.ui.kit.CodeUi;
+import ru.vlsklv.course.app.ui.kit.RunSlot;
+import ru.vlsklv.course.app.ui.kit.TerminalFeed;
 import ru.vlsklv.course.engine.model.CourseLanguage;
 
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
 public class SandboxView {
     private final Navigator nav;
 
@@ -64,7 +76,32 @@ public class SandboxView {
         Label langLbl = new Label("Язык:");
         langLbl.getStyleClass().add("muted");
 
-        HBox langRow = new HBox(10, langLbl, lang);
+        ComboBox<LaunchProfile> profile = new ComboBox<>();
+        profile.getStyleClass().add("app-combo");
+        profile.getItems().addAll(LaunchProfile.values());
+        profile.getSelectionModel().select(LaunchProfile.DEFAULT);
+        profile.setPrefWidth(220);
+        profile.setMaxWidth(260);
+
+        profile.setButtonCell(new ListCell<>() {
+            @Override
+            protected void updateItem(LaunchProfile item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? "" : item.title());
+            }
+        });
+        profile.setCellFactory(cb -> new ListCell<>() {
+            @Override
+            protected void updateItem(LaunchProfile item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? "" : item.title());
+            }
+        });
+
+        Label profileLbl = new Label("Профиль JVM:");
+        profileLbl.getStyleClass().add("muted");
+
+        HBox langRow = new HBox(10, langLbl, lang, profileLbl, profile);
         langRow.setAlignment(Pos.CENTER_LEFT);
 
         String javaTemplate =
@@ -76,6 +113,13 @@ public class SandboxView {
                 }
                 """;
 
+        String kotlinTemplate =
+                """
+                fun main() {
+                    println("Hello from sandbox")
+                }
+                """;
+
         CodeUi.EditorBundle bundle = CodeUi.createJavaEditor(javaTemplate);
         bundle.scroll().setMaxWidth(Double.MAX_VALUE);
 
@@ -103,7 +147,10 @@ public class SandboxView {
         status.getStyleClass().addAll("status-bar", "muted");
         status.setWrapText(true);
 
-        JavaSandboxRunner runner = new JavaSandboxRunner();
+        // по раннеру на язык: новый запуск вытесняет ещё не начатые запуски этого экрана
+        Map<CourseLanguage, JavaSandboxRunner> runners = new EnumMap<>(CourseLanguage.class);
+        Function<CourseLanguage, JavaSandboxRunner> runnerFor = l ->
+                runners.computeIfAbsent(l, k -> SandboxBackends.shared().get(k.name()).runner(true));
         JunitAutotestRunner autotestRunner = new JunitAutotestRunner();
 
         ComboBox<JunitAutotestRunner.ApiTarget> apiTarget = new ComboBox<>();
@@ -134,12 +181,17 @@ public class SandboxView {
         testStatus.setWrapText(true);
 
         var run = AppButton.primary("Запустить", null);
+        var stop = AppButton.danger("Стоп", null);
+        RunSlot runs = new RunSlot(stop);
         var runApi = AppButton.secondary("API автотесты", null);
         var runWeb = AppButton.secondary("Web автотесты", null);
         var probe = AppButton.secondary("Тестовый запрос", null);
         var clear = AppButton.secondary("Очистить вывод", e -> terminal.clear());
         var reset = AppButton.secondary("Шаблон", null);
-        var back = AppButton.ghost("Назад", e -> nav.showWelcome());
+        var back = AppButton.ghost("Назад", e -> {
+            runs.abandon();
+            nav.showWelcome();
+        });
 
         Runnable resetStatus = () -> {
             status.getStyleClass().removeAll("error", "success");
@@ -149,93 +201,63 @@ public class SandboxView {
 
         reset.setOnAction(e -> {
             bundle.hidePopup().run();
+            runs.abandon();
             terminal.clear();
             resetStatus.run();
 
-            if (lang.getValue() == CourseLanguage.JAVA) {
-                bundle.editor().replaceText(javaTemplate);
-            } else {
-                bundle.editor().replaceText("// Kotlin sandbox: coming soon\n");
-            }
+            bundle.editor().replaceText(lang.getValue() == CourseLanguage.KOTLIN ? kotlinTemplate : javaTemplate);
             Platform.runLater(bundle.editor()::requestFocus);
         });
 
         lang.valueProperty().addListener((obs, o, n) -> {
             bundle.hidePopup().run();
+            runs.abandon();
             terminal.clear();
             resetStatus.run();
 
-            if (n == CourseLanguage.JAVA) {
-                bundle.editor().replaceText(javaTemplate);
-                run.setDisable(false);
-            } else {
-                bundle.editor().replaceText("// Kotlin sandbox: запуск будет добавлен отдельным патчем\n");
-                run.setDisable(true);
-
-                status.getStyleClass().removeAll("muted", "success");
-                if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                status.setText("Запуск Kotlin в песочнице ещё не реализован. Сейчас доступен только Java.");
-            }
+            bundle.editor().replaceText(n == CourseLanguage.KOTLIN ? kotlinTemplate : javaTemplate);
+            runnerFor.apply(n).prewarm();
         });
 
         run.setOnAction(e -> {
             bundle.hidePopup().run();
+            // новый запуск не ждёт предыдущий: тот останавливается, его вывод больше не показываем
+            runs.abandon();
             terminal.clear();
             resetStatus.run();
 
             status.setText("Запуск...");
-            run.setDisable(true);
 
-            Task<JavaSandboxRunner.RunResult> task = new Task<>() {
-                @Override
-                protected JavaSandboxRunner.RunResult call() {
-                    return runner.compileAndRun(
-                            "Main.java",
-                            "Main",
-                            bundle.editor().getText(),
-                            java.time.Duration.ofSeconds(5)
-                    );
-                }
-            };
-
-            task.setOnSucceeded(ev -> {
-                JavaSandboxRunner.RunResult rr = task.getValue();
-
-                if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
+            TerminalFeed feed = new TerminalFeed(terminal);
+            feed.start();
+
+            JavaSandboxRunner current = runnerFor.apply(lang.getValue()).withLaunchProfile(profile.getValue());
+            RunHandle<JavaSandboxRunner.RunResult> handle = current.start(
+                    current.language().defaultFileName(),
+                    current.language().defaultMainClass(),
+                    bundle.editor().getText(),
+                    java.time.Duration.ofSeconds(5),
+                    feed
+            );
+            runs.track(handle, feed);
+
+            handle.whenDone(rr -> Platform.runLater(() -> {
+                if (!runs.release(handle)) return;
+                feed.finish(rr);
+                CodeUi.showDiagnostics(bundle.editor(), rr.getDiagnostics());
+
+                if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.CANCELLED) {
+                    status.setText("Запуск остановлен.");
+                } else if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) {
                     status.getStyleClass().removeAll("muted", "error");
                     if (!status.getStyleClass().contains("success")) status.getStyleClass().add("success");
-                    status.setText("Выполнено.");
-
-                    terminal.appendText(rr.getStdout());
-                    if (rr.getStderr() != null && !rr.getStderr().isBlank()) {
-                        terminal.appendText("\n[stderr]\n" + rr.getStderr());
-                    }
+                    status.setText("Выполнено." + metricsText(rr.getMetrics()));
                 } else {
                     status.getStyleClass().removeAll("muted", "success");
                     if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                    status.setText("Ошибка.");
-
-                    terminal.appendText(rr.getMessage());
+                    status.setText("Ошибка." + metricsText(rr.getMetrics()));
                 }
-
-                if (lang.getValue() == CourseLanguage.JAVA) run.setDisable(false);
-            });
-
-            task.setOnFailed(ev -> {
-                Throwable ex = task.getException();
-
-                status.getStyleClass().removeAll("muted", "success");
-                if (!status.getStyleClass().contains("error")) status.getStyleClass().add("error");
-                status.setText("Ошибка запуска.");
-
-                terminal.appendText(ex == null ? "Unknown error" : ex.getMessage());
-
-                if (lang.getValue() == CourseLanguage.JAVA) run.setDisable(false);
-            });
-
-            Thread t = new Thread(task, "sandbox-runner");
-            t.setDaemon(true);
-            t.start();
+            }));
         });
 
         probe.setOnAction(e -> {
@@ -269,13 +291,13 @@ public class SandboxView {
                 testStatus.getStyleClass().add("error");
                 testStatus.setText("Ошибка запроса: " + task.getException().getMessage());
             });
-            new Thread(task, "probe-runner").start();
+            SandboxScheduler.shared().execute(SandboxScheduler.Priority.INTERACTIVE, task);
         });
 
         runApi.setOnAction(e -> runSuite(autotestRunner, JunitAutotestRunner.SuiteType.API, baseUrl, testStatus, terminal, runApi, runWeb));
         runWeb.setOnAction(e -> runSuite(autotestRunner, JunitAutotestRunner.SuiteType.WEB, baseUrl, testStatus, terminal, runApi, runWeb));
 
-        HBox actions = new HBox(12, back, reset, clear, run);
+        HBox actions = new HBox(12, back, reset, clear, stop, run);
         actions.setAlignment(Pos.CENTER_RIGHT);
 
         HBox targetRow = new HBox(10, new Label("Тестовый сайт:"), apiTarget);
@@ -360,9 +382,7 @@ public class SandboxView {
             runWeb.setDisable(false);
         });
 
-        Thread t = new Thread(task, "autotest-suite-runner");
-        t.setDaemon(true);
-        t.start();
+        SandboxScheduler.shared().execute(SandboxScheduler.Priority.INTERACTIVE, task);
     }
 
     private static String prettyLang(CourseLanguage l) {
@@ -371,4 +391,14 @@ public class SandboxView {
             case KOTLIN -> "🟣 Kotlin";
         };
     }
+
+    private static String metricsText(RunMetrics m) {
+        StringBuilder sb = new StringBuilder();
+        if (m.compileMillis() >= 0) sb.append(" компиляция ").append(m.compileMillis()).append(" ms");
+        if (m.spawnToMainMillis() >= 0) sb.append(", старт JVM ").append(m.spawnToMainMillis()).append(" ms");
+        if (m.executionMillis() >= 0) sb.append(", выполнение ").append(m.executionMillis()).append(" ms");
+        if (m.cpuMillis() >= 0) sb.append(", CPU ").append(m.cpuMillis()).append(" ms");
+        if (m.hasPeakRss()) sb.append(String.format(Locale.ROOT, ", пик памяти %.1f MiB", m.peakRssBytes() / (1024.0 * 1024.0)));
+        return sb.toString();
+    }
 }
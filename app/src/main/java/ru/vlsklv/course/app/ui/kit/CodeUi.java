@@ -14,11 +14,16 @@ import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
 import ru.vlsklv.course.app.editor.CompletionEngine;
+import ru.vlsklv.course.app.sandbox.CompileDiagnostic;
 
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public final class CodeUi {
+    /** Ключ в {@code getProperties()} редактора: на нём сейчас есть подчёркивания. */
+    private static final String DIAGNOSTICS_KEY = "aqa.diagnostics";
+
     private CodeUi() {
     }
 
@@ -43,6 +48,8 @@ public final class CodeUi {
         editor.setMaxWidth(Double.MAX_VALUE);
         editor.setParagraphGraphicFactory(LineNumberFactory.get(editor));
         editor.replaceText(initialText == null ? "" : initialText);
+        // позиции подчёркиваний после правки устарели
+        editor.plainTextChanges().subscribe(change -> clearDiagnostics(editor));
 
         VirtualizedScrollPane<CodeArea> editorScroll = new VirtualizedScrollPane<>(editor);
         editorScroll.setMaxWidth(Double.MAX_VALUE);
@@ -246,6 +253,45 @@ public final class CodeUi {
         return new EditorBundle(editor, editorScroll, completionPopup, completionList, hideCompletion);
     }
 
+    /**
+     * Подчёркивает ошибки и предупреждения компилятора, прежние подчёркивания снимаются.
+     * Ошибки рисуются поверх предупреждений; сообщение в конце файла подчёркивает последний символ.
+     */
+    public static void showDiagnostics(CodeArea editor, List<CompileDiagnostic> diagnostics) {
+        clearDiagnostics(editor);
+        int length = editor.getLength();
+        if (length == 0) return;
+
+        boolean shown = false;
+        for (CompileDiagnostic.Kind kind : List.of(CompileDiagnostic.Kind.WARNING, CompileDiagnostic.Kind.ERROR)) {
+            for (CompileDiagnostic d : diagnostics) {
+                if (d.kind() != kind || !d.hasRange()) continue;
+                int start = (int) Math.min(d.startOffset(), length - 1);
+                int end = (int) Math.min(Math.max(d.endOffset(), start + 1), length);
+                editor.setStyleClass(start, end, kind == CompileDiagnostic.Kind.ERROR ? "diagnostic-error" : "diagnostic-warning");
+                shown = true;
+            }
+        }
+        if (shown) editor.getProperties().put(DIAGNOSTICS_KEY, Boolean.TRUE);
+    }
+
+    public static void clearDiagnostics(CodeArea editor) {
+        if (editor.getProperties().remove(DIAGNOSTICS_KEY) != null) editor.clearStyle(0, editor.getLength());
+    }
+
+    /**
+     * {@code onEdit} — на каждое изменение текста, {@code onIdle} — когда правки затихли
+     * на {@code delay} (тот же приём, что debounce подсказок). Оба вызываются в FX-потоке.
+     */
+    public static void whenIdle(CodeArea editor, Duration delay, Runnable onEdit, Runnable onIdle) {
+        PauseTransition idle = new PauseTransition(delay);
+        idle.setOnFinished(e -> onIdle.run());
+        editor.textProperty().addListener((obs, before, after) -> {
+            onEdit.run();
+            idle.playFromStart();
+        });
+    }
+
     private static String normalizeSnippetIndentation(String text, int replaceFrom, String insert) {
         if (insert == null || !insert.contains("\n")) {
             return insert == null ? "" : insert;
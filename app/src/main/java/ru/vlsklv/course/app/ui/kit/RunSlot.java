@@ -0,0 +1,50 @@
+package ru.vlsklv.course.app.ui.kit;
+
+import javafx.scene.control.Button;
+import ru.vlsklv.course.app.sandbox.RunHandle;
+
+/**
+ * Текущий запуск экрана и кнопка «Стоп» к нему.
+ *
+ * Новый запуск не ждёт старый: {@link #abandon()} останавливает его и отключает его вывод,
+ * а итог, пришедший позже, отбрасывается ({@link #release} вернёт {@code false}).
+ * Все методы — в FX-потоке.
+ */
+public final class RunSlot {
+    private final Button stop;
+    private RunHandle<?> handle;
+    private TerminalFeed feed;
+
+    public RunSlot(Button stop) {
+        this.stop = stop;
+        stop.setDisable(true);
+        stop.setOnAction(e -> {
+            if (handle != null) handle.cancel();
+        });
+    }
+
+    /** Останавливает текущий запуск, его вывод больше не попадает в терминал. */
+    public void abandon() {
+        if (handle != null) handle.cancel();
+        if (feed != null) feed.discard();
+        handle = null;
+        feed = null;
+        stop.setDisable(true);
+    }
+
+    public void track(RunHandle<?> handle, TerminalFeed feed) {
+        abandon();
+        this.handle = handle;
+        this.feed = feed;
+        stop.setDisable(false);
+    }
+
+    /** Освобождает слот, если {@code handle} всё ещё текущий запуск; иначе его итог не нужен. */
+    public boolean release(RunHandle<?> handle) {
+        if (this.handle != handle) return false;
+        this.handle = null;
+        this.feed = null;
+        stop.setDisable(true);
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.vlsklv.course.app.ui.kit;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.TextArea;
+import ru.vlsklv.course.app.sandbox.JavaSandboxRunner;
+import ru.vlsklv.course.app.sandbox.OutputListener;
+
+/**
+ * Живой вывод программы в терминал.
+ *
+ * Куски от раннера приходят из фоновых потоков и копятся в буфере, а в TextArea
+ * попадают не чаще раза за кадр (AnimationTimer), одной вставкой. В терминале
+ * держим только последние {@link #MAX_CHARS} символов, чтобы болтливая программа
+ * не раздувала TextArea.
+ *
+ * Один экземпляр — один запуск: после {@link #finish} опоздавший вывод отбрасывается.
+ */
+public final class TerminalFeed implements OutputListener {
+    public static final int MAX_CHARS = 200_000;
+
+    private final TextArea terminal;
+    private final AnimationTimer timer;
+
+    private final StringBuilder pending = new StringBuilder();
+    private Channel lastChannel = Channel.STDOUT;
+    private char lastChar = '\n';
+    private boolean received;
+    private boolean finished;
+
+    public TerminalFeed(TextArea terminal) {
+        this.terminal = terminal;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                flush();
+            }
+        };
+    }
+
+    /** Вызывать в FX-потоке перед запуском. */
+    public void start() {
+        timer.start();
+    }
+
+    @Override
+    public synchronized void onOutput(Channel channel, String chunk) {
+        if (finished || chunk.isEmpty()) return;
+        received = true;
+
+        if (channel != lastChannel) {
+            if (lastChar != '\n') pending.append('\n');
+            pending.append(channel == Channel.STDERR ? "[stderr]\n" : "[stdout]\n");
+            lastChannel = channel;
+        }
+        pending.append(chunk);
+        lastChar = chunk.charAt(chunk.length() - 1);
+
+        // UI не успевает — старое всё равно будет срезано, не держим его в памяти
+        if (pending.length() > MAX_CHARS) {
+            pending.delete(0, pending.length() - MAX_CHARS);
+        }
+    }
+
+    /** Был ли хоть какой-то вывод за этот запуск. */
+    public synchronized boolean hasOutput() {
+        return received;
+    }
+
+    /** Останавливает подачу и дописывает всё накопленное. Вызывать в FX-потоке. */
+    public void finish() {
+        timer.stop();
+        synchronized (this) {
+            finished = true;
+        }
+        flush();
+    }
+
+    /** Отключает feed от терминала без дописывания накопленного: запуск заменён новым. Вызывать в FX-потоке. */
+    public void discard() {
+        timer.stop();
+        synchronized (this) {
+            finished = true;
+            pending.setLength(0);
+        }
+    }
+
+    /**
+     * {@link #finish()} и итог запуска: при успехе вывод уже на экране, при ошибке
+     * дописываем сообщение. Если программа успела что-то напечатать, stdout/stderr
+     * в сообщении повторяли бы уже показанное — оставляем только первую строку.
+     */
+    public void finish(JavaSandboxRunner.RunResult rr) {
+        finish();
+        if (rr.getStatus() == JavaSandboxRunner.RunResult.Status.OK) return;
+
+        String message = rr.getMessage() == null ? "" : rr.getMessage();
+        if (!hasOutput()) {
+            terminal.appendText(message);
+            return;
+        }
+        int nl = message.indexOf('\n');
+        String head = nl < 0 ? message : message.substring(0, nl);
+        terminal.appendText((lastChar == '\n' ? "\n" : "\n\n") + head);
+    }
+
+    private void flush() {
+        String text;
+        synchronized (this) {
+            if (pending.length() == 0) return;
+            text = pending.toString();
+            pending.setLength(0);
+        }
+        terminal.appendText(text);
+
+        int excess = terminal.getLength() - MAX_CHARS;
+        if (excess > 0) terminal.deleteText(0, excess);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.vlsklv.course.app.ui.kit;
+
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.util.Duration;
+import ru.vlsklv.course.app.sandbox.CompileDiagnostic;
+import ru.vlsklv.course.app.sandbox.RunHandle;
+import ru.vlsklv.course.app.sandbox.SandboxWorkspace;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Редакторы файлов одного code-задания и {@link SandboxWorkspace} для их запуска.
+ *
+ * Один файл — просто редактор, несколько — по вкладке на файл. Workspace живёт, пока открыт
+ * экран, поэтому повторный запуск перекомпилирует только изменённые файлы.
+ *
+ * Пока ученик не печатает, код компилируется в фоне ({@link SandboxWorkspace#precompile()}),
+ * и к нажатию «Запустить» остаётся только выполнение. Новая правка отменяет устаревшую компиляцию.
+ */
+public final class WorkspaceEditors {
+    /** Пауза в наборе, после которой запускается фоновая компиляция. */
+    private static final Duration PRECOMPILE_DELAY = Duration.millis(400);
+
+    private final Map<String, CodeUi.EditorBundle> editors = new LinkedHashMap<>();
+    private final SandboxWorkspace workspace = new SandboxWorkspace();
+    private final Node view;
+    private RunHandle<SandboxWorkspace.CompileStats> precompile;
+
+    /** @param files имя файла -> начальный текст; первый файл — основной (с main) */
+    public WorkspaceEditors(Map<String, String> files) {
+        files.forEach((fileName, text) -> {
+            CodeUi.EditorBundle bundle = CodeUi.createJavaEditor(text);
+            bundle.scroll().setMaxWidth(Double.MAX_VALUE);
+            CodeUi.whenIdle(bundle.editor(), PRECOMPILE_DELAY, this::cancelPrecompile,
+                    () -> precompile = sync().precompile());
+            editors.put(fileName, bundle);
+        });
+        if (editors.size() == 1) {
+            view = main().scroll();
+        } else {
+            TabPane tabs = new TabPane();
+            tabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+            editors.forEach((fileName, bundle) -> tabs.getTabs().add(new Tab(fileName, bundle.scroll())));
+            view = tabs;
+        }
+    }
+
+    public Node view() {
+        return view;
+    }
+
+    /** Редактор основного файла. */
+    public CodeUi.EditorBundle main() {
+        return editors.values().iterator().next();
+    }
+
+    public void hidePopups() {
+        editors.values().forEach(b -> b.hidePopup().run());
+    }
+
+    /** Останавливает фоновую компиляцию, если она ещё идёт. */
+    public void cancelPrecompile() {
+        if (precompile != null) precompile.cancel();
+        precompile = null;
+    }
+
+    /** Подчёркивает сообщения компилятора в редакторах их файлов; пустой список снимает подчёркивания. */
+    public void showDiagnostics(List<CompileDiagnostic> diagnostics) {
+        editors.forEach((fileName, bundle) -> CodeUi.showDiagnostics(bundle.editor(),
+                diagnostics.stream().filter(d -> d.fileName().equals(fileName)).toList()));
+    }
+
+    /** Переносит текст всех редакторов в workspace. Вызывать в FX-потоке перед запуском. */
+    public SandboxWorkspace sync() {
+        editors.forEach((fileName, bundle) -> workspace.put(fileName, bundle.editor().getText()));
+        return workspace;
+    }
+}
@@ -0,0 +1,13 @@
+public class Main {
+
+    // TODO: вернуть true, если status в диапазоне 200..299
+    static boolean is2xx(int status) {
+        return false;
+    }
+
+    public static void main(String[] args) {
+        for (int status : new int[]{200, 204, 299, 300, 404, 500}) {
+            System.out.println(status + " -> " + is2xx(status));
+        }
+    }
+}
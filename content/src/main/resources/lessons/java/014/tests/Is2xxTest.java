@@ -0,0 +1,36 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Is2xxTest {
+
+    @Test
+    @DisplayName("200 и 204 — успешные ответы")
+    void successCodes() {
+        assertTrue(Main.is2xx(200), "is2xx(200)");
+        assertTrue(Main.is2xx(204), "is2xx(204)");
+    }
+
+    @Test
+    @DisplayName("Границы диапазона: 200 и 299 входят")
+    void inclusiveBounds() {
+        assertTrue(Main.is2xx(200), "is2xx(200)");
+        assertTrue(Main.is2xx(299), "is2xx(299)");
+    }
+
+    @Test
+    @DisplayName("199 и 300 — уже не 2xx")
+    void outsideBounds() {
+        assertFalse(Main.is2xx(199), "is2xx(199)");
+        assertFalse(Main.is2xx(300), "is2xx(300)");
+    }
+
+    @Test
+    @DisplayName("Ошибки клиента и сервера — не 2xx")
+    void errorCodes() {
+        assertFalse(Main.is2xx(404), "is2xx(404)");
+        assertFalse(Main.is2xx(500), "is2xx(500)");
+    }
+}
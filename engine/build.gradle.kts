@@ -13,3 +13,22 @@ dependencies {
     api("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:2.17.2")
     api("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.17.2")
 }
+
+// замеры: свой source set (src/bench/java), в jar модуля не попадают
+val bench: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[bench.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[bench.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+tasks.register<JavaExec>("diffBenchmark") {
+    group = "verification"
+    description = "Замеряет OutputComparator и OutputDiff на больших выводах"
+    classpath = bench.runtimeClasspath
+    mainClass.set("ru.vlsklv.course.engine.grading.OutputDiffBenchmark")
+    listOf("bench.lines", "bench.iterations", "bench.warmup").forEach { key ->
+        project.findProperty(key)?.let { systemProperty(key, it) }
+    }
+}
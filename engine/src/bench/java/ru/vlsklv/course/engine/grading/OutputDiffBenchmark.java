@@ -0,0 +1,82 @@
+package ru.vlsklv.course.engine.grading;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Бенчмарк {@link OutputComparator} и {@link OutputDiff} на больших выводах (без JMH, как и
+ * SandboxBenchmark в app).
+ *
+ * Запуск: {@code gradle :engine:diffBenchmark}
+ * Параметры: {@code -Pbench.lines=100000 -Pbench.iterations=20 -Pbench.warmup=5}
+ */
+public final class OutputDiffBenchmark {
+    private OutputDiffBenchmark() {}
+
+    public static void main(String[] args) {
+        int lines = Integer.getInteger("bench.lines", 100_000);
+        int warmup = Integer.getInteger("bench.warmup", 5);
+        int iterations = Integer.getInteger("bench.iterations", 20);
+
+        String expected = output(lines);
+        Random random = new Random(42);
+        System.out.printf(Locale.ROOT, "Вывод %d строк (%d КБ): warmup=%d, iterations=%d%n",
+                lines, expected.length() / 1024, warmup, iterations);
+
+        String crlf = expected.replace("\n", "\r\n");
+        report("совпадает (CRLF)       ", warmup, iterations, expected, crlf);
+        report("1 строка в середине    ", warmup, iterations, expected, replaceLines(expected, random, 1));
+        report("100 строк вразброс     ", warmup, iterations, expected, replaceLines(expected, random, 100));
+        report("1% строк вразброс      ", warmup, iterations, expected, replaceLines(expected, random, lines / 100));
+        report("лишняя строка в начале ", warmup, iterations, expected, "debug: start\n" + expected);
+        report("половина вывода        ", warmup, iterations, expected, expected.substring(0, expected.length() / 2));
+        report("совсем другой вывод    ", warmup, iterations, expected, expected.replace("line", "LINE"));
+    }
+
+    private static void report(String name, int warmup, int iterations, String expected, String actual) {
+        double[] compare = measure(warmup, iterations, () -> OutputComparator.compare(expected, actual));
+        double[] diff = measure(warmup, iterations, () -> OutputDiff.diff(expected, actual).format());
+        OutputDiff.Result result = OutputDiff.diff(expected, actual);
+        System.out.printf(Locale.ROOT, "%s  compare p50=%7.2f ms  diff p50=%7.2f ms  p95=%7.2f ms  (-%d +%d строк, показано участков: %d)%n",
+                name, percentile(compare, 50), percentile(diff, 50), percentile(diff, 95),
+                result.removedLines(), result.addedLines(), result.hunks().size());
+    }
+
+    private static String output(int lines) {
+        StringBuilder sb = new StringBuilder(lines * 24);
+        for (int i = 0; i < lines; i++) {
+            sb.append("line ").append(i).append(": status=").append(i % 7 == 0 ? 404 : 200).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String replaceLines(String text, Random random, int count) {
+        String[] lines = text.split("\n", -1);
+        for (int i = 0; i < count; i++) {
+            int at = count == 1 ? lines.length / 2 : random.nextInt(lines.length - 1);
+            lines[at] = lines[at] + " (изменено)";
+        }
+        return String.join("\n", lines);
+    }
+
+    private static double[] measure(int warmup, int iterations, Supplier<?> action) {
+        for (int i = 0; i < warmup; i++) action.get();
+
+        double[] millis = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.get();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static double percentile(double[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+}
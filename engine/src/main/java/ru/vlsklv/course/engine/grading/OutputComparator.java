@@ -0,0 +1,233 @@
+package ru.vlsklv.course.engine.grading;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+/**
+ * Сравнение вывода программы с ожидаемым, как при проверке заданий.
+ *
+ * Не различаются: переводы строк (CRLF, CR, LF), пробелы и табы в конце строк, пробельные символы
+ * (всё, что убирает {@link String#trim()}) и пустые строки в начале и в конце вывода. Всё остальное
+ * сравнивается посимвольно.
+ *
+ * Оба текста читаются одним проходом, без копий и без разбиения на строки: память не зависит от
+ * размера вывода, а сравнение останавливается на первом расхождении.
+ */
+public final class OutputComparator {
+    private OutputComparator() {}
+
+    /**
+     * Первое расхождение. Строки и символы считаются с 1 в исходном тексте каждой стороны: из-за
+     * пустых строк в начале вывода номера строк у ожидаемого и полученного могут не совпадать.
+     */
+    public record Mismatch(long expectedLine, long expectedColumn, long actualLine, long actualColumn) {
+        /** «строка 3, символ 5» — по полученному выводу. */
+        public String where() {
+            return "строка " + actualLine + ", символ " + actualColumn;
+        }
+
+        /**
+         * Пояснение для студента: где расходится и чем отличаются строки. Тексты нужны те же, что
+         * передавались в {@link #compare(CharSequence, CharSequence)}.
+         */
+        public String describe(CharSequence expected, CharSequence actual) {
+            return "Первое расхождение: " + where() + ".\n"
+                    + "Ожидалось: " + quote(lineAt(expected, expectedLine)) + "\n"
+                    + "Получено:  " + quote(lineAt(actual, actualLine));
+        }
+    }
+
+    public static boolean matches(CharSequence expected, CharSequence actual) {
+        return compare(expected, actual).isEmpty();
+    }
+
+    public static Optional<Mismatch> compare(CharSequence expected, CharSequence actual) {
+        try {
+            return compare(new SequenceCursor(expected), new SequenceCursor(actual));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // у строк ввода-вывода нет
+        }
+    }
+
+    /** То же для потоков: вывод не обязан целиком лежать в памяти. Читатели не закрываются. */
+    public static Optional<Mismatch> compare(Reader expected, Reader actual) throws IOException {
+        return compare(new ReaderCursor(expected), new ReaderCursor(actual));
+    }
+
+    private static Optional<Mismatch> compare(Cursor e, Cursor a) throws IOException {
+        e.skipWhitespace();
+        a.skipWhitespace();
+        while (true) {
+            int ce = e.peek();
+            int ca = a.peek();
+            if (ce == ca) {
+                if (ce == Cursor.EOF) return Optional.empty();
+                e.advance();
+                a.advance();
+                continue;
+            }
+
+            // Хотя бы одна сторона на пробельном символе или в конце текста (EOF < ' ').
+            if (ce <= ' ' || ca <= ' ') {
+                Mismatch at = mismatch(e, a);
+                // пробелы и табы в конце строки: после них обе стороны дошли до одного конца строки
+                e.skipBlanks();
+                a.skipBlanks();
+                if (e.atLineEnd() && e.peek() == a.peek()) continue;
+                // иначе совпасть может только конец вывода: дальше у обеих сторон одни пробельные символы
+                e.skipWhitespace();
+                a.skipWhitespace();
+                return e.peek() == Cursor.EOF && a.peek() == Cursor.EOF ? Optional.empty() : Optional.of(at);
+            }
+            return Optional.of(mismatch(e, a));
+        }
+    }
+
+    private static Mismatch mismatch(Cursor e, Cursor a) {
+        return new Mismatch(e.line, e.column, a.line, a.column);
+    }
+
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static String lineAt(CharSequence text, long line) {
+        if (text == null) return "";
+        int start = 0;
+        for (long l = 1; l < line; l++) {
+            int nl = indexOfLineBreak(text, start);
+            if (nl < 0) return "";
+            start = nl + (text.charAt(nl) == '\r' && nl + 1 < text.length() && text.charAt(nl + 1) == '\n' ? 2 : 1);
+        }
+        int end = indexOfLineBreak(text, start);
+        return text.subSequence(start, end < 0 ? text.length() : end).toString().stripTrailing();
+    }
+
+    private static int indexOfLineBreak(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') return i;
+        }
+        return -1;
+    }
+
+    private static String quote(String line) {
+        return line.isEmpty() ? "(пустая строка)" : "«" + line + "»";
+    }
+
+    /**
+     * Текст как последовательность символов, где любой перевод строки — один {@code '\n'}.
+     * Помнит строку и символ текущей позиции.
+     */
+    private abstract static class Cursor {
+        static final int EOF = -1;
+
+        long line = 1;
+        long column = 1;
+        private int current = -2;
+
+        /** Следующий символ исходного текста или {@link #EOF}. */
+        abstract int read() throws IOException;
+
+        int peek() throws IOException {
+            if (current == -2) {
+                int c = read();
+                if (c == '\r') {
+                    // CRLF — один перевод строки; LF после CR дочитывается здесь же
+                    int next = read();
+                    if (next != '\n' && next != EOF) unread(next);
+                    c = '\n';
+                }
+                current = c;
+            }
+            return current;
+        }
+
+        void advance() throws IOException {
+            int c = peek();
+            if (c == EOF) return;
+            if (c == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+            current = -2;
+        }
+
+        /** Вернуть один прочитанный символ: нужен только для CR без LF. */
+        abstract void unread(int c);
+
+        void skipBlanks() throws IOException {
+            while (isBlank(peek())) advance();
+        }
+
+        /** Пробельные символы в смысле {@link String#trim()}, включая переводы строк. */
+        void skipWhitespace() throws IOException {
+            int c;
+            while ((c = peek()) != EOF && c <= ' ') advance();
+        }
+
+        boolean atLineEnd() throws IOException {
+            int c = peek();
+            return c == '\n' || c == EOF;
+        }
+    }
+
+    private static final class SequenceCursor extends Cursor {
+        private final CharSequence text;
+        private int pos;
+
+        SequenceCursor(CharSequence text) {
+            this.text = text == null ? "" : text;
+        }
+
+        @Override
+        int read() {
+            return pos < text.length() ? text.charAt(pos++) : EOF;
+        }
+
+        @Override
+        void unread(int c) {
+            pos--;
+        }
+    }
+
+    private static final class ReaderCursor extends Cursor {
+        private final Reader in;
+        private final char[] buf = new char[8192];
+        private int pos;
+        private int limit;
+        private int pushedBack = -2;
+
+        ReaderCursor(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            if (pos == limit) {
+                int n;
+                do {
+                    n = in.read(buf, 0, buf.length);
+                } while (n == 0);
+                if (n < 0) return EOF;
+                pos = 0;
+                limit = n;
+            }
+            return buf[pos++];
+        }
+
+        @Override
+        void unread(int c) {
+            pushedBack = c;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package ru.vlsklv.course.engine.grading;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Построчный diff ожидаемого и полученного вывода: только различающиеся участки с несколькими
+ * строками контекста.
+ *
+ * Строки сравниваются как в {@link OutputComparator}: без учёта переводов строк, пробелов в конце
+ * строк, пробельных символов и пустых строк в начале и в конце вывода.
+ *
+ * Алгоритм — Майерс в линейной памяти (поиск средней змейки, как в GNU diff): кроме границ и
+ * хэшей строк хранятся только два массива диагоналей. Строки не копируются. Время —
+ * O((N + M) · D), где D — число различий. Если различий слишком много, середина выбирается
+ * приближённо, как в GNU diff: diff получается не минимальным, но время остаётся ограниченным.
+ */
+public final class OutputDiff {
+    /** Строк контекста вокруг изменений по умолчанию. */
+    public static final int DEFAULT_CONTEXT = 3;
+
+    /** Сколько изменённых строк собирать в участки по умолчанию; остальные только считаются. */
+    public static final int DEFAULT_MAX_LINES = 500;
+
+    private final Lines a;
+    private final Lines b;
+    private final boolean[] removed;
+    private final boolean[] added;
+    private final int[] fd;
+    private final int[] bd;
+    private final int offset;
+    private final int tooExpensive;
+
+    public enum Kind { CONTEXT, REMOVED, ADDED }
+
+    /**
+     * Строка diff'а.
+     *
+     * @param expectedLine номер в ожидаемом выводе (с 1) или 0 для {@link Kind#ADDED}
+     * @param actualLine   номер в полученном выводе (с 1) или 0 для {@link Kind#REMOVED}
+     * @param text         строка без перевода строки и пробелов в конце (у первой и последней
+     *                     строки вывода — и без пробельных символов в начале и в конце)
+     */
+    public record Line(Kind kind, int expectedLine, int actualLine, String text) {}
+
+    /**
+     * Участок с изменениями и контекстом вокруг них.
+     *
+     * @param expectedStart первая строка участка в ожидаемом выводе (с 1)
+     * @param actualStart   первая строка участка в полученном выводе (с 1)
+     */
+    public record Hunk(int expectedStart, int expectedCount, int actualStart, int actualCount, List<Line> lines) {
+        public Hunk {
+            lines = List.copyOf(lines);
+        }
+
+        /** Заголовок в духе unified diff: {@code @@ -3,4 +3,5 @@}. */
+        public String header() {
+            return "@@ -" + expectedStart + "," + expectedCount + " +" + actualStart + "," + actualCount + " @@";
+        }
+    }
+
+    /**
+     * Итог сравнения.
+     *
+     * @param hunks        участки по порядку, в сумме не больше maxLines строк «-» и «+»
+     * @param removedLines сколько всего строк есть только в ожидаемом выводе
+     * @param addedLines   сколько всего строк есть только в полученном выводе
+     * @param truncated    в hunks вошли не все изменения
+     */
+    public record Result(List<Hunk> hunks, int removedLines, int addedLines, boolean truncated) {
+        public Result {
+            hunks = List.copyOf(hunks);
+        }
+
+        /** Выводы совпадают. */
+        public boolean isEmpty() {
+            return removedLines == 0 && addedLines == 0;
+        }
+
+        /**
+         * Текст для терминала: заголовки участков и строки с префиксами {@code "  "}, {@code "- "},
+         * {@code "+ "}; если собраны не все участки — итог по строкам в конце.
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            for (Hunk h : hunks) {
+                sb.append(h.header()).append('\n');
+                for (Line l : h.lines()) {
+                    sb.append(switch (l.kind()) {
+                        case CONTEXT -> "  ";
+                        case REMOVED -> "- ";
+                        case ADDED -> "+ ";
+                    }).append(l.text()).append('\n');
+                }
+            }
+            if (truncated) {
+                sb.append("… показана только часть различий; всего строк: -").append(removedLines)
+                        .append(" +").append(addedLines).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    private OutputDiff(Lines a, Lines b) {
+        this.a = a;
+        this.b = b;
+        this.removed = new boolean[a.size()];
+        this.added = new boolean[b.size()];
+        this.fd = new int[a.size() + b.size() + 3];
+        this.bd = new int[a.size() + b.size() + 3];
+        this.offset = b.size() + 1;
+        int bits = 32 - Integer.numberOfLeadingZeros(a.size() + b.size());
+        this.tooExpensive = Math.max(256, 1 << ((bits + 1) / 2));
+    }
+
+    public static Result diff(CharSequence expected, CharSequence actual) {
+        return diff(expected, actual, DEFAULT_CONTEXT, DEFAULT_MAX_LINES);
+    }
+
+    /**
+     * Участки, где выводы различаются; пустой результат — выводы совпадают.
+     *
+     * @param context  строк контекста до и после каждого изменения
+     * @param maxLines сколько строк «-» и «+» собрать в участки (контекст не считается): память
+     *                 под результат не растёт с размером вывода
+     */
+    public static Result diff(CharSequence expected, CharSequence actual, int context, int maxLines) {
+        if (context < 0) throw new IllegalArgumentException("context < 0: " + context);
+        if (maxLines < 1) throw new IllegalArgumentException("maxLines < 1: " + maxLines);
+        OutputDiff d = new OutputDiff(Lines.of(expected), Lines.of(actual));
+        d.compare();
+        return d.result(context, maxLines);
+    }
+
+    /** Размечает removed/added; подзадачи идут через стек, а не рекурсию: глубина не зависит от входа. */
+    private void compare() {
+        Deque<int[]> work = new ArrayDeque<>();
+        work.push(new int[] {0, a.size(), 0, b.size()});
+        while (!work.isEmpty()) {
+            int[] w = work.pop();
+            int xoff = w[0], xlim = w[1], yoff = w[2], ylim = w[3];
+
+            while (xoff < xlim && yoff < ylim && a.equals(xoff, b, yoff)) {
+                xoff++;
+                yoff++;
+            }
+            while (xlim > xoff && ylim > yoff && a.equals(xlim - 1, b, ylim - 1)) {
+                xlim--;
+                ylim--;
+            }
+
+            if (xoff == xlim) {
+                for (int y = yoff; y < ylim; y++) added[y] = true;
+            } else if (yoff == ylim) {
+                for (int x = xoff; x < xlim; x++) removed[x] = true;
+            } else {
+                long mid = middle(xoff, xlim, yoff, ylim);
+                int xmid = (int) (mid >>> 32);
+                int ymid = (int) mid;
+                if ((xmid == xoff && ymid == yoff) || (xmid == xlim && ymid == ylim)) {
+                    // разбиение не продвинулось: участок целиком заменён
+                    for (int x = xoff; x < xlim; x++) removed[x] = true;
+                    for (int y = yoff; y < ylim; y++) added[y] = true;
+                } else {
+                    work.push(new int[] {xmid, xlim, ymid, ylim});
+                    work.push(new int[] {xoff, xmid, yoff, ymid});
+                }
+            }
+        }
+    }
+
+    /**
+     * Точка на средней змейке кратчайшего пути из (xoff, yoff) в (xlim, ylim), упакованная как
+     * {@code x << 32 | y}. Индексы массивов — диагонали {@code k = x - y}, сдвинутые на offset.
+     */
+    private long middle(int xoff, int xlim, int yoff, int ylim) {
+        int dmin = xoff - ylim;
+        int dmax = xlim - yoff;
+        int fmid = xoff - yoff;
+        int bmid = xlim - ylim;
+        int fmin = fmid, fmax = fmid;
+        int bmin = bmid, bmax = bmid;
+        boolean odd = ((fmid - bmid) & 1) != 0;
+
+        fd[offset + fmid] = xoff;
+        bd[offset + bmid] = xlim;
+
+        for (int c = 1; ; c++) {
+            if (fmin > dmin) fd[offset + --fmin - 1] = -1; else ++fmin;
+            if (fmax < dmax) fd[offset + ++fmax + 1] = -1; else --fmax;
+            for (int d = fmax; d >= fmin; d -= 2) {
+                int tlo = fd[offset + d - 1];
+                int thi = fd[offset + d + 1];
+                int x = tlo >= thi ? tlo + 1 : thi;
+                int y = x - d;
+                while (x < xlim && y < ylim && a.equals(x, b, y)) {
+                    x++;
+                    y++;
+                }
+                fd[offset + d] = x;
+                if (odd && bmin <= d && d <= bmax && bd[offset + d] <= x) return pack(x, y);
+            }
+
+            if (bmin > dmin) bd[offset + --bmin - 1] = Integer.MAX_VALUE; else ++bmin;
+            if (bmax < dmax) bd[offset + ++bmax + 1] = Integer.MAX_VALUE; else --bmax;
+            for (int d = bmax; d >= bmin; d -= 2) {
+                int tlo = bd[offset + d - 1];
+                int thi = bd[offset + d + 1];
+                int x = tlo < thi ? tlo : thi - 1;
+                int y = x - d;
+                while (x > xoff && y > yoff && a.equals(x - 1, b, y - 1)) {
+                    x--;
+                    y--;
+                }
+                bd[offset + d] = x;
+                if (!odd && fmin <= d && d <= fmax && x <= fd[offset + d]) return pack(x, y);
+            }
+
+            if (c >= tooExpensive) return approximate(xoff, xlim, yoff, ylim, fmin, fmax, bmin, bmax);
+        }
+    }
+
+    /** Дальше всех продвинувшаяся диагональ прямого или обратного прохода. */
+    private long approximate(int xoff, int xlim, int yoff, int ylim, int fmin, int fmax, int bmin, int bmax) {
+        int fxybest = -1, fxbest = xoff;
+        for (int d = fmax; d >= fmin; d -= 2) {
+            int x = Math.min(fd[offset + d], xlim);
+            int y = x - d;
+            if (ylim < y) {
+                x = ylim + d;
+                y = ylim;
+            }
+            if (fxybest < x + y) {
+                fxybest = x + y;
+                fxbest = x;
+            }
+        }
+        int bxybest = Integer.MAX_VALUE, bxbest = xlim;
+        for (int d = bmax; d >= bmin; d -= 2) {
+            int x = Math.max(xoff, bd[offset + d]);
+            int y = x - d;
+            if (y < yoff) {
+                x = yoff + d;
+                y = yoff;
+            }
+            if (x + y < bxybest) {
+                bxybest = x + y;
+                bxbest = x;
+            }
+        }
+        return (xlim + ylim) - bxybest < fxybest - (xoff + yoff)
+                ? pack(fxbest, fxybest - fxbest)
+                : pack(bxbest, bxybest - bxbest);
+    }
+
+    private static long pack(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    private Result result(int context, int maxLines) {
+        int removedLines = 0, addedLines = 0;
+        for (boolean r : removed) if (r) removedLines++;
+        for (boolean r : added) if (r) addedLines++;
+
+        List<Hunk> hunks = new ArrayList<>();
+        int budget = maxLines;
+        boolean truncated = false;
+        int n = a.size(), m = b.size();
+        int x = 0, y = 0;
+        while (x < n || y < m) {
+            // начало следующего изменения
+            while (x < n && y < m && !removed[x] && !added[y]) {
+                x++;
+                y++;
+            }
+            if (x >= n && y >= m) break;
+            if (budget <= 0) {
+                truncated = true;
+                break;
+            }
+
+            int startX = Math.max(0, x - context);
+            int startY = y - (x - startX);
+            List<Line> lines = new ArrayList<>();
+            for (int i = startX, j = startY; i < x; i++, j++) lines.add(line(Kind.CONTEXT, i, j));
+
+            int endX = x, endY = y;
+            while (true) {
+                while (endX < n && removed[endX] && budget > 0) {
+                    lines.add(line(Kind.REMOVED, endX++, -1));
+                    budget--;
+                }
+                while (endY < m && added[endY] && budget > 0) {
+                    lines.add(line(Kind.ADDED, -1, endY++));
+                    budget--;
+                }
+                if ((endX < n && removed[endX]) || (endY < m && added[endY])) {
+                    // строки кончились посреди изменения: участок обрывается без хвостового контекста
+                    hunks.add(new Hunk(a.number(startX), endX - startX, b.number(startY), endY - startY, lines));
+                    return new Result(hunks, removedLines, addedLines, true);
+                }
+
+                // совпадающие строки до следующего изменения: если их не больше 2·context,
+                // изменение идёт в тот же участок
+                int run = 0;
+                while (endX + run < n && endY + run < m && !removed[endX + run] && !added[endY + run]) run++;
+                boolean more = endX + run < n || endY + run < m;
+                if (more && run <= 2 * context && budget > 0) {
+                    for (int k = 0; k < run; k++) lines.add(line(Kind.CONTEXT, endX + k, endY + k));
+                    endX += run;
+                    endY += run;
+                    continue;
+                }
+                int tail = Math.min(run, context);
+                for (int k = 0; k < tail; k++) lines.add(line(Kind.CONTEXT, endX + k, endY + k));
+                hunks.add(new Hunk(a.number(startX), endX + tail - startX, b.number(startY), endY + tail - startY, lines));
+                x = endX + run;
+                y = endY + run;
+                break;
+            }
+        }
+        return new Result(hunks, removedLines, addedLines, truncated);
+    }
+
+    private Line line(Kind kind, int x, int y) {
+        return switch (kind) {
+            case CONTEXT -> new Line(kind, a.number(x), b.number(y), a.text(x));
+            case REMOVED -> new Line(kind, a.number(x), 0, a.text(x));
+            case ADDED -> new Line(kind, 0, b.number(y), b.text(y));
+        };
+    }
+
+    /**
+     * Строки текста как границы в исходнике и хэши; пустые строки в начале и в конце отброшены,
+     * пробелы в конце строк в границы не входят.
+     */
+    private static final class Lines {
+        private final CharSequence text;
+        private final int[] start;
+        private final int[] end;
+        private final int[] hash;
+        private final int first;
+        private final int count;
+
+        private Lines(CharSequence text, int[] start, int[] end, int[] hash, int first, int count) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.hash = hash;
+            this.first = first;
+            this.count = count;
+        }
+
+        static Lines of(CharSequence text) {
+            if (text == null) text = "";
+            int n = 1;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n' || (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))) n++;
+            }
+            int[] start = new int[n];
+            int[] end = new int[n];
+            int[] hash = new int[n];
+            int line = 0, pos = 0;
+            while (line < n) {
+                int e = pos;
+                while (e < text.length() && text.charAt(e) != '\n' && text.charAt(e) != '\r') e++;
+                int s = e;
+                while (s > pos && (text.charAt(s - 1) == ' ' || text.charAt(s - 1) == '\t')) s--;
+                start[line] = pos;
+                end[line] = s;
+                hash[line] = hash(text, pos, s);
+                line++;
+                pos = e < text.length() && text.charAt(e) == '\r' && e + 1 < text.length() && text.charAt(e + 1) == '\n' ? e + 2 : e + 1;
+            }
+            int first = 0;
+            while (first < n && blank(text, start[first], end[first])) first++;
+            int last = n;
+            while (last > first && blank(text, start[last - 1], end[last - 1])) last--;
+            if (last > first) {
+                // пробельные символы в начале и в конце всего вывода, как в OutputComparator
+                while (text.charAt(start[first]) <= ' ') start[first]++;
+                while (text.charAt(end[last - 1] - 1) <= ' ') end[last - 1]--;
+                hash[first] = hash(text, start[first], end[first]);
+                hash[last - 1] = hash(text, start[last - 1], end[last - 1]);
+            }
+            return new Lines(text, start, end, hash, first, last - first);
+        }
+
+        private static int hash(CharSequence text, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + text.charAt(i);
+            return h;
+        }
+
+        private static boolean blank(CharSequence text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (text.charAt(i) > ' ') return false;
+            }
+            return true;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /** Номер строки в исходном тексте (с 1). */
+        int number(int i) {
+            return first + i + 1;
+        }
+
+        String text(int i) {
+            return text.subSequence(start[first + i], end[first + i]).toString();
+        }
+
+        boolean equals(int i, Lines other, int j) {
+            int x = first + i, y = other.first + j;
+            if (hash[x] != other.hash[y]) return false;
+            int len = end[x] - start[x];
+            if (len != other.end[y] - other.start[y]) return false;
+            for (int k = 0; k < len; k++) {
+                if (text.charAt(start[x] + k) != other.text.charAt(other.start[y] + k)) return false;
+            }
+            return true;
+        }
+    }
+}
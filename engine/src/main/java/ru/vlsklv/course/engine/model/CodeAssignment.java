@@ -1,15 +1,17 @@
 package ru.vlsklv.course.engine.model;
 
+import java.util.List;
+
 /**
  * Домашнее задание, в котором пользователь пишет код и запускает его.
  *
- * На первом этапе валидируем результат по stdout (сравнение с expectedStdout).
- * Дальше этот тип задания можно расширить до запуска скрытых JUnit-тестов.
+ * Результат проверяется по stdout (expectedStdout или тестовые векторы cases)
+ * либо скрытыми JUnit-тестами (tests).
  */
 public class CodeAssignment implements Assignment {
     /**
-     * Например: "JAVA" / "KOTLIN".
-     * Сейчас используется только JAVA.
+     * Язык кода: "JAVA" / "KOTLIN".
+     * Для KOTLIN mainClass — имя класса файла (Main.kt → MainKt).
      */
     private String runner = "JAVA";
 
@@ -22,11 +24,36 @@ public class CodeAssignment implements Assignment {
     /** Путь к template-файлу в ресурсах (classpath). */
     private String template;
 
+    /**
+     * Остальные файлы проекта, если задание разбито на несколько классов.
+     * Основной файл (fileName/template) в этот список не входит.
+     */
+    private List<CodeFile> files;
+
     /**
      * Ожидаемый stdout. Если пусто — задание считается пройденным при успешном запуске.
      */
     private String expectedStdout;
 
+    /**
+     * Тестовые векторы (stdin, args, expectedStdout). Если заданы, проверка прогоняет код
+     * на каждом из них в одной JVM, а expectedStdout задания не используется.
+     */
+    private List<CodeTestCase> cases;
+
+    /**
+     * Скрытые JUnit 5 тесты: пути к исходникам тестовых классов в ресурсах (classpath).
+     * Ученик их не видит; если заданы, проверка компилирует их вместе с кодом и прогоняет,
+     * а cases и expectedStdout не используются.
+     */
+    private List<String> tests;
+
+    /**
+     * Профиль JVM для запуска: "fast-start" / "throughput" / "low-memory".
+     * Если пусто — профиль по умолчанию (fast-start).
+     */
+    private String launchProfile;
+
     public CodeAssignment() {}
 
     public String getRunner() { return runner; }
@@ -41,6 +68,18 @@ public class CodeAssignment implements Assignment {
     public String getTemplate() { return template; }
     public void setTemplate(String template) { this.template = template; }
 
+    public List<CodeFile> getFiles() { return files; }
+    public void setFiles(List<CodeFile> files) { this.files = files; }
+
     public String getExpectedStdout() { return expectedStdout; }
     public void setExpectedStdout(String expectedStdout) { this.expectedStdout = expectedStdout; }
+
+    public List<CodeTestCase> getCases() { return cases; }
+    public void setCases(List<CodeTestCase> cases) { this.cases = cases; }
+
+    public List<String> getTests() { return tests; }
+    public void setTests(List<String> tests) { this.tests = tests; }
+
+    public String getLaunchProfile() { return launchProfile; }
+    public void setLaunchProfile(String launchProfile) { this.launchProfile = launchProfile; }
 }
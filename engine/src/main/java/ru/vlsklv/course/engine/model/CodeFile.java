@@ -0,0 +1,20 @@
+package ru.vlsklv.course.engine.model;
+
+/**
+ * Дополнительный файл code-задания (page object, DTO, хелпер).
+ */
+public class CodeFile {
+    /** Путь относительно корня исходников, например: pages/LoginPage.java. */
+    private String fileName;
+
+    /** Путь к template-файлу в ресурсах (classpath). */
+    private String template;
+
+    public CodeFile() {}
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getTemplate() { return template; }
+    public void setTemplate(String template) { this.template = template; }
+}
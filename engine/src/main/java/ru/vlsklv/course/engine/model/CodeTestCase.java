@@ -0,0 +1,27 @@
+package ru.vlsklv.course.engine.model;
+
+import java.util.List;
+
+/**
+ * Тестовый вектор code-задания: stdin и аргументы программы и ожидаемый stdout.
+ */
+public class CodeTestCase {
+    private String name;
+    private String stdin;
+    private List<String> args;
+    private String expectedStdout;
+
+    public CodeTestCase() {}
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getStdin() { return stdin; }
+    public void setStdin(String stdin) { this.stdin = stdin; }
+
+    public List<String> getArgs() { return args; }
+    public void setArgs(List<String> args) { this.args = args; }
+
+    public String getExpectedStdout() { return expectedStdout; }
+    public void setExpectedStdout(String expectedStdout) { this.expectedStdout = expectedStdout; }
+}
@@ -7,5 +7,8 @@ kotlin {
 }
 
 dependencies {
+    // версия совпадает с плагином: тот же компилятор, что собирает сам модуль
+    implementation("org.jetbrains.kotlin:kotlin-compiler-embeddable:1.9.24")
+
     testImplementation(kotlin("test"))
 }
@@ -0,0 +1,276 @@
+package ru.vlsklv.course.runner
+
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments
+import org.jetbrains.kotlin.cli.common.environment.setIdeaIoUseFallback
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSourceLocation
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.config.KotlinCompilerVersion
+import org.jetbrains.kotlin.config.Services
+import org.jetbrains.kotlin.progress.CompilationCanceledException
+import org.jetbrains.kotlin.progress.CompilationCanceledStatus
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.function.BooleanSupplier
+import java.util.jar.JarFile
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+import kotlin.io.path.createDirectories
+import kotlin.io.path.extension
+import kotlin.io.path.invariantSeparatorsPathString
+import kotlin.io.path.isDirectory
+import kotlin.io.path.isRegularFile
+import kotlin.io.path.readBytes
+import kotlin.io.path.writeText
+
+/**
+ * Долгоживущий компилятор Kotlin для sandbox.
+ *
+ * Холодный kotlinc стоит несколько секунд: загрузка компилятора, окружение IntelliJ, индексы
+ * stdlib. Здесь компилятор встроен в приложение, а окружение сохраняется между компиляциями
+ * (`kotlin.environment.keepalive`), поэтому платит за это только первая компиляция —
+ * её [prewarm] делает в фоне при старте приложения.
+ *
+ * kotlinc читает исходники и пишет классы только на диск: они проходят через рабочий каталог,
+ * наружу отдаются байты классов. Компиляции идут по одной — окружение общее.
+ */
+class KotlinCompilerService {
+    /** Итог компиляции: классы (binary name → байткод) или ошибки — текстом и по одной в [messages]. */
+    class Compilation(
+        val classes: Map<String, ByteArray>?,
+        val diagnostics: String,
+        val messages: List<Message> = emptyList(),
+    ) {
+        val isSuccess: Boolean get() = classes != null
+    }
+
+    /**
+     * Сообщение kotlinc. Строки и колонки — с 1, меньше 1 — позиция неизвестна; конец не включается.
+     * [fileName] — путь относительно корня исходников, пустой у сообщений без файла.
+     */
+    class Message(
+        val isError: Boolean,
+        val fileName: String,
+        val line: Int,
+        val column: Int,
+        val lineEnd: Int,
+        val columnEnd: Int,
+        val text: String,
+    )
+
+    private val lock = Any()
+    private val prewarmStarted = AtomicBoolean()
+
+    @Volatile
+    private var runtimeClassPath: List<String>? = null
+
+    /** Прогревает компилятор в фоновом потоке; повторные вызовы ничего не делают. */
+    fun prewarm() {
+        if (!prewarmStarted.compareAndSet(false, true)) return
+
+        val t = Thread({
+            try {
+                repeat(PREWARM_ROUNDS) { compile(mapOf("Main.kt" to PREWARM_SOURCE), { false }) }
+            } catch (ignored: Exception) {
+                // прогрев — только оптимизация
+            }
+        }, "kotlin-compiler-prewarm")
+        t.isDaemon = true
+        t.priority = Thread.MIN_PRIORITY
+        t.start()
+    }
+
+    /**
+     * Компилирует [sources] (путь относительно корня исходников → текст). Когда [cancelled]
+     * становится `true`, компиляция прерывается и бросается [InterruptedException].
+     * [workDir] — пустой каталог вызывающего для исходников и классов, его компилятор не удаляет;
+     * без него используется временный каталог.
+     */
+    @JvmOverloads
+    @Throws(IOException::class, InterruptedException::class)
+    fun compile(sources: Map<String, String>, cancelled: BooleanSupplier, workDir: Path? = null): Compilation {
+        val dir = workDir ?: Files.createTempDirectory("aqa-course-kotlinc-")
+        try {
+            val src = dir.resolve("src")
+            val out = dir.resolve("out")
+            val files = sources.map { (fileName, text) ->
+                val file = src.resolve(fileName).normalize()
+                if (!file.startsWith(src)) throw IOException("Недопустимое имя файла: $fileName")
+                file.parent.createDirectories()
+                file.writeText(text)
+                file
+            }
+
+            val args = K2JVMCompilerArguments().apply {
+                freeArgs = files.map { it.toString() }
+                destination = out.toString()
+                classpath = runtimeClassPath().joinToString(File.pathSeparator)
+                noStdlib = true
+                noReflect = true
+                jvmTarget = JVM_TARGET
+                moduleName = "sandbox"
+            }
+            val collector = Collector(src, withFile = sources.size > 1)
+            val services = Services.Builder()
+                .register(CompilationCanceledStatus::class.java, object : CompilationCanceledStatus {
+                    override fun checkCanceled() {
+                        if (cancelled.asBoolean) throw CompilationCanceledException()
+                    }
+                })
+                .build()
+
+            synchronized(lock) {
+                if (cancelled.asBoolean) throw InterruptedException("Компиляция отменена")
+                K2JVMCompiler().exec(collector, services, args)
+            }
+            // отменённый kotlinc завершается без ошибок и без части классов
+            if (cancelled.asBoolean) throw InterruptedException("Компиляция отменена")
+            if (collector.hasErrors()) return Compilation(null, collector.text(), collector.messages())
+            return Compilation(readClasses(out), "")
+        } finally {
+            if (workDir == null) dir.toFile().deleteRecursively()
+        }
+    }
+
+    /**
+     * Что нужно скомпилированной программе в classpath: kotlin-stdlib. Если приложение собрано
+     * в один jar, stdlib один раз извлекается из него в `~/.aqa-course/cache/kotlin`, чтобы не
+     * отдавать программе весь jar приложения.
+     */
+    @Throws(IOException::class)
+    fun runtimeClassPath(): List<String> {
+        runtimeClassPath?.let { return it }
+        synchronized(lock) {
+            runtimeClassPath?.let { return it }
+            val source = Path.of(KotlinVersion::class.java.protectionDomain.codeSource.location.toURI())
+            val stdlib = if (source.isDirectory() || source.fileName.toString().startsWith("kotlin-stdlib")) {
+                source
+            } else {
+                extractStdlib(source)
+            }
+            return listOf(stdlib.toAbsolutePath().toString()).also { runtimeClassPath = it }
+        }
+    }
+
+    private class Collector(private val root: Path, private val withFile: Boolean) : MessageCollector {
+        private val sb = StringBuilder()
+        private val messages = ArrayList<Message>()
+        private var errors = false
+
+        override fun clear() {
+            sb.setLength(0)
+            messages.clear()
+            errors = false
+        }
+
+        override fun hasErrors(): Boolean = errors
+
+        override fun report(severity: CompilerMessageSeverity, message: String, location: CompilerMessageSourceLocation?) {
+            val kind = when (severity) {
+                CompilerMessageSeverity.EXCEPTION, CompilerMessageSeverity.ERROR -> "ERROR"
+                CompilerMessageSeverity.STRONG_WARNING, CompilerMessageSeverity.WARNING -> "WARNING"
+                else -> return
+            }
+            if (kind == "ERROR") errors = true
+            val file = location?.let { fileName(it.path) } ?: ""
+            // формат как у javac в JavaSandboxRunner: [ERROR] Main.kt, line 3: ...
+            sb.append('[').append(kind).append("] ")
+            if (location != null) {
+                if (withFile) sb.append(file).append(", ")
+                sb.append("line ").append(location.line).append(": ")
+            }
+            sb.append(message).append('\n')
+            messages += Message(
+                kind == "ERROR", file,
+                location?.line ?: 0, location?.column ?: 0,
+                location?.lineEnd ?: 0, location?.columnEnd ?: 0,
+                message,
+            )
+        }
+
+        fun text(): String = sb.toString()
+
+        fun messages(): List<Message> = messages.toList()
+
+        private fun fileName(path: String): String =
+            runCatching { root.relativize(Path.of(path)).invariantSeparatorsPathString }.getOrDefault(path)
+    }
+
+    companion object {
+        /** Версия встроенного компилятора — часть ключа кэша компиляции. */
+        @JvmField
+        val VERSION: String = KotlinCompilerVersion.VERSION
+
+        const val JVM_TARGET = "17"
+
+        private const val PREWARM_SOURCE = """
+data class Item(val name: String, val count: Int)
+
+fun main() {
+    val items = listOf(Item("a", 1), Item("b", 2))
+    items.filter { it.count > 0 }.forEach { println("${'$'}{it.name}: ${'$'}{it.count}") }
+}
+"""
+        private const val PREWARM_ROUNDS = 3
+
+        private val CACHE_DIR: Path = Path.of(System.getProperty("user.home"), ".aqa-course", "cache", "kotlin")
+
+        private val SHARED = KotlinCompilerService()
+
+        init {
+            // окружение компилятора живёт между вызовами, а не создаётся на каждый
+            System.setProperty("kotlin.environment.keepalive", "true")
+            setIdeaIoUseFallback()
+        }
+
+        @JvmStatic
+        fun shared(): KotlinCompilerService = SHARED
+
+        private fun readClasses(out: Path): Map<String, ByteArray> {
+            if (!Files.isDirectory(out)) return emptyMap()
+            val classes = LinkedHashMap<String, ByteArray>()
+            Files.walk(out).use { files ->
+                files.filter { it.isRegularFile() && it.extension == "class" }.sorted().forEach { file ->
+                    val binaryName = out.relativize(file).invariantSeparatorsPathString
+                        .removeSuffix(".class")
+                        .replace('/', '.')
+                    classes[binaryName] = file.readBytes()
+                }
+            }
+            return classes
+        }
+
+        /** Пакет `kotlin` и метаданные модуля stdlib из jar приложения в отдельный jar. */
+        private fun extractStdlib(appJar: Path): Path {
+            val target = CACHE_DIR.resolve("kotlin-stdlib-$VERSION.jar")
+            if (target.isRegularFile()) return target
+
+            CACHE_DIR.createDirectories()
+            val tmp = Files.createTempFile(CACHE_DIR, "kotlin-stdlib-", ".tmp")
+            try {
+                JarFile(appJar.toFile()).use { jar ->
+                    JarOutputStream(Files.newOutputStream(tmp)).use { out ->
+                        for (e in jar.entries()) {
+                            val name = e.name
+                            val stdlib = name.startsWith("kotlin/") ||
+                                (name.startsWith("META-INF/kotlin-stdlib") && name.endsWith(".kotlin_module"))
+                            if (!stdlib || e.isDirectory) continue
+                            out.putNextEntry(ZipEntry(name))
+                            jar.getInputStream(e).use { it.copyTo(out) }
+                            out.closeEntry()
+                        }
+                    }
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                Files.deleteIfExists(tmp)
+            }
+            return target
+        }
+    }
+}
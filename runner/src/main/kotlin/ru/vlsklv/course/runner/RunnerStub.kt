@@ -1,7 +0,0 @@
-package ru.vlsklv.course.runner
-
-/**
- * Заглушка под будущий модуль запуска/проверки кода.
- * План: sandbox-проект + компиляция/запуск + JUnit-валидаторы.
- */
-object RunnerStub